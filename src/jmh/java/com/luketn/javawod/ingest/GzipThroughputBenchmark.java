@@ -0,0 +1,100 @@
+package com.luketn.javawod.ingest;
+
+import com.luketn.javawod.wod.SyntheticWod;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Records per second out of a gzipped extract held in memory: inflating alone, the original
+ * {@code BufferedReader.readLine} loop of {@code DataUtil.main} joining lines into record
+ * Strings, and inflating into chunks for the {@link CastSplitter}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GzipThroughputBenchmark {
+    private static final int CASTS = 5000;
+    private static final int CHUNK_BYTES = 256 * 1024;
+
+    private byte[] gzipped;
+    private byte[] chunk;
+
+    @Setup
+    public void setUp() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            new SyntheticWod(42).write(gzip, CASTS);
+        }
+        gzipped = out.toByteArray();
+        chunk = new byte[CHUNK_BYTES];
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CASTS)
+    public long inflateOnly() throws IOException {
+        long bytes = 0;
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(gzipped), 64 * 1024)) {
+            int n;
+            while ((n = in.read(chunk)) > 0) {
+                bytes += n;
+            }
+        }
+        return bytes;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CASTS)
+    public void legacyReadLines(Blackhole blackhole) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(new ByteArrayInputStream(gzipped)), StandardCharsets.US_ASCII))) {
+            StringBuilder record = new StringBuilder();
+            String line;
+            while ((line = reader.readLine()) != null && !line.isEmpty()) {
+                if (line.startsWith("C") && !record.isEmpty()) {
+                    blackhole.consume(record.toString());
+                    record.setLength(0);
+                }
+                record.append(line);
+            }
+            if (!record.isEmpty()) blackhole.consume(record.toString());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CASTS)
+    public void castSplitter(Blackhole blackhole) throws IOException, InterruptedException {
+        CastSplitter splitter = new CastSplitter((buffer, offset, length, streamOffset, rawLength) ->
+                blackhole.consume(length));
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(gzipped), 64 * 1024)) {
+            int n;
+            while ((n = in.readNBytes(chunk, 0, chunk.length)) > 0) {
+                splitter.accept(chunk, 0, n);
+            }
+        }
+        splitter.finish();
+    }
+}
@@ -0,0 +1,109 @@
+package com.luketn.javawod.ingest;
+
+import com.luketn.DataUtil;
+import com.luketn.javawod.wod.SyntheticWod;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * End to end casts per second from gzipped synthetic extracts on disk: the original read loop
+ * and parser, and the {@link IngestionEngine} producing {@code WodCast}s or full level batches.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class IngestionBenchmark {
+    private static final int FILES = 4;
+    private static final int CASTS_PER_FILE = 5000;
+    private static final int CASTS = FILES * CASTS_PER_FILE;
+
+    @Param({"1", "4"})
+    public int maxConcurrentFiles;
+
+    private Path dir;
+    private List<Path> files;
+    private IngestionEngine engine;
+
+    @Setup
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("wod-bench");
+        files = new ArrayList<>();
+        String[] instruments = {"OSD", "CTD", "XBT", "PFL"};
+        for (int i = 0; i < FILES; i++) {
+            files.add(new SyntheticWod(i).writeGzip(dir.resolve("ocldb1." + instruments[i] + ".gz"), CASTS_PER_FILE));
+        }
+        IngestionSettings defaults = IngestionSettings.defaults();
+        engine = new IngestionEngine(new IngestionSettings(maxConcurrentFiles, defaults.parsersPerFile(),
+                defaults.queueCapacity(), defaults.batchRecords(), defaults.chunkBytes(), null));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CASTS)
+    public void legacy(Blackhole blackhole) throws IOException {
+        for (Path file : files) {
+            String fileName = file.getFileName().toString();
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                    new GZIPInputStream(Files.newInputStream(file)), StandardCharsets.US_ASCII))) {
+                StringBuilder record = new StringBuilder();
+                String line;
+                while ((line = reader.readLine()) != null && !line.isEmpty()) {
+                    if (line.startsWith("C") && !record.isEmpty()) {
+                        blackhole.consume(DataUtil.parseProfile(record.toString(), fileName));
+                        record.setLength(0);
+                    }
+                    record.append(line);
+                }
+                if (!record.isEmpty()) blackhole.consume(DataUtil.parseProfile(record.toString(), fileName));
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CASTS)
+    public IngestionReport engineWodCasts(Blackhole blackhole) throws IOException, InterruptedException {
+        return engine.ingest(files, blackhole::consume);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CASTS)
+    public IngestionReport engineBatches(Blackhole blackhole) throws IOException, InterruptedException {
+        return engine.ingestBatches(files, batch -> blackhole.consume(batch.totalLevels()));
+    }
+}
@@ -0,0 +1,64 @@
+package com.luketn.javawod.query;
+
+import com.luketn.javawod.store.ArrayCastTable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A 5,000 point level-of-detail sample from the {@link CastPyramid} for viewports from the whole
+ * globe down to a harbour, against reading every cast in the viewport from the
+ * {@link SpatioTemporalIndex}. The sample should cost about the same at every zoom.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class CastSampleBenchmark {
+    private static final int MAX_POINTS = 5_000;
+
+    @Param({"globe", "ocean", "sea", "harbour"})
+    public String viewport;
+
+    private ArrayCastTable table;
+    private SpatioTemporalIndex index;
+    private CastPyramid pyramid;
+    private CastQuery query;
+
+    @Setup
+    public void setUp() {
+        table = ArrayCastTable.random(10_000_000, 42);
+        index = SpatioTemporalIndex.build(table);
+        pyramid = CastPyramid.build(table);
+        query = switch (viewport) {
+            case "globe" -> CastQuery.everything();
+            case "ocean" -> new CastQuery(-60, 30, -70, 20, Long.MIN_VALUE, Long.MAX_VALUE, Set.of());
+            case "sea" -> new CastQuery(-45, -30, 140, 155, Long.MIN_VALUE, Long.MAX_VALUE, Set.of());
+            case "harbour" -> new CastQuery(-34, -33.5f, 151, 151.5f, Long.MIN_VALUE, Long.MAX_VALUE, Set.of());
+            default -> throw new IllegalArgumentException(viewport);
+        };
+    }
+
+    @Benchmark
+    public int sample() {
+        return pyramid.sample(table, query, MAX_POINTS, cast -> true).length;
+    }
+
+    @Benchmark
+    public int everyCast() {
+        return index.count(query);
+    }
+}
@@ -0,0 +1,85 @@
+package com.luketn.javawod.query;
+
+import com.luketn.javawod.store.ArrayCastTable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Instant;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * k-nearest and radius searches on the {@link NearestCastIndex} from 1M to 50M casts, against a
+ * linear scan of the cast columns. Each invocation searches around the next of a fixed set of
+ * random positions, so the results are not one lucky spot; search time should grow with the
+ * logarithm of the cast count, the scan's linearly.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+@State(Scope.Benchmark)
+public class NearestCastBenchmark {
+    private static final int POSITIONS = 1024;
+
+    @Param({"1000000", "10000000", "50000000"})
+    public int casts;
+
+    private ArrayCastTable table;
+    private NearestCastIndex index;
+    private NearestQuery[] everything;
+    private NearestQuery[] decade;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        table = ArrayCastTable.random(casts, 42);
+        index = NearestCastIndex.build(table);
+        long from = Instant.parse("1950-01-01T00:00:00Z").getEpochSecond();
+        long to = Instant.parse("1960-01-01T00:00:00Z").getEpochSecond();
+        Random random = new Random(7);
+        everything = new NearestQuery[POSITIONS];
+        decade = new NearestQuery[POSITIONS];
+        for (int i = 0; i < POSITIONS; i++) {
+            double latitude = random.nextDouble() * 180 - 90;
+            double longitude = random.nextDouble() * 360 - 180;
+            everything[i] = NearestQuery.at(latitude, longitude);
+            decade[i] = new NearestQuery(latitude, longitude, from, to, Set.of("CTD"));
+        }
+    }
+
+    private int position() {
+        return next = (next + 1) & (POSITIONS - 1);
+    }
+
+    @Benchmark
+    public Neighbours nearest10() {
+        return index.nearest(everything[position()], 10);
+    }
+
+    @Benchmark
+    public Neighbours within50Km() {
+        return index.within(everything[position()], 50, Integer.MAX_VALUE);
+    }
+
+    @Benchmark
+    public Neighbours nearest10CtdInDecade() {
+        return index.nearest(decade[position()], 10);
+    }
+
+    @Benchmark
+    public int linearScanNearest10() {
+        return LinearScan.nearest(table, everything[position()], 10, Double.POSITIVE_INFINITY).length;
+    }
+}
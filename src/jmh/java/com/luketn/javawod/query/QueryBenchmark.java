@@ -0,0 +1,56 @@
+package com.luketn.javawod.query;
+
+import com.luketn.javawod.store.ArrayCastTable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Instant;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A regional decade query on the {@link SpatioTemporalIndex} against a linear scan of the cast
+ * columns.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class QueryBenchmark {
+    @Param({"1000000", "10000000"})
+    public int casts;
+
+    private ArrayCastTable table;
+    private SpatioTemporalIndex index;
+    private CastQuery query;
+
+    @Setup
+    public void setUp() {
+        table = ArrayCastTable.random(casts, 42);
+        index = SpatioTemporalIndex.build(table);
+        query = new CastQuery(-45, -30, 140, 155,
+                Instant.parse("1950-01-01T00:00:00Z").getEpochSecond(),
+                Instant.parse("1960-01-01T00:00:00Z").getEpochSecond(), Set.of());
+    }
+
+    @Benchmark
+    public int index() {
+        return index.count(query);
+    }
+
+    @Benchmark
+    public int linearScan() {
+        return LinearScan.query(table, query).length;
+    }
+}
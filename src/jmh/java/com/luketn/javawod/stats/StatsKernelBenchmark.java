@@ -0,0 +1,70 @@
+package com.luketn.javawod.stats;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Masked statistics and histograms over synthetic level columns, scalar against vector kernels.
+ * Scores are in nanoseconds per level; at memory bandwidth a level (9 bytes) costs well under a
+ * nanosecond.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g", "--add-modules", "jdk.incubator.vector"})
+@State(Scope.Benchmark)
+public class StatsKernelBenchmark {
+    private static final int LEVELS = 16 * 1024 * 1024;
+
+    @Param({"scalar", "vector"})
+    public String kernel;
+
+    private StatsKernel statsKernel;
+    private float[] values;
+    private float[] depths;
+    private byte[] qc;
+    private LevelFilter filter;
+
+    @Setup
+    public void setUp() {
+        statsKernel = kernel.equals("vector") ? new VectorStatsKernel() : StatsKernel.scalar();
+        Random random = new Random(42);
+        values = new float[LEVELS];
+        depths = new float[LEVELS];
+        qc = new byte[LEVELS];
+        for (int i = 0; i < LEVELS; i++) {
+            values[i] = random.nextInt(50) == 0 ? Float.NaN : -2 + random.nextFloat() * 32;
+            depths[i] = random.nextFloat() * 5000;
+            qc[i] = (byte) (random.nextInt(10) == 0 ? random.nextInt(10) : 0);
+        }
+        filter = LevelFilter.accepted().withDepths(0, 1000);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LEVELS)
+    public ColumnStats stats() {
+        return statsKernel.stats(values, qc, depths, 0, LEVELS, filter);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LEVELS)
+    public Histogram histogram() {
+        Histogram histogram = new Histogram(-2, 30, 64);
+        statsKernel.histogram(values, qc, depths, 0, LEVELS, filter, histogram);
+        return histogram;
+    }
+}
@@ -0,0 +1,86 @@
+package com.luketn.javawod.wod;
+
+import com.luketn.DataUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Whole cast parsing over the same synthetic records: the original {@code DataUtil.parseProfile},
+ * the byte parser's header only and {@link WodCast} paths, and full decoding of every level into
+ * a {@link WodCastBatch}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CastParsingBenchmark {
+    private static final int CASTS = 1000;
+
+    private String[] records;
+    private byte[][] recordBytes;
+    private WodAsciiParser parser;
+    private WodCastBatch batch;
+
+    @Setup
+    public void setUp() {
+        SyntheticWod generator = new SyntheticWod(42);
+        records = new String[CASTS];
+        recordBytes = new byte[CASTS][];
+        for (int i = 0; i < CASTS; i++) {
+            records[i] = generator.nextRecord();
+            recordBytes[i] = records[i].getBytes(StandardCharsets.US_ASCII);
+        }
+        parser = new WodAsciiParser();
+        batch = new WodCastBatch();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CASTS)
+    public void legacyParseProfile(Blackhole blackhole) {
+        for (String record : records) {
+            blackhole.consume(DataUtil.parseProfile(record, "ocldb1.OSD.gz"));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CASTS)
+    public void parseHeader(Blackhole blackhole) {
+        for (byte[] record : recordBytes) {
+            parser.parseHeader(record, 0, record.length);
+            blackhole.consume(parser.latitude());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CASTS)
+    public void parseWodCast(Blackhole blackhole) {
+        for (byte[] record : recordBytes) {
+            blackhole.consume(parser.parse(record, 0, record.length, "OSD"));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CASTS)
+    public void parseIntoBatch(Blackhole blackhole) {
+        batch.clear();
+        for (byte[] record : recordBytes) {
+            parser.parseInto(record, 0, record.length, batch);
+        }
+        blackhole.consume(batch.totalLevels());
+    }
+}
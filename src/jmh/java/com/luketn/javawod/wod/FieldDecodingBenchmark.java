@@ -0,0 +1,75 @@
+package com.luketn.javawod.wod;
+
+import com.luketn.DataUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Decoding of single signif/total/precision numeric fields: {@code DataUtil.readNumericFloat}
+ * against {@link WodAsciiParser}'s byte cursor, over the same run of latitude, longitude and
+ * temperature like values with a few missing ones.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FieldDecodingBenchmark {
+    private static final int FIELDS = 4096;
+
+    private String fieldsText;
+    private byte[] fieldsBytes;
+    private WodAsciiParser parser;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        StringBuilder fields = new StringBuilder();
+        for (int i = 0; i < FIELDS; i++) {
+            float value = switch (i % 3) {
+                case 0 -> Math.round((random.nextFloat() * 180 - 90) * 1000) / 1000f;
+                case 1 -> Math.round((random.nextFloat() * 360 - 180) * 1000) / 1000f;
+                default -> Math.round((random.nextFloat() * 30 - 2) * 100) / 100f;
+            };
+            fields.append(random.nextInt(50) == 0 ? "-" : WodRecords.value(value, i % 3 == 2 ? 2 : 3));
+        }
+        fieldsText = fields.toString();
+        fieldsBytes = fieldsText.getBytes(StandardCharsets.US_ASCII);
+        parser = new WodAsciiParser();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FIELDS)
+    public void legacyReadNumericFloat(Blackhole blackhole) throws IOException {
+        AtomicInteger pointer = new AtomicInteger();
+        for (int i = 0; i < FIELDS; i++) {
+            blackhole.consume(DataUtil.readNumericFloat(fieldsText, pointer));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FIELDS)
+    public void readScaled(Blackhole blackhole) {
+        parser.reset(fieldsBytes, 0, fieldsBytes.length);
+        for (int i = 0; i < FIELDS; i++) {
+            blackhole.consume(parser.readScaled("Value"));
+        }
+    }
+}
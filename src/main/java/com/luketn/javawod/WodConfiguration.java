@@ -0,0 +1,88 @@
+package com.luketn.javawod;
+
+import com.luketn.javawod.cube.AggregateCube;
+import com.luketn.javawod.ingest.IngestionEngine;
+import com.luketn.javawod.ingest.IngestionSettings;
+import com.luketn.javawod.ingest.ParseErrorSink;
+import com.luketn.javawod.live.DataDirectoryWatcher;
+import com.luketn.javawod.live.LiveWod;
+import com.luketn.javawod.live.WodSnapshot;
+import com.luketn.javawod.metrics.MicrometerIngestionListener;
+import com.luketn.javawod.metrics.ParseErrorsEndpoint;
+import com.luketn.javawod.query.CastPyramid;
+import com.luketn.javawod.stats.StatsKernel;
+import com.luketn.javawod.store.CastCache;
+import com.luketn.javawod.store.CastCatalog;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+@Configuration(proxyBeanMethods = false)
+public class WodConfiguration {
+
+    @Bean
+    public ParseErrorSink parseErrorSink(WodProperties properties) {
+        WodProperties.ParseErrors parseErrors = properties.parseErrors();
+        return new ParseErrorSink(parseErrors.sampleEvery(), parseErrors.maxPerSecond(), parseErrors.capacity());
+    }
+
+    @Bean
+    public ParseErrorsEndpoint parseErrorsEndpoint(ParseErrorSink parseErrorSink) {
+        return new ParseErrorsEndpoint(parseErrorSink);
+    }
+
+    /** Writes the offset index of each extract it ingests into the cache directory. */
+    @Bean
+    public IngestionEngine ingestionEngine(WodProperties properties, MeterRegistry meterRegistry,
+                                           ParseErrorSink parseErrorSink) {
+        return new IngestionEngine(IngestionSettings.defaults().withOffsetIndexDir(properties.cacheDir()),
+                new MicrometerIngestionListener(meterRegistry).andThen(parseErrorSink));
+    }
+
+    /** Keeps the cube and pyramid of each extract beside its cache file, computed as it is ingested. */
+    @Bean
+    public CastCache castCache(WodProperties properties, IngestionEngine ingestionEngine) {
+        return new CastCache(properties.cacheDir(), ingestionEngine, List.of(AggregateCube.PARTIAL, CastPyramid.PARTIAL));
+    }
+
+    /**
+     * Maps the cast cache, building it first for any extract in the data directory that is new
+     * or changed since the last start, combines the cube and pyramid partials of its files and
+     * builds the indexes over it.
+     */
+    @Bean(destroyMethod = "close")
+    public LiveWod liveWod(WodProperties properties, CastCache castCache) throws IOException, InterruptedException {
+        CastCatalog catalog;
+        if (!Files.isDirectory(properties.dataDir())) {
+            catalog = CastCatalog.empty();
+        } else {
+            List<Path> sources;
+            try (Stream<Path> files = Files.list(properties.dataDir())) {
+                sources = files.filter(file -> file.getFileName().toString().endsWith(".gz")).sorted().toList();
+            }
+            catalog = castCache.open(sources);
+        }
+        return new LiveWod(WodSnapshot.build(catalog, StatsKernel.preferred()));
+    }
+
+    /**
+     * Adds extracts arriving in the data directory to the live snapshot, unless disabled with
+     * {@code wod.watch.enabled=false}.
+     */
+    @Bean(destroyMethod = "close")
+    public DataDirectoryWatcher dataDirectoryWatcher(WodProperties properties, CastCache castCache, LiveWod liveWod)
+            throws IOException {
+        DataDirectoryWatcher watcher = new DataDirectoryWatcher(properties.dataDir(), castCache, liveWod,
+                properties.watch().settle());
+        if (properties.watch().enabled()) {
+            watcher.start();
+        }
+        return watcher;
+    }
+}
@@ -0,0 +1,45 @@
+package com.luketn.javawod;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Where the WOD extracts and the cast cache live.
+ *
+ * @param dataDir     directory holding the downloaded .gz extracts
+ * @param cacheDir    directory for the mapped cast cache files
+ * @param parseErrors how parse failures are sampled, see {@link com.luketn.javawod.ingest.ParseErrorSink}
+ * @param watch       whether and how new extracts are picked up while running, see
+ *                    {@link com.luketn.javawod.live.DataDirectoryWatcher}
+ */
+@ConfigurationProperties("wod")
+public record WodProperties(
+        @DefaultValue("data-raw") Path dataDir,
+        @DefaultValue("data-cache") Path cacheDir,
+        @DefaultValue ParseErrors parseErrors,
+        @DefaultValue Watch watch
+) {
+
+    /**
+     * @param sampleEvery  keep one in this many failures
+     * @param maxPerSecond most sampled failures logged a second
+     * @param capacity     number of recent failures held for the parseerrors endpoint
+     */
+    public record ParseErrors(
+            @DefaultValue("1") int sampleEvery,
+            @DefaultValue("10") int maxPerSecond,
+            @DefaultValue("200") int capacity
+    ) {}
+
+    /**
+     * @param enabled whether the data directory is watched for new extracts
+     * @param settle  how long a new extract must stay unchanged before it is ingested
+     */
+    public record Watch(
+            @DefaultValue("true") boolean enabled,
+            @DefaultValue("2s") Duration settle
+    ) {}
+}
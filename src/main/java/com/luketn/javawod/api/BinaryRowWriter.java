@@ -0,0 +1,84 @@
+package com.luketn.javawod.api;
+
+import com.luketn.javawod.store.CastTable;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Compact little-endian encoding of cast rows.
+ * <pre>
+ * header: magic "WODB" | u16 version | u16 row bytes | u8 instrument count
+ *         | per instrument: u8 length, ASCII code
+ * row:    i32 cast number | i64 epoch second | f32 latitude | f32 longitude | f32 surface temperature
+ *         | i32 levels | u8 instrument id | 2 ASCII country characters
+ * </pre>
+ * Rows follow the header until the end of the stream; missing values are NaN.
+ */
+final class BinaryRowWriter extends RowWriter {
+    static final int MAGIC = 0x42444F57; // "WODB" little-endian
+    static final int VERSION = 1;
+    static final int ROW_BYTES = 31;
+
+    private static final VarHandle SHORT = MethodHandles.byteArrayViewVarHandle(short[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle INT = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle LONG = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle FLOAT = MethodHandles.byteArrayViewVarHandle(float[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private final String[] instruments;
+
+    BinaryRowWriter(OutputStream out, List<String> instruments) {
+        super(out);
+        if (instruments.size() > 255) throw new IllegalArgumentException("More than 255 instruments");
+        this.instruments = instruments.toArray(String[]::new);
+    }
+
+    @Override
+    void begin() throws IOException {
+        reserve(9 + instruments.length * 256);
+        INT.set(buffer, position, MAGIC);
+        SHORT.set(buffer, position + 4, (short) VERSION);
+        SHORT.set(buffer, position + 6, (short) ROW_BYTES);
+        buffer[position + 8] = (byte) instruments.length;
+        position += 9;
+        for (String instrument : instruments) {
+            byte[] code = instrument.getBytes(StandardCharsets.US_ASCII);
+            buffer[position++] = (byte) code.length;
+            System.arraycopy(code, 0, buffer, position, code.length);
+            position += code.length;
+        }
+    }
+
+    @Override
+    void row(CastTable table, int cast) throws IOException {
+        reserve(ROW_BYTES);
+        int p = position;
+        INT.set(buffer, p, table.castNumber(cast));
+        LONG.set(buffer, p + 4, table.epochSecond(cast));
+        FLOAT.set(buffer, p + 12, table.latitude(cast));
+        FLOAT.set(buffer, p + 16, table.longitude(cast));
+        FLOAT.set(buffer, p + 20, table.surfaceTemperature(cast));
+        INT.set(buffer, p + 24, table.levelCount(cast));
+        buffer[p + 28] = (byte) instrumentId(table.instrument(cast));
+        char country = table.country(cast);
+        buffer[p + 29] = (byte) (country >> 8);
+        buffer[p + 30] = (byte) country;
+        position = p + ROW_BYTES;
+    }
+
+    private int instrumentId(String instrument) {
+        // the catalog hands out one String instance per file, so identity nearly always hits
+        for (int i = 0; i < instruments.length; i++) {
+            if (instruments[i] == instrument) return i;
+        }
+        for (int i = 0; i < instruments.length; i++) {
+            if (instruments[i].equals(instrument)) return i;
+        }
+        throw new IllegalStateException("Instrument " + instrument + " is not in the stream header");
+    }
+}
@@ -0,0 +1,73 @@
+package com.luketn.javawod.api;
+
+import com.luketn.javawod.query.CastQuery;
+import jakarta.ws.rs.BadRequestException;
+import jakarta.ws.rs.DefaultValue;
+import jakarta.ws.rs.QueryParam;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Query parameters selecting casts. {@code from}/{@code to} take an ISO-8601 date or instant,
+ * {@code to} being exclusive; {@code instrument} and {@code country} may be repeated.
+ */
+public class CastParams {
+    @QueryParam("minLat") @DefaultValue("-90")
+    public float minLatitude;
+    @QueryParam("maxLat") @DefaultValue("90")
+    public float maxLatitude;
+    @QueryParam("minLon") @DefaultValue("-180")
+    public float minLongitude;
+    @QueryParam("maxLon") @DefaultValue("180")
+    public float maxLongitude;
+    @QueryParam("from")
+    public String from;
+    @QueryParam("to")
+    public String to;
+    @QueryParam("instrument")
+    public List<String> instruments;
+    @QueryParam("country")
+    public List<String> countries;
+
+    public CastQuery toQuery() {
+        try {
+            return new CastQuery(minLatitude, maxLatitude, minLongitude, maxLongitude,
+                    epochSecond(from, Long.MIN_VALUE), epochSecond(to, Long.MAX_VALUE), set(instruments));
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException(e.getMessage(), e);
+        }
+    }
+
+    public Set<String> countries() {
+        return set(countries);
+    }
+
+    private static long epochSecond(String value, long unbounded) {
+        if (value == null || value.isBlank()) return unbounded;
+        try {
+            return value.length() == 10
+                    ? LocalDate.parse(value).atStartOfDay(ZoneOffset.UTC).toEpochSecond()
+                    : Instant.parse(value).getEpochSecond();
+        } catch (DateTimeParseException e) {
+            throw new BadRequestException("Not an ISO-8601 date or instant: " + value, e);
+        }
+    }
+
+    private static Set<String> set(List<String> values) {
+        Set<String> set = new HashSet<>();
+        if (values != null) {
+            for (String value : values) {
+                for (String part : value.split(",")) {
+                    if (!part.isBlank()) set.add(part.strip().toUpperCase());
+                }
+            }
+        }
+        return set;
+    }
+}
@@ -0,0 +1,67 @@
+package com.luketn.javawod.api;
+
+import com.luketn.javawod.live.LiveWod;
+import com.luketn.javawod.live.WodSnapshot;
+import jakarta.ws.rs.BadRequestException;
+import jakarta.ws.rs.BeanParam;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.QueryParam;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.StreamingOutput;
+import org.springframework.stereotype.Component;
+
+/**
+ * Casts in a bounding box and time range, optionally limited to instruments and countries.
+ * <p>
+ * NDJSON is the default; a client sending {@code Accept: application/octet-stream} gets the
+ * compact binary rows described on {@link BinaryRowWriter}. Either way the rows are streamed
+ * from the index and cast columns as they are found.
+ * <p>
+ * With {@code maxPoints} the response is a level-of-detail sample for drawing the box as a map
+ * viewport: at most that many casts, spread evenly over it and the same on every request, at a
+ * cost set by the budget rather than the size of the box, see
+ * {@link com.luketn.javawod.query.CastPyramid#sample}.
+ */
+@Component
+@Path("/casts")
+public class CastResource {
+    private static final int MAX_POINTS = 100_000;
+
+    private final LiveWod live;
+
+    public CastResource(LiveWod live) {
+        this.live = live;
+    }
+
+    @GET
+    @Produces("application/x-ndjson")
+    public Response ndjson(@BeanParam CastParams params, @QueryParam("maxPoints") Integer maxPoints) {
+        return stream(params, maxPoints, CastStream.Format.NDJSON);
+    }
+
+    @GET
+    @Produces("application/octet-stream;qs=0.5")
+    public Response binary(@BeanParam CastParams params, @QueryParam("maxPoints") Integer maxPoints) {
+        return stream(params, maxPoints, CastStream.Format.BINARY);
+    }
+
+    private Response stream(CastParams params, Integer maxPoints, CastStream.Format format) {
+        if (maxPoints != null && maxPoints > MAX_POINTS) {
+            throw new BadRequestException("maxPoints exceeds " + MAX_POINTS);
+        }
+        CastStream stream;
+        WodSnapshot snapshot = live.current();
+        try {
+            stream = maxPoints == null
+                    ? new CastStream(snapshot.catalog(), snapshot.index(), params.toQuery(), params.countries(), format)
+                    : CastStream.sampled(snapshot.catalog(), snapshot.index(), snapshot.pyramid(), maxPoints,
+                            params.toQuery(), params.countries(), format);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException(e.getMessage(), e);
+        }
+        StreamingOutput output = stream::write;
+        return Response.ok(output, format.mediaType()).build();
+    }
+}
@@ -0,0 +1,119 @@
+package com.luketn.javawod.api;
+
+import com.luketn.javawod.query.CastPyramid;
+import com.luketn.javawod.query.CastQuery;
+import com.luketn.javawod.query.SpatioTemporalIndex;
+import com.luketn.javawod.store.CastTable;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Set;
+
+/**
+ * The casts matching a query, written to a stream as they are found in the index. Nothing is
+ * collected first, so a result of millions of casts streams with constant heap.
+ * <p>
+ * A {@link #sampled} stream writes an evenly spread sample of at most a point budget of them
+ * instead, from the {@link CastPyramid}, for drawing a map viewport.
+ */
+public final class CastStream {
+    public enum Format {
+        NDJSON("application/x-ndjson"),
+        BINARY("application/octet-stream");
+
+        private final String mediaType;
+
+        Format(String mediaType) {
+            this.mediaType = mediaType;
+        }
+
+        public String mediaType() {
+            return mediaType;
+        }
+    }
+
+    private final CastTable table;
+    private final SpatioTemporalIndex index;
+    private final CastQuery query;
+    private final char[] countries;
+    private final Format format;
+    private final CastPyramid pyramid;
+    private final int maxPoints;
+
+    /**
+     * @param countries two letter country codes to keep; empty keeps every country
+     */
+    public CastStream(CastTable table, SpatioTemporalIndex index, CastQuery query, Set<String> countries, Format format) {
+        this(table, index, query, countries, format, null, 0);
+    }
+
+    private CastStream(CastTable table, SpatioTemporalIndex index, CastQuery query, Set<String> countries, Format format,
+                       CastPyramid pyramid, int maxPoints) {
+        this.table = table;
+        this.index = index;
+        this.query = query;
+        this.countries = new char[countries.size()];
+        int i = 0;
+        for (String country : countries) {
+            if (country.length() != 2) throw new IllegalArgumentException("Country code must be two characters: " + country);
+            this.countries[i++] = CastTable.country(country);
+        }
+        this.format = format;
+        this.pyramid = pyramid;
+        this.maxPoints = maxPoints;
+    }
+
+    /**
+     * A stream of at most {@code maxPoints} of the matching casts, sampled by the pyramid, which
+     * must cover the same casts as the index.
+     */
+    public static CastStream sampled(CastTable table, SpatioTemporalIndex index, CastPyramid pyramid, int maxPoints,
+                                     CastQuery query, Set<String> countries, Format format) {
+        if (maxPoints < 1) throw new IllegalArgumentException("maxPoints must be at least 1: " + maxPoints);
+        return new CastStream(table, index, query, countries, format, pyramid, maxPoints);
+    }
+
+    public Format format() {
+        return format;
+    }
+
+    public void write(OutputStream out) throws IOException {
+        RowWriter writer = switch (format) {
+            case NDJSON -> new NdjsonRowWriter(out);
+            case BINARY -> new BinaryRowWriter(out, index.instruments());
+        };
+        writer.begin();
+        if (pyramid != null) {
+            // bounded by the budget, so collected before writing
+            for (int cast : pyramid.sample(table, query, maxPoints, this::matchesCountry)) {
+                writer.row(table, cast);
+            }
+            writer.finish();
+            return;
+        }
+        try {
+            index.forEach(query, cast -> {
+                if (!matchesCountry(cast)) return;
+                try {
+                    writer.row(table, cast);
+                } catch (IOException e) {
+                    // most likely the client went away; abandon the scan
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        writer.finish();
+    }
+
+    private boolean matchesCountry(int cast) {
+        if (countries.length == 0) return true;
+        char country = table.country(cast);
+        for (char wanted : countries) {
+            if (wanted == country) return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,89 @@
+package com.luketn.javawod.api;
+
+import com.luketn.javawod.cube.AggregateCube;
+import com.luketn.javawod.cube.CubeQuery;
+import com.luketn.javawod.cube.CubeSlice;
+import com.luketn.javawod.cube.Period;
+import com.luketn.javawod.live.LiveWod;
+import jakarta.ws.rs.BadRequestException;
+import jakarta.ws.rs.DefaultValue;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.QueryParam;
+import jakarta.ws.rs.core.MediaType;
+import org.springframework.stereotype.Component;
+
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Slices of the {@link AggregateCube}: temperature statistics per cell, period and depth band,
+ * e.g. {@code /api/cube?cellDegrees=5&period=month_of_year} for a global monthly climatology.
+ * {@code from}/{@code to} are year-months ({@code 1975-06}), {@code to} being exclusive.
+ */
+@Component
+@Path("/cube")
+public class CubeResource {
+    private static final int MAX_ROWS = 1_000_000;
+
+    private final LiveWod live;
+
+    public CubeResource(LiveWod live) {
+        this.live = live;
+    }
+
+    public record Row(float latitude, float longitude, String period, float depthFrom, Float depthTo,
+                      long count, double mean, double standardDeviation, float min, float max) {}
+
+    public record Slice(int cellDegrees, Period period, List<Row> cells) {}
+
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    public Slice slice(@QueryParam("minLat") @DefaultValue("-90") float minLatitude,
+                       @QueryParam("maxLat") @DefaultValue("90") float maxLatitude,
+                       @QueryParam("minLon") @DefaultValue("-180") float minLongitude,
+                       @QueryParam("maxLon") @DefaultValue("180") float maxLongitude,
+                       @QueryParam("from") String from,
+                       @QueryParam("to") String to,
+                       @QueryParam("minDepth") @DefaultValue("0") float minDepth,
+                       @QueryParam("maxDepth") @DefaultValue("Infinity") float maxDepth,
+                       @QueryParam("cellDegrees") @DefaultValue("5") int cellDegrees,
+                       @QueryParam("period") @DefaultValue("month_of_year") String period,
+                       @QueryParam("mergeDepths") @DefaultValue("false") boolean mergeDepths) {
+        CubeQuery query;
+        try {
+            query = new CubeQuery(minLatitude, maxLatitude, minLongitude, maxLongitude,
+                    month(from, Integer.MIN_VALUE), month(to, Integer.MAX_VALUE), minDepth, maxDepth,
+                    cellDegrees, Period.valueOf(period.toUpperCase(Locale.ROOT).replace('-', '_')), mergeDepths);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException(e.getMessage(), e);
+        }
+        CubeSlice slice = live.current().cube().slice(query);
+        if (slice.size() > MAX_ROWS) {
+            throw new BadRequestException(slice.size() + " cells exceed the limit of " + MAX_ROWS
+                    + ", use larger cells, a coarser period or a smaller box");
+        }
+        List<Row> rows = new ArrayList<>(slice.size());
+        for (int i = 0; i < slice.size(); i++) {
+            float depthTo = slice.depthTo(i);
+            rows.add(new Row(slice.cellMinLatitude(i), slice.cellMinLongitude(i), slice.periodLabel(i),
+                    slice.depthFrom(i), Float.isInfinite(depthTo) ? null : depthTo,
+                    slice.count(i), slice.mean(i), slice.standardDeviation(i), slice.min(i), slice.max(i)));
+        }
+        return new Slice(query.cellDegrees(), query.period(), rows);
+    }
+
+    private static int month(String value, int unbounded) {
+        if (value == null || value.isBlank()) return unbounded;
+        try {
+            YearMonth month = YearMonth.parse(value);
+            return CubeQuery.monthIndex(month.getYear(), month.getMonthValue());
+        } catch (DateTimeParseException e) {
+            throw new BadRequestException("Not a year-month (yyyy-MM): " + value, e);
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.luketn.javawod.api;
+
+import jakarta.ws.rs.ApplicationPath;
+import org.glassfish.jersey.server.ResourceConfig;
+import org.springframework.stereotype.Component;
+
+/**
+ * JAX-RS resources, served under {@code /api} so Jersey leaves the rest of the path space to
+ * Spring MVC.
+ */
+@Component
+@ApplicationPath("/api")
+public class JerseyConfig extends ResourceConfig {
+    public JerseyConfig() {
+        register(CastResource.class);
+        register(CubeResource.class);
+        register(StatsResource.class);
+        register(NearestResource.class);
+    }
+}
@@ -0,0 +1,154 @@
+package com.luketn.javawod.api;
+
+import com.luketn.javawod.store.CastTable;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes one JSON object per line:
+ * <pre>
+ * {"castNumber":123,"instrument":"OSD","timestamp":"1975-06-15T00:00:00Z","country":"AU","latitude":-12.3,"longitude":123,"temperature":14.5,"levels":3}
+ * </pre>
+ * Numbers are formatted by hand into the buffer, rounded to 4 decimals (finer than any WOD
+ * precision) with trailing zeros dropped. A missing value is written as {@code null}.
+ */
+final class NdjsonRowWriter extends RowWriter {
+    private static final int MAX_ROW_BYTES = 256;
+    private static final byte[] HEX = "0123456789abcdef".getBytes();
+
+    NdjsonRowWriter(OutputStream out) {
+        super(out);
+    }
+
+    @Override
+    void row(CastTable table, int cast) throws IOException {
+        String instrument = table.instrument(cast);
+        reserve(MAX_ROW_BYTES + instrument.length() * 6);
+        ascii("{\"castNumber\":");
+        number(table.castNumber(cast));
+        ascii(",\"instrument\":");
+        string(instrument);
+        ascii(",\"timestamp\":\"");
+        timestamp(table.epochSecond(cast));
+        ascii("\",\"country\":");
+        char country = table.country(cast);
+        if (country == 0) {
+            ascii("null");
+        } else {
+            buffer[position++] = '"';
+            character((char) (country >> 8));
+            character((char) (country & 0xFF));
+            buffer[position++] = '"';
+        }
+        ascii(",\"latitude\":");
+        decimal(table.latitude(cast));
+        ascii(",\"longitude\":");
+        decimal(table.longitude(cast));
+        ascii(",\"temperature\":");
+        decimal(table.surfaceTemperature(cast));
+        ascii(",\"levels\":");
+        number(table.levelCount(cast));
+        ascii("}\n");
+    }
+
+    private void ascii(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            buffer[position++] = (byte) text.charAt(i);
+        }
+    }
+
+    private void string(String text) {
+        buffer[position++] = '"';
+        for (int i = 0; i < text.length(); i++) {
+            character(text.charAt(i));
+        }
+        buffer[position++] = '"';
+    }
+
+    private void character(char c) {
+        if (c == '"' || c == '\\') {
+            buffer[position++] = '\\';
+            buffer[position++] = (byte) c;
+        } else if (c < 0x20 || c > 0x7E) {
+            ascii("\\u00");
+            buffer[position++] = HEX[c >> 4 & 0xF];
+            buffer[position++] = HEX[c & 0xF];
+        } else {
+            buffer[position++] = (byte) c;
+        }
+    }
+
+    private void number(long value) {
+        if (value < 0) {
+            buffer[position++] = '-';
+            value = -value;
+        }
+        int start = position;
+        do {
+            buffer[position++] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        for (int i = start, j = position - 1; i < j; i++, j--) {
+            byte b = buffer[i];
+            buffer[i] = buffer[j];
+            buffer[j] = b;
+        }
+    }
+
+    private void decimal(float value) {
+        if (Float.isNaN(value) || Float.isInfinite(value)) {
+            ascii("null");
+            return;
+        }
+        long scaled = Math.round(value * 10_000d);
+        if (scaled < 0) {
+            buffer[position++] = '-';
+            scaled = -scaled;
+        }
+        number(scaled / 10_000);
+        int fraction = (int) (scaled % 10_000);
+        if (fraction == 0) return;
+        buffer[position++] = '.';
+        for (int divisor = 1000; fraction != 0; divisor /= 10) {
+            buffer[position++] = (byte) ('0' + fraction / divisor);
+            fraction %= divisor;
+        }
+    }
+
+    /** ISO-8601 UTC timestamp, the civil date from days algorithm avoids allocating a LocalDate per row. */
+    private void timestamp(long epochSecond) {
+        long days = Math.floorDiv(epochSecond, 86_400L);
+        int secondOfDay = (int) Math.floorMod(epochSecond, 86_400L);
+        long z = days + 719_468;
+        long era = Math.floorDiv(z, 146_097);
+        long dayOfEra = z - era * 146_097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36_524 - dayOfEra / 146_096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long mp = (5 * dayOfYear + 2) / 153;
+        int day = (int) (dayOfYear - (153 * mp + 2) / 5 + 1);
+        int month = (int) (mp < 10 ? mp + 3 : mp - 9);
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+
+        digits((int) year, 4);
+        buffer[position++] = '-';
+        digits(month, 2);
+        buffer[position++] = '-';
+        digits(day, 2);
+        buffer[position++] = 'T';
+        digits(secondOfDay / 3600, 2);
+        buffer[position++] = ':';
+        digits(secondOfDay / 60 % 60, 2);
+        buffer[position++] = ':';
+        digits(secondOfDay % 60, 2);
+        buffer[position++] = 'Z';
+    }
+
+    private void digits(int value, int width) {
+        for (int i = position + width - 1; i >= position; i--) {
+            buffer[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        position += width;
+    }
+}
@@ -0,0 +1,109 @@
+package com.luketn.javawod.api;
+
+import com.luketn.javawod.live.LiveWod;
+import com.luketn.javawod.live.WodSnapshot;
+import com.luketn.javawod.query.CastQuery;
+import com.luketn.javawod.query.NearestCastIndex;
+import com.luketn.javawod.query.NearestQuery;
+import com.luketn.javawod.query.Neighbours;
+import com.luketn.javawod.store.CastCatalog;
+import com.luketn.javawod.store.CastTable;
+import jakarta.ws.rs.BadRequestException;
+import jakarta.ws.rs.BeanParam;
+import jakarta.ws.rs.DefaultValue;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.QueryParam;
+import jakarta.ws.rs.core.MediaType;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Casts nearest a position by great-circle distance, from the {@link NearestCastIndex}, e.g.
+ * {@code /api/nearest?lat=-33.87&lon=151.21&k=20&from=1990-01-01&instrument=CTD}, or every cast
+ * within a radius with {@code /api/nearest/radius?lat=-33.87&lon=151.21&radiusKm=100}. The time
+ * and instrument parameters of {@link CastParams} filter the casts considered; a bounding box
+ * or country does not apply. Rows are nearest first.
+ */
+@Component
+@Path("/nearest")
+public class NearestResource {
+    private static final int MAX_ROWS = 10_000;
+
+    private final LiveWod live;
+
+    public NearestResource(LiveWod live) {
+        this.live = live;
+    }
+
+    public record Row(int castNumber, String instrument, String timestamp, String country, float latitude,
+                      float longitude, double distanceKm) {}
+
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    public List<Row> nearest(@QueryParam("lat") Double latitude,
+                             @QueryParam("lon") Double longitude,
+                             @QueryParam("k") @DefaultValue("10") int k,
+                             @BeanParam CastParams params) {
+        if (k > MAX_ROWS) throw new BadRequestException("k exceeds " + MAX_ROWS);
+        NearestQuery query = toQuery(latitude, longitude, params);
+        WodSnapshot snapshot = live.current();
+        try {
+            return rows(snapshot.catalog(), snapshot.nearest().nearest(query, k));
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException(e.getMessage(), e);
+        }
+    }
+
+    @GET
+    @Path("/radius")
+    @Produces(MediaType.APPLICATION_JSON)
+    public List<Row> within(@QueryParam("lat") Double latitude,
+                            @QueryParam("lon") Double longitude,
+                            @QueryParam("radiusKm") Double radiusKm,
+                            @QueryParam("limit") @DefaultValue("1000") int limit,
+                            @BeanParam CastParams params) {
+        if (radiusKm == null) throw new BadRequestException("radiusKm is required");
+        if (limit > MAX_ROWS) throw new BadRequestException("limit exceeds " + MAX_ROWS);
+        NearestQuery query = toQuery(latitude, longitude, params);
+        WodSnapshot snapshot = live.current();
+        try {
+            return rows(snapshot.catalog(), snapshot.nearest().within(query, radiusKm, limit));
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException(e.getMessage(), e);
+        }
+    }
+
+    private static NearestQuery toQuery(Double latitude, Double longitude, CastParams params) {
+        if (latitude == null || longitude == null) throw new BadRequestException("lat and lon are required");
+        if (!params.countries().isEmpty()) throw new BadRequestException("country is not supported by /nearest");
+        if (params.minLatitude != -90 || params.maxLatitude != 90 || params.minLongitude != -180
+                || params.maxLongitude != 180) {
+            throw new BadRequestException("A bounding box is not supported by /nearest");
+        }
+        CastQuery filter = params.toQuery();
+        try {
+            return new NearestQuery(latitude, longitude, filter.fromEpochSecond(), filter.toEpochSecond(),
+                    filter.instruments());
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException(e.getMessage(), e);
+        }
+    }
+
+    private static List<Row> rows(CastCatalog catalog, Neighbours neighbours) {
+        List<Row> rows = new ArrayList<>(neighbours.size());
+        for (int i = 0; i < neighbours.size(); i++) {
+            int cast = neighbours.cast(i);
+            char country = catalog.country(cast);
+            rows.add(new Row(catalog.castNumber(cast), catalog.instrument(cast),
+                    Instant.ofEpochSecond(catalog.epochSecond(cast)).toString(),
+                    country == 0 ? null : CastTable.countryCode(country),
+                    catalog.latitude(cast), catalog.longitude(cast), neighbours.distanceKm(i)));
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,43 @@
+package com.luketn.javawod.api;
+
+import com.luketn.javawod.store.CastTable;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Encodes cast rows into a reused byte buffer, flushing it to the response stream whenever the
+ * next row might not fit. Rows are read straight from the {@link CastTable} columns, so the heap
+ * used does not grow with the number of rows written.
+ */
+abstract class RowWriter {
+    private static final int BUFFER_BYTES = 64 * 1024;
+
+    protected final byte[] buffer = new byte[BUFFER_BYTES];
+    protected int position;
+    private final OutputStream out;
+
+    RowWriter(OutputStream out) {
+        this.out = out;
+    }
+
+    /** Writes anything that precedes the first row. */
+    void begin() throws IOException {}
+
+    abstract void row(CastTable table, int cast) throws IOException;
+
+    void finish() throws IOException {
+        flush();
+        out.flush();
+    }
+
+    /** Makes room for {@code bytes} more bytes in the buffer. */
+    protected void reserve(int bytes) throws IOException {
+        if (position + bytes > buffer.length) flush();
+    }
+
+    private void flush() throws IOException {
+        out.write(buffer, 0, position);
+        position = 0;
+    }
+}
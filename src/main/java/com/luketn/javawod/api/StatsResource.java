@@ -0,0 +1,75 @@
+package com.luketn.javawod.api;
+
+import com.luketn.javawod.live.LiveWod;
+import com.luketn.javawod.query.CastQuery;
+import com.luketn.javawod.stats.ColumnStats;
+import com.luketn.javawod.stats.Histogram;
+import com.luketn.javawod.stats.LevelFilter;
+import com.luketn.javawod.stats.RegionStats;
+import jakarta.ws.rs.BadRequestException;
+import jakarta.ws.rs.BeanParam;
+import jakarta.ws.rs.DefaultValue;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.QueryParam;
+import jakarta.ws.rs.core.MediaType;
+import org.springframework.stereotype.Component;
+
+/**
+ * Ad hoc temperature statistics over every level of the casts matching the {@link CastParams},
+ * computed on request by {@link RegionStats}, e.g.
+ * {@code /api/stats?minLat=-45&maxLat=-30&minLon=140&maxLon=155&maxDepth=200&bins=40}. Levels are
+ * filtered by QC flag ({@code maxQc}, 0 keeps accepted values only) and depth; with {@code bins}
+ * a histogram over {@code histogramFrom .. histogramTo} is included. Country filters do not apply.
+ */
+@Component
+@Path("/stats")
+public class StatsResource {
+    private final LiveWod live;
+
+    public StatsResource(LiveWod live) {
+        this.live = live;
+    }
+
+    public record Stats(long count, Double mean, Double standardDeviation, Float min, Float max, Bins histogram) {}
+
+    public record Bins(float from, float to, long[] counts) {}
+
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    public Stats stats(@BeanParam CastParams params,
+                       @QueryParam("maxQc") @DefaultValue("0") int maxQc,
+                       @QueryParam("minDepth") @DefaultValue("0") float minDepth,
+                       @QueryParam("maxDepth") @DefaultValue("Infinity") float maxDepth,
+                       @QueryParam("bins") @DefaultValue("0") int bins,
+                       @QueryParam("histogramFrom") @DefaultValue("-2") float histogramFrom,
+                       @QueryParam("histogramTo") @DefaultValue("35") float histogramTo) {
+        if (!params.countries().isEmpty()) {
+            throw new BadRequestException("country is not supported by /stats");
+        }
+        CastQuery query = params.toQuery();
+        // one snapshot for both passes, so the histogram counts the same levels as the statistics
+        RegionStats regionStats = live.current().regionStats();
+        try {
+            LevelFilter filter = LevelFilter.accepted().withMaxQc(maxQc).withDepths(minDepth, maxDepth);
+            ColumnStats stats = regionStats.temperature(query, filter);
+            Bins histogram = null;
+            if (bins > 0) {
+                Histogram counts = regionStats.temperatureHistogram(query, filter, histogramFrom, histogramTo, bins);
+                long[] values = new long[counts.bins()];
+                for (int bin = 0; bin < values.length; bin++) values[bin] = counts.count(bin);
+                histogram = new Bins(histogramFrom, histogramTo, values);
+            }
+            boolean empty = stats.count() == 0;
+            return new Stats(stats.count(),
+                    empty ? null : stats.mean(),
+                    empty ? null : Math.sqrt(stats.variance()),
+                    empty ? null : stats.min(),
+                    empty ? null : stats.max(),
+                    histogram);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException(e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,417 @@
+package com.luketn.javawod.cube;
+
+import com.luketn.javawod.ingest.CastBatchSink;
+import com.luketn.javawod.ingest.LongLongHashMap;
+import com.luketn.javawod.store.CastCatalog;
+import com.luketn.javawod.store.CastTable;
+import com.luketn.javawod.store.MappedCastFile;
+import com.luketn.javawod.store.SourcePartial;
+import com.luketn.javawod.wod.WodCastBatch;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Precomputed temperature statistics per 1 degree grid cell, year-month and {@link DepthBands
+ * depth band}.
+ * <p>
+ * Only non empty entries are stored. Each entry is keyed by {@code time << 24 | band << 16 | cell}
+ * and the keys are sorted, so a month range is a binary search away; the statistics live in
+ * parallel primitive arrays beside the keys. Slices roll the selected entries up to coarser cells,
+ * periods and depth ranges on request. A second layer holding the cube already rolled up to month
+ * of year answers climatologies over all years without touching the monthly entries.
+ * <p>
+ * The cube is built at ingest: {@link #PARTIAL} has the {@link com.luketn.javawod.store.CastCache}
+ * accumulate each source's cube from its decoded batches and {@link #write} it beside the source's
+ * cache file, and startup {@link #read}s those and {@link #sum}s them.
+ * <p>
+ * Only temperatures with an accepted QC flag (0) at a known depth are counted. Immutable once
+ * built and safe to query from any thread.
+ */
+public final class AggregateCube {
+    public static final int CELL_DEGREES = 1;
+    static final int ROWS = 180;
+    static final int COLUMNS = 360;
+    private static final int TEMPERATURE = 1;
+    private static final int MAX_DENSE_SLOTS = 1 << 22;
+    private static final int MAGIC = 0x574F4451; // "WODQ"
+    private static final int VERSION = 1;
+
+    /** The cube of each source, written beside its cache file as {@code <source>.cube}. */
+    public static final SourcePartial PARTIAL = new SourcePartial() {
+        @Override
+        public String suffix() {
+            return ".cube";
+        }
+
+        @Override
+        public SourcePartial.Builder builder() {
+            AggregateCube.Builder cube = AggregateCube.builder();
+            return new SourcePartial.Builder() {
+                @Override
+                public void accept(WodCastBatch batch) {
+                    cube.accept(batch);
+                }
+
+                @Override
+                public void write(Path target, MappedCastFile cached) throws IOException {
+                    cube.build().write(target);
+                }
+            };
+        }
+    };
+
+    private final Layer monthly;
+    private final Layer climatology;
+
+    private AggregateCube(Layer monthly, Layer climatology) {
+        this.monthly = monthly;
+        this.climatology = climatology;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /** Builds the cube by reading every level of the catalog. */
+    public static AggregateCube build(CastCatalog catalog) {
+        Builder builder = builder();
+        // per file rather than through the catalog, which would resolve the file on every level
+        for (MappedCastFile file : catalog.files()) {
+            builder.add(file);
+        }
+        return builder.build();
+    }
+
+    /** Number of non empty (cell, month, depth band) entries. */
+    public int size() {
+        return monthly.keys.length;
+    }
+
+    /**
+     * A cube holding the statistics of both cubes, e.g. of this cube and of the casts of a file
+     * ingested since it was built. Entries present in both are merged; neither cube is changed.
+     */
+    public AggregateCube plus(AggregateCube other) {
+        return new AggregateCube(monthly.plus(other.monthly), climatology.plus(other.climatology));
+    }
+
+    /**
+     * A cube holding the statistics of all the cubes, e.g. of every source. The cubes are merged
+     * in pairs, then the pairs in pairs, so each entry is copied a logarithmic number of times
+     * rather than once per cube.
+     */
+    public static AggregateCube sum(List<AggregateCube> cubes) {
+        if (cubes.isEmpty()) return builder().build();
+        List<AggregateCube> merged = cubes;
+        while (merged.size() > 1) {
+            List<AggregateCube> pairs = new ArrayList<>((merged.size() + 1) / 2);
+            for (int i = 0; i < merged.size(); i += 2) {
+                pairs.add(i + 1 < merged.size() ? merged.get(i).plus(merged.get(i + 1)) : merged.get(i));
+            }
+            merged = pairs;
+        }
+        return merged.getFirst();
+    }
+
+    /**
+     * Writes the monthly entries, from which {@link #read} derives the rest, replacing any
+     * existing file atomically.
+     */
+    public void write(Path target) throws IOException {
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        StatsColumns stats = monthly.stats;
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 64 * 1024))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(monthly.keys.length);
+            for (int i = 0; i < monthly.keys.length; i++) {
+                out.writeLong(monthly.keys[i]);
+                out.writeLong(stats.count[i]);
+                out.writeDouble(stats.sum[i]);
+                out.writeDouble(stats.sumSquares[i]);
+                out.writeFloat(stats.min[i]);
+                out.writeFloat(stats.max[i]);
+            }
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Reads a cube written by {@link #write}.
+     *
+     * @throws IOException if the file cannot be read or is not a cube file of this version
+     */
+    public static AggregateCube read(Path path) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 64 * 1024))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not a cube file of version " + VERSION + ": " + path);
+            }
+            int size = in.readInt();
+            long[] keys = new long[size];
+            StatsColumns stats = new StatsColumns(Math.max(16, size));
+            for (int i = 0; i < size; i++) {
+                keys[i] = in.readLong();
+                int slot = stats.newSlot();
+                stats.count[slot] = in.readLong();
+                stats.sum[slot] = in.readDouble();
+                stats.sumSquares[slot] = in.readDouble();
+                stats.min[slot] = in.readFloat();
+                stats.max[slot] = in.readFloat();
+            }
+            Layer monthly = new Layer(keys, stats);
+            return new AggregateCube(monthly, climatologyOf(monthly));
+        }
+    }
+
+    public CubeSlice slice(CubeQuery query) {
+        boolean climate = query.allMonths() && (query.period() == Period.MONTH_OF_YEAR || query.period() == Period.ALL);
+        Layer layer = climate ? climatology : monthly;
+        long fromKey = climate ? 0 : (long) Math.max(0, query.fromMonth()) << 24;
+        long toKey = climate ? Long.MAX_VALUE : (long) query.toMonth() << 24;
+        int start = lowerBound(layer.keys, fromKey);
+        int end = lowerBound(layer.keys, toKey);
+
+        int firstBand = -1;
+        int lastBand = -1;
+        for (int band = 0; band < DepthBands.count(); band++) {
+            if (DepthBands.from(band) < query.maxDepth() && DepthBands.to(band) > query.minDepth()) {
+                if (firstBand < 0) firstBand = band;
+                lastBand = band;
+            }
+        }
+        int factor = query.cellDegrees() / CELL_DEGREES;
+        int coarseCells = ROWS / factor * (COLUMNS / factor);
+        int[] outCells = outCells(query, factor);
+
+        // output keys are (period, band, cell); when few enough are possible they are looked up in
+        // a dense table rather than hashed
+        int firstPeriod = start < end ? query.period().of(timeOf(layer.keys[start])) : 0;
+        int lastPeriod = start < end ? query.period().of(timeOf(layer.keys[end - 1])) : 0;
+        if (query.period() == Period.MONTH_OF_YEAR) {
+            firstPeriod = 0;
+            lastPeriod = 11;
+        }
+        long space = (lastPeriod - firstPeriod + 1L) * DepthBands.count() * coarseCells;
+        int[] dense = null;
+        if (space <= MAX_DENSE_SLOTS) {
+            dense = new int[(int) space];
+            Arrays.fill(dense, -1);
+        }
+
+        LongLongHashMap slots = new LongLongHashMap(1024);
+        StatsColumns stats = new StatsColumns(1024);
+        long lastKey = -1;
+        int lastSlot = -1;
+        for (int i = start; i < end && firstBand >= 0; i++) {
+            long key = layer.keys[i];
+            int outCell = outCells[(int) (key & 0xFFFF)];
+            int band = (int) (key >>> 16 & 0xFF);
+            if (outCell < 0 || band < firstBand || band > lastBand) continue;
+            int period = query.period().of(timeOf(key));
+            int outBand = query.mergeDepths() ? firstBand : band;
+            long outKey = (long) period << 32 | (long) outBand << 24 | outCell;
+            if (outKey != lastKey) {
+                if (dense != null) {
+                    int index = ((period - firstPeriod) * DepthBands.count() + outBand) * coarseCells + outCell;
+                    lastSlot = dense[index];
+                    if (lastSlot < 0) {
+                        lastSlot = stats.newSlot();
+                        dense[index] = lastSlot;
+                    }
+                } else {
+                    lastSlot = (int) slots.get(outKey, -1);
+                    if (lastSlot < 0) {
+                        lastSlot = stats.newSlot();
+                        slots.put(outKey, lastSlot);
+                    }
+                }
+                lastKey = outKey;
+            }
+            stats.merge(lastSlot, layer.stats, i);
+        }
+        Layer result = dense != null ? denseLayer(dense, stats, firstPeriod, coarseCells) : Layer.sorted(slots, stats);
+        return new CubeSlice(query, result.keys, result.stats, lastBand);
+    }
+
+    /** The dense table is already in key order, so the output needs no sort. */
+    private static Layer denseLayer(int[] dense, StatsColumns stats, int firstPeriod, int coarseCells) {
+        long[] keys = new long[stats.size];
+        int[] order = new int[stats.size];
+        int size = 0;
+        for (int index = 0; index < dense.length; index++) {
+            if (dense[index] < 0) continue;
+            int cell = index % coarseCells;
+            int band = index / coarseCells % DepthBands.count();
+            int period = firstPeriod + index / coarseCells / DepthBands.count();
+            keys[size] = (long) period << 32 | (long) band << 24 | cell;
+            order[size++] = dense[index];
+        }
+        return new Layer(keys, stats.permute(order));
+    }
+
+    private static int timeOf(long key) {
+        return (int) (key >>> 24);
+    }
+
+    /** Output cell of every base cell whose centre is in the box, -1 for the others. */
+    private static int[] outCells(CubeQuery query, int factor) {
+        int[] outCells = new int[ROWS * COLUMNS];
+        Arrays.fill(outCells, -1);
+        for (int row = 0; row < ROWS; row++) {
+            float latitude = -90 + (row + 0.5f) * CELL_DEGREES;
+            if (latitude < query.minLatitude() || latitude > query.maxLatitude()) continue;
+            for (int column = 0; column < COLUMNS; column++) {
+                if (query.containsCellCentre(latitude, -180 + (column + 0.5f) * CELL_DEGREES)) {
+                    outCells[row * COLUMNS + column] = row / factor * (COLUMNS / factor) + column / factor;
+                }
+            }
+        }
+        return outCells;
+    }
+
+    private static int lowerBound(long[] keys, long key) {
+        int low = 0;
+        int high = keys.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (keys[mid] < key) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+
+    static int cell(float latitude, float longitude) {
+        int row = Math.max(0, Math.min(ROWS - 1, (int) Math.floor((latitude + 90) / CELL_DEGREES)));
+        int column = Math.max(0, Math.min(COLUMNS - 1, (int) Math.floor((longitude + 180) / CELL_DEGREES)));
+        return row * COLUMNS + column;
+    }
+
+    /** Sorted keys with their statistics. */
+    private record Layer(long[] keys, StatsColumns stats) {
+        static Layer sorted(LongLongHashMap slots, StatsColumns stats) {
+            long[] keys = new long[slots.size()];
+            int[] count = {0};
+            slots.forEach((key, slot) -> keys[count[0]++] = key);
+            Arrays.sort(keys);
+            int[] order = new int[keys.length];
+            for (int i = 0; i < keys.length; i++) {
+                order[i] = (int) slots.get(keys[i], -1);
+            }
+            return new Layer(keys, stats.permute(order));
+        }
+
+        /** Merge of two layers' sorted keys, the statistics of shared keys merged. */
+        Layer plus(Layer other) {
+            long[] merged = new long[keys.length + other.keys.length];
+            StatsColumns mergedStats = new StatsColumns(Math.max(16, merged.length));
+            int i = 0;
+            int j = 0;
+            int size = 0;
+            while (i < keys.length || j < other.keys.length) {
+                long key = j == other.keys.length || i < keys.length && keys[i] <= other.keys[j] ? keys[i] : other.keys[j];
+                int slot = mergedStats.newSlot();
+                if (i < keys.length && keys[i] == key) mergedStats.merge(slot, stats, i++);
+                if (j < other.keys.length && other.keys[j] == key) mergedStats.merge(slot, other.stats, j++);
+                merged[size++] = key;
+            }
+            return new Layer(Arrays.copyOf(merged, size), mergedStats);
+        }
+    }
+
+    /**
+     * Accumulates levels into cube entries, from decoded batches during ingestion or from a mapped
+     * {@link CastTable}. Thread safe; {@link #build()} may be called once the input is complete.
+     */
+    public static final class Builder implements CastBatchSink {
+        private final LongLongHashMap slots = new LongLongHashMap(1 << 16);
+        private final StatsColumns stats = new StatsColumns(1 << 16);
+        // levels of a cast mostly share one entry
+        private long lastKey = -1;
+        private int lastSlot;
+
+        private Builder() {}
+
+        @Override
+        public synchronized void accept(WodCastBatch batch) {
+            for (int c = 0; c < batch.size(); c++) {
+                int t = batch.variableIndex(c, TEMPERATURE);
+                if (t < 0) continue;
+                long base = base(batch.epochSecond(c), batch.latitude(c), batch.longitude(c));
+                if (base < 0) continue;
+                for (int l = 0; l < batch.levelCount(c); l++) {
+                    if (batch.qc(c, l, t) != 0) continue;
+                    add(base, batch.depth(c, l), batch.value(c, l, t));
+                }
+            }
+        }
+
+        public synchronized void add(CastTable table) {
+            for (int cast = 0; cast < table.size(); cast++) {
+                long base = base(table.epochSecond(cast), table.latitude(cast), table.longitude(cast));
+                if (base < 0) continue;
+                int levels = table.levelCount(cast);
+                for (int level = 0; level < levels; level++) {
+                    if (table.temperatureQc(cast, level) != 0) continue;
+                    add(base, table.depth(cast, level), table.temperature(cast, level));
+                }
+            }
+        }
+
+        /** Key of the cast's month and cell with band 0, or -1 if the cast has no position. */
+        private static long base(long epochSecond, float latitude, float longitude) {
+            if (Float.isNaN(latitude) || Float.isNaN(longitude)) return -1;
+            LocalDate date = LocalDate.ofEpochDay(Math.floorDiv(epochSecond, 86_400L));
+            int month = CubeQuery.monthIndex(date.getYear(), date.getMonthValue());
+            if (month < 0) return -1;
+            return (long) month << 24 | cell(latitude, longitude);
+        }
+
+        private void add(long base, float depth, float temperature) {
+            int band = DepthBands.band(depth);
+            if (band < 0 || Float.isNaN(temperature)) return;
+            long key = base | (long) band << 16;
+            if (key != lastKey) {
+                lastSlot = (int) slots.get(key, -1);
+                if (lastSlot < 0) {
+                    lastSlot = stats.newSlot();
+                    slots.put(key, lastSlot);
+                }
+                lastKey = key;
+            }
+            stats.add(lastSlot, temperature);
+        }
+
+        public synchronized AggregateCube build() {
+            Layer monthly = Layer.sorted(slots, stats);
+            return new AggregateCube(monthly, climatologyOf(monthly));
+        }
+    }
+
+    /** The monthly entries rolled up to month of year. */
+    private static Layer climatologyOf(Layer monthly) {
+        LongLongHashMap climatologySlots = new LongLongHashMap(Math.max(16, monthly.keys.length / 8));
+        StatsColumns climatologyStats = new StatsColumns(Math.max(16, monthly.keys.length / 8));
+        for (int i = 0; i < monthly.keys.length; i++) {
+            long key = monthly.keys[i];
+            long climatologyKey = (key >>> 24) % 12 << 24 | key & 0xFFFFFF;
+            int slot = (int) climatologySlots.get(climatologyKey, -1);
+            if (slot < 0) {
+                slot = climatologyStats.newSlot();
+                climatologySlots.put(climatologyKey, slot);
+            }
+            climatologyStats.merge(slot, monthly.stats, i);
+        }
+        return Layer.sorted(climatologySlots, climatologyStats);
+    }
+}
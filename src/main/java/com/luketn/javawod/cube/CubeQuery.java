@@ -0,0 +1,60 @@
+package com.luketn.javawod.cube;
+
+/**
+ * Selects and rolls up part of the {@link AggregateCube}.
+ * <p>
+ * A base cell is selected when its centre lies in the box, which may cross the antimeridian as for
+ * {@link com.luketn.javawod.query.CastQuery}. Months are indexes {@code year * 12 + month - 1}, {@code toMonth} being
+ * exclusive. Depth bands overlapping {@code [minDepth, maxDepth)} are selected. The selection is
+ * rolled up to cells of {@code cellDegrees}, which must divide 180, and to {@code period}; with
+ * {@code mergeDepths} all selected bands are rolled up into one.
+ */
+public record CubeQuery(
+        float minLatitude,
+        float maxLatitude,
+        float minLongitude,
+        float maxLongitude,
+        int fromMonth,
+        int toMonth,
+        float minDepth,
+        float maxDepth,
+        int cellDegrees,
+        Period period,
+        boolean mergeDepths
+) {
+    public CubeQuery {
+        if (cellDegrees < AggregateCube.CELL_DEGREES || 180 % cellDegrees != 0) {
+            throw new IllegalArgumentException("cellDegrees must divide 180: " + cellDegrees);
+        }
+        if (minLatitude > maxLatitude) {
+            throw new IllegalArgumentException("minLatitude " + minLatitude + " is above maxLatitude " + maxLatitude);
+        }
+        if (fromMonth > toMonth) {
+            throw new IllegalArgumentException("Month range ends before it starts");
+        }
+        if (!(minDepth <= maxDepth)) {
+            throw new IllegalArgumentException("minDepth " + minDepth + " is deeper than maxDepth " + maxDepth);
+        }
+    }
+
+    /** Global statistics per cell of the given size and period, over all months and depth bands. */
+    public static CubeQuery global(int cellDegrees, Period period) {
+        return new CubeQuery(-90, 90, -180, 180, Integer.MIN_VALUE, Integer.MAX_VALUE,
+                0, Float.POSITIVE_INFINITY, cellDegrees, period, false);
+    }
+
+    public static int monthIndex(int year, int month) {
+        return year * 12 + month - 1;
+    }
+
+    public boolean allMonths() {
+        return fromMonth == Integer.MIN_VALUE && toMonth == Integer.MAX_VALUE;
+    }
+
+    boolean containsCellCentre(float latitude, float longitude) {
+        if (latitude < minLatitude || latitude > maxLatitude) return false;
+        return minLongitude > maxLongitude
+                ? longitude >= minLongitude || longitude <= maxLongitude
+                : longitude >= minLongitude && longitude <= maxLongitude;
+    }
+}
@@ -0,0 +1,83 @@
+package com.luketn.javawod.cube;
+
+/**
+ * Result of {@link AggregateCube#slice(CubeQuery)}: statistics per (period, depth band, cell) at
+ * the query's resolution, ordered by period, then band, then cell from south west.
+ */
+public final class CubeSlice {
+    private final CubeQuery query;
+    private final long[] keys;
+    private final StatsColumns stats;
+    private final int lastBand;
+
+    CubeSlice(CubeQuery query, long[] keys, StatsColumns stats, int lastBand) {
+        this.query = query;
+        this.keys = keys;
+        this.stats = stats;
+        this.lastBand = lastBand;
+    }
+
+    public CubeQuery query() {
+        return query;
+    }
+
+    public int size() {
+        return keys.length;
+    }
+
+    /** Period id, see {@link Period}. */
+    public int period(int i) {
+        return (int) (keys[i] >> 32);
+    }
+
+    public String periodLabel(int i) {
+        return query.period().label(period(i));
+    }
+
+    public float cellMinLatitude(int i) {
+        int columns = 360 / query.cellDegrees();
+        return -90 + cell(i) / columns * query.cellDegrees();
+    }
+
+    public float cellMinLongitude(int i) {
+        int columns = 360 / query.cellDegrees();
+        return -180 + cell(i) % columns * query.cellDegrees();
+    }
+
+    public float depthFrom(int i) {
+        return DepthBands.from(band(i));
+    }
+
+    /** Exclusive; {@link Float#POSITIVE_INFINITY} for the open ended deepest band. */
+    public float depthTo(int i) {
+        return DepthBands.to(query.mergeDepths() ? lastBand : band(i));
+    }
+
+    public long count(int i) {
+        return stats.count[i];
+    }
+
+    public double mean(int i) {
+        return stats.mean(i);
+    }
+
+    public double standardDeviation(int i) {
+        return Math.sqrt(stats.variance(i));
+    }
+
+    public float min(int i) {
+        return stats.min[i];
+    }
+
+    public float max(int i) {
+        return stats.max[i];
+    }
+
+    private int cell(int i) {
+        return (int) (keys[i] & 0xFFFFFF);
+    }
+
+    private int band(int i) {
+        return (int) (keys[i] >>> 24 & 0xFF);
+    }
+}
@@ -0,0 +1,35 @@
+package com.luketn.javawod.cube;
+
+/**
+ * Depth bands of the aggregate cube, in metres. Band {@code b} covers {@code [from(b), to(b))};
+ * the last band is open ended. The bands are fine near the surface, where most levels are.
+ */
+public final class DepthBands {
+    private static final float[] EDGES = {
+            0, 10, 20, 30, 50, 75, 100, 150, 200, 300, 400, 500, 700, 1000, 1500, 2000, 3000, 4000, 5000, 6000,
+            Float.POSITIVE_INFINITY
+    };
+
+    private DepthBands() {}
+
+    public static int count() {
+        return EDGES.length - 1;
+    }
+
+    /** Band holding a depth, or -1 for a missing or negative depth. */
+    public static int band(float depth) {
+        if (!(depth >= 0)) return -1;
+        int band = 0;
+        while (depth >= EDGES[band + 1]) band++;
+        return band;
+    }
+
+    public static float from(int band) {
+        return EDGES[band];
+    }
+
+    /** Exclusive lower bound of the next band, {@link Float#POSITIVE_INFINITY} for the last. */
+    public static float to(int band) {
+        return EDGES[band + 1];
+    }
+}
@@ -0,0 +1,37 @@
+package com.luketn.javawod.cube;
+
+/**
+ * Time resolution of a cube slice. Periods are identified by an int:
+ * <ul>
+ *     <li>{@link #MONTH}: {@code year * 12 + month - 1}</li>
+ *     <li>{@link #YEAR}: the year</li>
+ *     <li>{@link #MONTH_OF_YEAR}: {@code 0..11}, a monthly climatology</li>
+ *     <li>{@link #ALL}: always 0</li>
+ * </ul>
+ */
+public enum Period {
+    MONTH,
+    YEAR,
+    MONTH_OF_YEAR,
+    ALL;
+
+    /** Period of a month index ({@code year * 12 + month - 1}). */
+    int of(int month) {
+        return switch (this) {
+            case MONTH -> month;
+            case YEAR -> Math.floorDiv(month, 12);
+            case MONTH_OF_YEAR -> Math.floorMod(month, 12);
+            case ALL -> 0;
+        };
+    }
+
+    /** Human readable period, e.g. "1975-06", "1975", "06" or "all". */
+    public String label(int period) {
+        return switch (this) {
+            case MONTH -> String.format("%04d-%02d", Math.floorDiv(period, 12), Math.floorMod(period, 12) + 1);
+            case YEAR -> Integer.toString(period);
+            case MONTH_OF_YEAR -> String.format("%02d", period + 1);
+            case ALL -> "all";
+        };
+    }
+}
@@ -0,0 +1,76 @@
+package com.luketn.javawod.cube;
+
+import java.util.Arrays;
+
+/**
+ * Mergeable temperature statistics (count, sum, sum of squares, min, max) in parallel primitive
+ * arrays, one slot per cube entry. Two slots merge by adding counts and sums and taking the
+ * extremes, so statistics roll up to any coarser key without going back to the levels.
+ */
+final class StatsColumns {
+    int size;
+    long[] count;
+    double[] sum;
+    double[] sumSquares;
+    float[] min;
+    float[] max;
+
+    StatsColumns(int capacity) {
+        count = new long[capacity];
+        sum = new double[capacity];
+        sumSquares = new double[capacity];
+        min = new float[capacity];
+        max = new float[capacity];
+    }
+
+    /** Appends an empty slot. */
+    int newSlot() {
+        if (size == count.length) {
+            int capacity = Math.max(16, size * 2);
+            count = Arrays.copyOf(count, capacity);
+            sum = Arrays.copyOf(sum, capacity);
+            sumSquares = Arrays.copyOf(sumSquares, capacity);
+            min = Arrays.copyOf(min, capacity);
+            max = Arrays.copyOf(max, capacity);
+        }
+        min[size] = Float.POSITIVE_INFINITY;
+        max[size] = Float.NEGATIVE_INFINITY;
+        return size++;
+    }
+
+    void add(int slot, float value) {
+        count[slot]++;
+        sum[slot] += value;
+        sumSquares[slot] += (double) value * value;
+        if (value < min[slot]) min[slot] = value;
+        if (value > max[slot]) max[slot] = value;
+    }
+
+    void merge(int slot, StatsColumns other, int otherSlot) {
+        count[slot] += other.count[otherSlot];
+        sum[slot] += other.sum[otherSlot];
+        sumSquares[slot] += other.sumSquares[otherSlot];
+        if (other.min[otherSlot] < min[slot]) min[slot] = other.min[otherSlot];
+        if (other.max[otherSlot] > max[slot]) max[slot] = other.max[otherSlot];
+    }
+
+    /** Copy holding slot {@code order[i]} of this at slot {@code i}. */
+    StatsColumns permute(int[] order) {
+        StatsColumns permuted = new StatsColumns(order.length);
+        for (int i = 0; i < order.length; i++) {
+            int slot = permuted.newSlot();
+            permuted.merge(slot, this, order[i]);
+        }
+        return permuted;
+    }
+
+    double mean(int slot) {
+        return sum[slot] / count[slot];
+    }
+
+    double variance(int slot) {
+        double mean = mean(slot);
+        // population variance; clamped as rounding can take it just below zero
+        return Math.max(0, sumSquares[slot] / count[slot] - mean * mean);
+    }
+}
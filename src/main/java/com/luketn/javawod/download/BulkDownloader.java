@@ -0,0 +1,273 @@
+package com.luketn.javawod.download;
+
+import com.luketn.javawod.ingest.CastBatchSink;
+import com.luketn.javawod.ingest.IngestionEngine;
+import com.luketn.javawod.ingest.IngestionReport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Downloads WOD extracts over HTTP, several at a time, optionally ingesting each one while it
+ * downloads.
+ * <p>
+ * Files are fetched on virtual threads, at most {@link DownloadSettings#maxConnections()} at a
+ * time. Each is written to {@code <name>.part} and moved into place once its length matches the
+ * length the server announced. A transfer that breaks off is retried with an HTTP Range request
+ * from the end of the partial file, so neither a dropped connection nor a restart fetches what is
+ * already on disk. A server that ignores the Range header and sends the whole file is handled by
+ * skipping the bytes already held. A file already in place is checked with a Range request from
+ * its end, which costs no transfer when it is complete.
+ * <p>
+ * When ingesting, the {@link IngestionEngine} reads the partial file as it grows rather than the
+ * response body, so parsing overlaps the transfer, a slow parse never stalls the connection and a
+ * retry is invisible to the parser.
+ */
+public class BulkDownloader {
+    private static final Logger log = LoggerFactory.getLogger(BulkDownloader.class);
+    static final String PART_SUFFIX = ".part";
+
+    private final HttpClient client;
+    private final DownloadSettings settings;
+
+    public BulkDownloader(DownloadSettings settings) {
+        this(HttpClient.newBuilder()
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(settings.timeout())
+                .build(), settings);
+    }
+
+    public BulkDownloader(HttpClient client, DownloadSettings settings) {
+        this.client = client;
+        this.settings = settings;
+    }
+
+    /**
+     * Downloads every file into the directory.
+     */
+    public DownloadReport download(List<URI> uris, Path dir) throws IOException, InterruptedException {
+        return download(uris, dir, null, null);
+    }
+
+    /**
+     * Downloads every file into the directory, ingesting each into {@link com.luketn.javawod.wod.WodCastBatch}es
+     * passed to the sink as it arrives.
+     */
+    public DownloadReport downloadAndIngest(List<URI> uris, Path dir, IngestionEngine engine, CastBatchSink sink)
+            throws IOException, InterruptedException {
+        return download(uris, dir, engine, sink);
+    }
+
+    private DownloadReport download(List<URI> uris, Path dir, IngestionEngine engine, CastBatchSink sink)
+            throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        Files.createDirectories(dir);
+        Semaphore connections = new Semaphore(settings.maxConnections());
+        List<DownloadReport.FileDownload> reports = new ArrayList<>(uris.size());
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<DownloadReport.FileDownload>> results = new ArrayList<>(uris.size());
+            for (URI uri : uris) {
+                results.add(executor.submit(() -> fetch(uri, dir.resolve(fileNameOf(uri)), connections, engine, sink, executor)));
+            }
+            try {
+                for (Future<DownloadReport.FileDownload> result : results) {
+                    reports.add(await(result));
+                }
+            } catch (IOException | InterruptedException | RuntimeException e) {
+                executor.shutdownNow();
+                throw e;
+            }
+        }
+        return new DownloadReport(reports, System.nanoTime() - start);
+    }
+
+    /**
+     * The file name a URI is saved under, e.g. ocldb1753579979.3150694.OSD.gz.
+     */
+    static String fileNameOf(URI uri) {
+        String path = uri.getPath();
+        String name = path.substring(path.lastIndexOf('/') + 1);
+        if (name.isEmpty()) throw new IllegalArgumentException("No file name in " + uri);
+        return name;
+    }
+
+    private DownloadReport.FileDownload fetch(URI uri, Path file, Semaphore connections, IngestionEngine engine,
+                                              CastBatchSink sink, ExecutorService executor)
+            throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        Path part = file.resolveSibling(file.getFileName() + PART_SUFFIX);
+        long held = -1;
+        if (Files.exists(file) && !Files.exists(part)) {
+            // verified again like any partial file: a complete one costs a single empty response
+            held = Files.size(file);
+            Files.move(file, part);
+        }
+        try {
+            return fetchPart(uri, file, part, start, connections, engine, sink, executor);
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            // a file that was complete and got no new bytes stays in place for the next run
+            if (held >= 0 && Files.exists(part) && Files.size(part) == held) {
+                Files.move(part, file, StandardCopyOption.ATOMIC_MOVE);
+            }
+            throw e;
+        }
+    }
+
+    private DownloadReport.FileDownload fetchPart(URI uri, Path file, Path part, long start, Semaphore connections,
+                                                  IngestionEngine engine, CastBatchSink sink, ExecutorService executor)
+            throws IOException, InterruptedException {
+        int attempts = 0;
+        long length;
+        Future<IngestionReport.FileReport> ingestion = null;
+        try (GrowingFile growing = GrowingFile.open(part)) {
+            if (engine != null) {
+                InputStream reader = growing.reader();
+                ingestion = executor.submit(() -> engine.ingestBatches(file, reader, sink));
+            }
+            connections.acquire();
+            try {
+                long expected = -1;
+                while (true) {
+                    attempts++;
+                    try {
+                        expected = transfer(uri, growing, expected);
+                        break;
+                    } catch (DownloadException e) {
+                        throw e;
+                    } catch (IOException e) {
+                        if (attempts == settings.maxAttempts()) throw e;
+                        log.warn("Download of {} failed at byte {} (attempt {} of {}): {}",
+                                file.getFileName(), growing.length(), attempts, settings.maxAttempts(), e.toString());
+                        Thread.sleep(settings.retryDelay().multipliedBy(1L << Math.min(attempts - 1, 6)));
+                    }
+                }
+            } catch (IOException e) {
+                growing.fail(e);
+                throw e;
+            } catch (InterruptedException | RuntimeException e) {
+                growing.fail(new IOException("Download of " + file.getFileName() + " stopped", e));
+                throw e;
+            } finally {
+                connections.release();
+            }
+            length = growing.length();
+            try {
+                Files.move(part, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                growing.fail(e);
+                throw e;
+            }
+            growing.complete();
+            DownloadReport.FileDownload report = new DownloadReport.FileDownload(file, length,
+                    length - growing.initialLength(), attempts, ingestion == null ? null : await(ingestion),
+                    System.nanoTime() - start);
+            log.info("Downloaded {}", report);
+            return report;
+        }
+    }
+
+    /**
+     * Makes one request for the rest of the file and appends the body to it.
+     *
+     * @param expected the length announced by an earlier attempt, or -1
+     * @return the length announced by the server, or the length received if it announced none
+     */
+    private long transfer(URI uri, GrowingFile file, long expected) throws IOException, InterruptedException {
+        long offset = file.length();
+        HttpRequest.Builder request = HttpRequest.newBuilder(uri).timeout(settings.timeout()).GET();
+        if (offset > 0) request.header("Range", "bytes=" + offset + "-");
+        HttpResponse<InputStream> response = client.send(request.build(), HttpResponse.BodyHandlers.ofInputStream());
+        try (InputStream body = response.body()) {
+            int status = response.statusCode();
+            long total;
+            long skip = 0;
+            if (status == 206) {
+                long[] range = contentRange(response);
+                if (range[0] != offset) {
+                    throw new DownloadException(uri + " resumed at byte " + range[0] + " instead of " + offset);
+                }
+                total = range[1];
+            } else if (status == 200) {
+                // Range ignored: the whole file follows
+                total = response.headers().firstValueAsLong("Content-Length").orElse(-1);
+                skip = offset;
+            } else if (status == 416 && offset > 0) {
+                total = contentRange(response)[1];
+                if (total != offset) {
+                    throw new DownloadException(uri + " is " + total + " bytes but " + offset + " are already held");
+                }
+                return total;
+            } else if (status >= 500 || status == 408 || status == 429) {
+                throw new IOException(uri + " returned HTTP " + status);
+            } else {
+                throw new DownloadException(uri + " returned HTTP " + status);
+            }
+            if (expected >= 0 && total >= 0 && total != expected) {
+                throw new DownloadException(uri + " changed length from " + expected + " to " + total + " bytes");
+            }
+
+            body.skipNBytes(skip);
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = body.read(buffer)) >= 0) {
+                if (total >= 0 && file.length() + read > total) {
+                    throw new DownloadException(uri + " sent more than the announced " + total + " bytes");
+                }
+                file.append(buffer, 0, read);
+            }
+            if (total >= 0 && file.length() != total) {
+                throw new IOException(uri + " ended at byte " + file.length() + " of " + total);
+            }
+            return total >= 0 ? total : file.length();
+        }
+    }
+
+    /**
+     * First byte and total length from a Content-Range header, e.g. "bytes 100-199/200" or
+     * "bytes *&#47;200"; the first byte of the latter is -1.
+     */
+    private static long[] contentRange(HttpResponse<?> response) throws DownloadException {
+        String header = response.headers().firstValue("Content-Range").orElse("");
+        int space = header.indexOf(' ');
+        int slash = header.indexOf('/');
+        int dash = header.indexOf('-', space);
+        try {
+            if (!header.startsWith("bytes ") || slash < 0) throw new NumberFormatException();
+            long first = header.charAt(space + 1) == '*' ? -1 : Long.parseLong(header.substring(space + 1, dash));
+            long total = Long.parseLong(header.substring(slash + 1));
+            return new long[]{first, total};
+        } catch (NumberFormatException | StringIndexOutOfBoundsException e) {
+            throw new DownloadException("Unusable Content-Range '" + header + "' from " + response.uri());
+        }
+    }
+
+    private static <T> T await(Future<T> future) throws IOException, InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException io) throw io;
+            if (cause instanceof UncheckedIOException io) throw io.getCause();
+            if (cause instanceof RuntimeException runtime) throw runtime;
+            if (cause instanceof Error error) throw error;
+            throw new IllegalStateException(cause);
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.luketn.javawod.download;
+
+import java.io.IOException;
+
+/**
+ * A download failure that retrying will not fix, such as a 404 or a server whose file is longer
+ * than it announced. Any other {@link IOException} during a transfer is retried.
+ */
+public class DownloadException extends IOException {
+    public DownloadException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,40 @@
+package com.luketn.javawod.download;
+
+import com.luketn.javawod.ingest.IngestionReport;
+
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Outcome of a {@link BulkDownloader} run.
+ */
+public record DownloadReport(List<FileDownload> files, long elapsedNanos) {
+
+    /**
+     * @param length      verified length of the downloaded file
+     * @param transferred bytes fetched by this run, less than the length when a partial file was resumed
+     * @param attempts    requests made for the file
+     * @param ingestion   the ingestion that ran alongside the download, or null when not ingesting
+     */
+    public record FileDownload(Path file, long length, long transferred, int attempts,
+                               IngestionReport.FileReport ingestion, long elapsedNanos) {
+        @Override
+        public String toString() {
+            return String.format("%s: %,d bytes (%,d transferred) in %d attempt(s), %.2fs%s",
+                    file.getFileName(), length, transferred, attempts, elapsedNanos / 1e9,
+                    ingestion == null ? "" : String.format(", %,d casts (%,d failed)",
+                            ingestion.castsParsed(), ingestion.castsFailed()));
+        }
+    }
+
+    public long transferred() {
+        return files.stream().mapToLong(FileDownload::transferred).sum();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d files: %,d bytes transferred in %.2fs, %.1f MB/s",
+                files.size(), transferred(), elapsedNanos / 1e9,
+                elapsedNanos == 0 ? 0 : transferred() / 1e6 / (elapsedNanos / 1e9));
+    }
+}
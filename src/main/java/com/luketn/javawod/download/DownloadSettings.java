@@ -0,0 +1,28 @@
+package com.luketn.javawod.download;
+
+import java.time.Duration;
+
+/**
+ * Tuning for {@link BulkDownloader}.
+ *
+ * @param maxConnections files transferred at the same time
+ * @param maxAttempts    requests made for one file before giving up
+ * @param retryDelay     wait before the first retry, doubled for each further one
+ * @param timeout        connect timeout, and how long to wait for response headers
+ */
+public record DownloadSettings(
+        int maxConnections,
+        int maxAttempts,
+        Duration retryDelay,
+        Duration timeout
+) {
+    public DownloadSettings {
+        if (maxConnections < 1 || maxAttempts < 1) {
+            throw new IllegalArgumentException("Download connections and attempts must be positive");
+        }
+    }
+
+    public static DownloadSettings defaults() {
+        return new DownloadSettings(4, 5, Duration.ofSeconds(2), Duration.ofSeconds(30));
+    }
+}
@@ -0,0 +1,118 @@
+package com.luketn.javawod.download;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A file being appended to by a download, with readers that follow it as it grows.
+ * <p>
+ * A reader sees the bytes already on disk straight away and then blocks until more are appended.
+ * It reaches end of stream only once the file is {@link #complete()}, and fails once the writer
+ * {@link #fail(IOException) fails} and the bytes written so far have been read.
+ */
+final class GrowingFile implements AutoCloseable {
+    private final Path path;
+    private final FileChannel out;
+    private final long initialLength;
+    private long length;
+    private boolean complete;
+    private IOException failure;
+
+    private GrowingFile(Path path, FileChannel out, long length) {
+        this.path = path;
+        this.out = out;
+        this.initialLength = length;
+        this.length = length;
+    }
+
+    /** Opens the file for appending, creating it if needed. */
+    static GrowingFile open(Path path) throws IOException {
+        FileChannel out = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        long length = out.size();
+        out.position(length);
+        return new GrowingFile(path, out, length);
+    }
+
+    /** Length of the file when it was opened. */
+    long initialLength() {
+        return initialLength;
+    }
+
+    synchronized long length() {
+        return length;
+    }
+
+    void append(byte[] bytes, int offset, int count) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes, offset, count);
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+        synchronized (this) {
+            length += count;
+            notifyAll();
+        }
+    }
+
+    synchronized void complete() {
+        complete = true;
+        notifyAll();
+    }
+
+    synchronized void fail(IOException e) {
+        failure = e;
+        notifyAll();
+    }
+
+    /** A stream of the file from its first byte, following it as it grows. */
+    InputStream reader() throws IOException {
+        FileChannel in = FileChannel.open(path, StandardOpenOption.READ);
+        return new InputStream() {
+            private long position;
+
+            @Override
+            public int read() throws IOException {
+                byte[] one = new byte[1];
+                return read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+            }
+
+            @Override
+            public int read(byte[] bytes, int offset, int count) throws IOException {
+                if (count == 0) return 0;
+                long available = awaitBeyond(position);
+                if (available < 0) return -1;
+                int read = in.read(ByteBuffer.wrap(bytes, offset, (int) Math.min(count, available - position)), position);
+                position += read;
+                return read;
+            }
+
+            @Override
+            public void close() throws IOException {
+                in.close();
+            }
+        };
+    }
+
+    /** Waits until the file is longer than {@code position}; returns its length, or -1 at the end. */
+    private synchronized long awaitBeyond(long position) throws IOException {
+        while (position >= length && !complete) {
+            if (failure != null) throw new IOException("Download of " + path.getFileName() + " failed", failure);
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted waiting for " + path.getFileName());
+            }
+        }
+        return position < length ? length : -1;
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
@@ -0,0 +1,14 @@
+package com.luketn.javawod.ingest;
+
+import com.luketn.javawod.wod.WodCastBatch;
+
+/**
+ * Receives fully decoded casts, levels included, from the parse stage of {@link IngestionEngine}
+ * one {@link WodCastBatch} at a time. Called concurrently from the parse workers of every file
+ * being ingested, each with its own batch. The batch is cleared and refilled once the call
+ * returns, so implementations must copy out what they keep.
+ */
+@FunctionalInterface
+public interface CastBatchSink {
+    void accept(WodCastBatch batch);
+}
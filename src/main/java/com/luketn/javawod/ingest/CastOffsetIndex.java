@@ -0,0 +1,161 @@
+package com.luketn.javawod.ingest;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Per file index from WOD cast number to where the cast's record lies in the inflated stream,
+ * so a single cast can be fetched from the gunzipped extract with a hash lookup and one
+ * positional read, without splitting or parsing the rest of the file.
+ * <p>
+ * Entries are kept in a {@link LongLongHashMap}, the value packing the uncompressed offset
+ * (upper 40 bits) and the raw record length including line breaks (lower 24 bits). The index is
+ * persisted as {@code <source>.idx} in a directory of its own, not beside the source, whose
+ * directory may be read only. It is tagged with the source's size and modification time, so a
+ * changed source invalidates it.
+ */
+public final class CastOffsetIndex {
+    public static final String SUFFIX = ".idx";
+    private static final int MAGIC = 0x574F4458; // "WODX"
+    private static final int VERSION = 1;
+    private static final int LENGTH_BITS = 24;
+    private static final long LENGTH_MASK = (1L << LENGTH_BITS) - 1;
+    private static final long MISSING = -1L;
+
+    private final LongLongHashMap entries;
+
+    public CastOffsetIndex() {
+        this(new LongLongHashMap(1024));
+    }
+
+    private CastOffsetIndex(LongLongHashMap entries) {
+        this.entries = entries;
+    }
+
+    public void add(long castNumber, long offset, int rawLength) {
+        if (offset >>> (64 - LENGTH_BITS) != 0 || rawLength < 0 || rawLength > LENGTH_MASK) {
+            throw new IllegalArgumentException("Cast " + castNumber + " at " + offset + " length " + rawLength
+                    + " does not fit the index");
+        }
+        entries.put(castNumber, offset << LENGTH_BITS | rawLength);
+    }
+
+    public boolean contains(long castNumber) {
+        return entries.containsKey(castNumber);
+    }
+
+    /** Uncompressed offset of the cast's record, or -1 if the cast is not in this file. */
+    public long offsetOf(long castNumber) {
+        long entry = entries.get(castNumber, MISSING);
+        return entry == MISSING ? MISSING : entry >>> LENGTH_BITS;
+    }
+
+    /** Raw length of the cast's record including line breaks, or -1 if the cast is not in this file. */
+    public int rawLengthOf(long castNumber) {
+        long entry = entries.get(castNumber, MISSING);
+        return entry == MISSING ? -1 : (int) (entry & LENGTH_MASK);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Reads one cast record from a plain (not compressed) source with its line breaks removed,
+     * ready for {@link com.luketn.javawod.wod.WodAsciiParser}, or returns null if the cast is not
+     * indexed. The record is read positionally, without touching the rest of the file.
+     * <p>
+     * Gzip has no seek points, so reading a cast from a .gz extract would mean inflating it from
+     * the start. The offsets are those of the inflated stream, so they address the extract once
+     * gunzipped; the decoded casts of an extract are read from its cast cache file instead.
+     *
+     * @throws IllegalArgumentException if the source is gzip compressed
+     */
+    public byte[] readRecord(Path source, long castNumber) throws IOException {
+        long offset = offsetOf(castNumber);
+        if (offset < 0) return null;
+        if (source.getFileName().toString().endsWith(".gz")) {
+            throw new IllegalArgumentException(source + " is gzip compressed: gunzip it to read casts by offset");
+        }
+        int rawLength = rawLengthOf(castNumber);
+        byte[] raw = new byte[rawLength];
+        try (FileChannel channel = FileChannel.open(source, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.wrap(raw);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, offset + buffer.position()) < 0) {
+                    throw new IOException("Cast " + castNumber + " runs past the end of " + source);
+                }
+            }
+        }
+        ByteArrayOutputStream record = new ByteArrayOutputStream(rawLength);
+        for (byte b : raw) {
+            if (b != '\n' && b != '\r') record.write(b);
+        }
+        return record.toByteArray();
+    }
+
+    public static Path pathFor(Path dir, Path source) {
+        return dir.resolve(source.getFileName() + SUFFIX);
+    }
+
+    /**
+     * Writes the index for a source file into a directory, replacing any previous index atomically.
+     */
+    public void write(Path dir, Path source) throws IOException {
+        Path target = pathFor(dir, source);
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 64 * 1024))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(Files.size(source));
+            out.writeLong(Files.getLastModifiedTime(source).toMillis());
+            out.writeInt(entries.size());
+            IOException[] failure = new IOException[1];
+            entries.forEach((castNumber, entry) -> {
+                if (failure[0] != null) return;
+                try {
+                    out.writeLong(castNumber);
+                    out.writeLong(entry);
+                } catch (IOException e) {
+                    failure[0] = e;
+                }
+            });
+            if (failure[0] != null) throw failure[0];
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Loads the index of a source file from the directory it was written to.
+     *
+     * @return the index, or null if there is none or the source changed since it was written
+     */
+    public static CastOffsetIndex load(Path dir, Path source) throws IOException {
+        Path path = pathFor(dir, source);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 64 * 1024))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) return null;
+            long size = in.readLong();
+            long modified = in.readLong();
+            if (size != Files.size(source) || modified != Files.getLastModifiedTime(source).toMillis()) return null;
+            int count = in.readInt();
+            LongLongHashMap entries = new LongLongHashMap(count);
+            for (int i = 0; i < count; i++) {
+                entries.put(in.readLong(), in.readLong());
+            }
+            return new CastOffsetIndex(entries);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+}
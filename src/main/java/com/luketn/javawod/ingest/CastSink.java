@@ -0,0 +1,12 @@
+package com.luketn.javawod.ingest;
+
+import com.luketn.javawod.wod.WodCast;
+
+/**
+ * Receives casts from the parse stage of {@link IngestionEngine}. Called concurrently from the
+ * parse workers of every file being ingested, so implementations must be thread safe.
+ */
+@FunctionalInterface
+public interface CastSink {
+    void accept(WodCast cast);
+}
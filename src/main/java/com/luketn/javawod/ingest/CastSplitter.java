@@ -0,0 +1,180 @@
+package com.luketn.javawod.ingest;
+
+import java.util.Arrays;
+
+/**
+ * Splits an inflated WOD ASCII stream into cast records. Fed arbitrary chunks of the stream,
+ * it joins the lines of each cast (dropping the line breaks) and passes every complete record
+ * to a {@link RecordSink}.
+ * <p>
+ * Every record declares its own length in the ProfileBytes field (field 3 of
+ * {@code prhFormat}), counted in record characters excluding line breaks. The splitter reads
+ * that header and then copies exactly that many characters, so the lines inside a cast are never
+ * inspected and a data line that happens to start with 'C' cannot split a cast in two. Only
+ * when a record header is unreadable does it fall back to scanning for the next line starting
+ * with 'C'; the damaged bytes are still emitted so the parse stage counts them as a failure.
+ */
+final class CastSplitter {
+
+    @FunctionalInterface
+    interface RecordSink {
+        /**
+         * @param streamOffset offset of the record's 'C' in the inflated stream
+         * @param rawLength    bytes the record spans in the inflated stream, including line breaks,
+         *                     or -1 for a damaged record whose extent is unknown
+         */
+        void record(byte[] buffer, int offset, int length, long streamOffset, int rawLength) throws InterruptedException;
+    }
+
+    private enum State { SEEK, HEADER, BODY }
+
+    private final RecordSink sink;
+    private byte[] record = new byte[8192];
+    private int length;
+
+    private State state = State.SEEK;
+    private boolean lineStart = true;
+    private long streamPosition;
+    private long recordStart;
+    // bytes of the header still to read (BODY: bytes of the record still to read)
+    private int remaining;
+
+    CastSplitter(RecordSink sink) {
+        this.sink = sink;
+    }
+
+    void accept(byte[] chunk, int offset, int count) throws InterruptedException {
+        int i = offset;
+        int end = offset + count;
+        while (i < end) {
+            byte b = chunk[i];
+            if (b == '\n' || b == '\r') {
+                lineStart = true;
+                i++;
+                continue;
+            }
+            switch (state) {
+                case SEEK -> {
+                    if (lineStart && b == 'C') {
+                        if (length > 0) flush(); // damaged bytes collected since the last header
+                        recordStart = streamPosition + (i - offset);
+                        state = State.HEADER;
+                        remaining = -1;
+                        append(b);
+                    } else if (length > 0) {
+                        append(b);
+                    }
+                    lineStart = false;
+                    i++;
+                }
+                case HEADER -> {
+                    lineStart = false;
+                    append(b);
+                    i++;
+                    readHeader();
+                }
+                case BODY -> {
+                    lineStart = false;
+                    // copy up to the end of the line or of the record, whichever is first
+                    int stop = i;
+                    int limit = end - i < remaining ? end : i + remaining;
+                    while (stop < limit && chunk[stop] != '\n' && chunk[stop] != '\r') stop++;
+                    append(chunk, i, stop - i);
+                    remaining -= stop - i;
+                    i = stop;
+                    if (remaining == 0) {
+                        long recordEnd = streamPosition + (i - offset);
+                        sink.record(record, 0, length, recordStart, (int) (recordEnd - recordStart));
+                        length = 0;
+                        state = State.SEEK;
+                    }
+                }
+            }
+        }
+        streamPosition += count;
+    }
+
+    /**
+     * Emits any trailing partial record at the end of the stream.
+     */
+    void finish() throws InterruptedException {
+        if (length > 0) {
+            flush();
+        }
+        state = State.SEEK;
+        lineStart = true;
+    }
+
+    /**
+     * Called with each header byte; once 'C', the "bytes in next field" digit and the
+     * ProfileBytes digits are in, switches to copying the body.
+     */
+    private void readHeader() {
+        if (length == 2) {
+            int digits = record[1] - '0';
+            if (digits < 1 || digits > 9) {
+                state = State.SEEK;
+                return;
+            }
+            remaining = digits;
+        } else if (length > 2 && --remaining == 0) {
+            int profileBytes = 0;
+            for (int j = 2; j < length; j++) {
+                int digit = record[j] - '0';
+                if (digit < 0 || digit > 9) {
+                    state = State.SEEK;
+                    return;
+                }
+                profileBytes = profileBytes * 10 + digit;
+            }
+            if (profileBytes <= length) {
+                state = State.SEEK;
+                return;
+            }
+            remaining = profileBytes - length;
+            state = State.BODY;
+        }
+    }
+
+    private void append(byte b) {
+        if (length == record.length) {
+            record = Arrays.copyOf(record, record.length * 2);
+        }
+        record[length++] = b;
+    }
+
+    private void append(byte[] source, int offset, int count) {
+        if (length + count > record.length) {
+            record = Arrays.copyOf(record, Math.max(record.length * 2, length + count));
+        }
+        System.arraycopy(source, offset, record, length, count);
+        length += count;
+    }
+
+    private void flush() throws InterruptedException {
+        sink.record(record, 0, length, recordStart, -1);
+        length = 0;
+    }
+
+    /**
+     * Reads the WOD cast number (field 5) from the start of a record, or returns -1 if the header
+     * is malformed.
+     */
+    static long castNumberOf(byte[] record, int offset, int length) {
+        int end = offset + length;
+        int pos = offset + 1;
+        if (pos >= end) return -1;
+        int skip = record[pos] - '0';
+        pos += 1 + skip;
+        if (skip < 0 || skip > 9 || pos >= end) return -1;
+        int digits = record[pos++] - '0';
+        if (digits < 1 || digits > 9 || pos + digits > end) return -1;
+        long castNumber = 0;
+        for (int j = 0; j < digits; j++) {
+            int digit = record[pos + j] - '0';
+            if (digit < 0 || digit > 9) return -1;
+            castNumber = castNumber * 10 + digit;
+        }
+        return castNumber;
+    }
+}
@@ -0,0 +1,388 @@
+package com.luketn.javawod.ingest;
+
+import com.luketn.javawod.wod.WodAsciiParser;
+import com.luketn.javawod.wod.WodCastBatch;
+import com.luketn.javawod.wod.WodParseException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Ingests WOD ASCII extracts (.gz) in parallel.
+ * <p>
+ * Files are processed concurrently on virtual threads, up to
+ * {@link IngestionSettings#maxConcurrentFiles()} at a time. Within a file three stages run as a
+ * pipeline, each on its own thread:
+ * <ol>
+ *     <li>inflate - gunzips the file into fixed size byte chunks</li>
+ *     <li>split - cuts the chunks into cast records using their declared length, packs them into
+ *     {@link RecordBatch}es and, if {@link IngestionSettings#offsetIndexDir()} is set, records each
+ *     cast's offset in a {@link CastOffsetIndex}</li>
+ *     <li>parse - decodes each record with a {@link WodAsciiParser} and hands the cast, or a
+ *     {@link WodCastBatch} of fully decoded casts, to the sink</li>
+ * </ol>
+ * Chunks and batches are drawn from small fixed pools and passed through bounded queues, so a
+ * slow stage blocks the stage before it instead of letting buffers pile up in memory.
+ * <p>
+ * Progress and failures are reported to an {@link IngestionListener} rather than printed.
+ */
+public class IngestionEngine {
+    private static final Logger log = LoggerFactory.getLogger(IngestionEngine.class);
+
+    private final IngestionSettings settings;
+    private final IngestionListener listener;
+
+    public IngestionEngine(IngestionSettings settings) {
+        this(settings, IngestionListener.NONE);
+    }
+
+    public IngestionEngine(IngestionSettings settings, IngestionListener listener) {
+        this.settings = settings;
+        this.listener = listener;
+    }
+
+    /**
+     * Ingests all files, passing the header of every parsed cast to the sink.
+     *
+     * @return per file and total throughput
+     */
+    public IngestionReport ingest(List<Path> files, CastSink sink) throws IOException, InterruptedException {
+        return ingest(files, sink, null);
+    }
+
+    /**
+     * Ingests all files, decoding every level of every cast into {@link WodCastBatch}es passed
+     * to the sink.
+     *
+     * @return per file and total throughput
+     */
+    public IngestionReport ingestBatches(List<Path> files, CastBatchSink sink) throws IOException, InterruptedException {
+        return ingest(files, null, sink);
+    }
+
+    /**
+     * Ingests one extract read from a stream, e.g. while it is still being downloaded, decoding
+     * every cast into {@link WodCastBatch}es passed to the sink. The stages run as for a file;
+     * {@code file} names the extract and its offset index.
+     *
+     * @param gzip the gzip compressed extract, closed once read
+     */
+    public IngestionReport.FileReport ingestBatches(Path file, InputStream gzip, CastBatchSink sink)
+            throws IOException, InterruptedException {
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            return new FilePipeline(file, () -> gzip, null, sink, executor).run();
+        }
+    }
+
+    private IngestionReport ingest(List<Path> files, CastSink castSink, CastBatchSink batchSink)
+            throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        Semaphore filePermits = new Semaphore(settings.maxConcurrentFiles());
+        List<IngestionReport.FileReport> reports = new ArrayList<>(files.size());
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<IngestionReport.FileReport>> results = new ArrayList<>(files.size());
+            for (Path file : files) {
+                results.add(executor.submit(() -> {
+                    filePermits.acquire();
+                    try {
+                        return new FilePipeline(file, () -> Files.newInputStream(file), castSink, batchSink, executor).run();
+                    } finally {
+                        filePermits.release();
+                    }
+                }));
+            }
+            try {
+                for (Future<IngestionReport.FileReport> result : results) {
+                    reports.add(await(result));
+                }
+            } catch (IOException | InterruptedException | RuntimeException e) {
+                executor.shutdownNow();
+                throw e;
+            }
+        }
+        return new IngestionReport(reports, System.nanoTime() - start);
+    }
+
+    /**
+     * The instrument code of a WOD extract, e.g. "OSD" for ocldb1753579979.3150694.OSD2.gz.
+     */
+    public static String instrumentOf(String fileName) {
+        int dot = fileName.lastIndexOf('.');
+        if (dot > 0) {
+            String core = fileName.substring(0, dot);
+            String instrument = core.substring(core.lastIndexOf('.') + 1);
+            // numbered continuation files (OSD2, PFL8...) share the instrument of the first file
+            int end = instrument.length();
+            while (end > 1 && Character.isDigit(instrument.charAt(end - 1))) end--;
+            return instrument.substring(0, end);
+        }
+        return fileName;
+    }
+
+    private static <T> T await(Future<T> future) throws IOException, InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException io) throw io;
+            if (cause instanceof UncheckedIOException io) throw io.getCause();
+            if (cause instanceof RuntimeException runtime) throw runtime;
+            if (cause instanceof Error error) throw error;
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    private static final class Chunk {
+        static final Chunk END = new Chunk(0);
+        final byte[] bytes;
+        int length;
+
+        Chunk(int size) {
+            this.bytes = new byte[size];
+        }
+    }
+
+    private record ParseCounts(long parsed, long failed) {}
+
+    private interface Source {
+        InputStream open() throws IOException;
+    }
+
+    /**
+     * The three stages for one file. The inflate stage runs on the calling thread; if any stage
+     * fails, the others are cancelled so none is left blocked on a queue.
+     */
+    private final class FilePipeline {
+        private final Path file;
+        private final Source source;
+        private final String fileName;
+        private final String instrument;
+        private final CastSink castSink;
+        private final CastBatchSink batchSink;
+        private final ExecutorService executor;
+
+        private final BlockingQueue<Chunk> freeChunks = new ArrayBlockingQueue<>(settings.queueCapacity() + 1);
+        private final BlockingQueue<Chunk> chunks = new ArrayBlockingQueue<>(settings.queueCapacity() + 1);
+        private final BlockingQueue<RecordBatch> freeBatches = new ArrayBlockingQueue<>(settings.queueCapacity() + settings.parsersPerFile());
+        private final BlockingQueue<RecordBatch> batches = new ArrayBlockingQueue<>(settings.queueCapacity() + settings.parsersPerFile());
+        private final RecordBatch endOfBatches = new RecordBatch(0, 0);
+
+        private final List<Future<?>> stages = new CopyOnWriteArrayList<>();
+        private final AtomicReference<Throwable> failure = new AtomicReference<>();
+        private Thread inflateThread;
+
+        FilePipeline(Path file, Source source, CastSink castSink, CastBatchSink batchSink, ExecutorService executor) {
+            this.file = file;
+            this.source = source;
+            this.fileName = file.getFileName().toString();
+            this.instrument = instrumentOf(fileName);
+            this.castSink = castSink;
+            this.batchSink = batchSink;
+            this.executor = executor;
+            for (int i = 0; i < settings.queueCapacity(); i++) {
+                freeChunks.add(new Chunk(settings.chunkBytes()));
+            }
+            for (int i = 0; i < settings.queueCapacity() + settings.parsersPerFile() - 1; i++) {
+                freeBatches.add(new RecordBatch(settings.batchRecords() * 512, settings.batchRecords()));
+            }
+        }
+
+        IngestionReport.FileReport run() throws IOException, InterruptedException {
+            long start = System.nanoTime();
+            inflateThread = Thread.currentThread();
+
+            Future<?> splitStage = submit(() -> {
+                split();
+                return null;
+            });
+            List<Future<ParseCounts>> parseStages = new ArrayList<>();
+            for (int i = 0; i < settings.parsersPerFile(); i++) {
+                parseStages.add(submit(this::parse));
+            }
+
+            long bytesInflated;
+            try {
+                bytesInflated = inflate();
+            } catch (IOException | InterruptedException | RuntimeException e) {
+                fail(e);
+                rethrowFailure();
+                throw e;
+            }
+
+            long parsed = 0;
+            long failed = 0;
+            try {
+                await(splitStage);
+                for (Future<ParseCounts> parseStage : parseStages) {
+                    ParseCounts counts = await(parseStage);
+                    parsed += counts.parsed();
+                    failed += counts.failed();
+                }
+            } catch (InterruptedException | CancellationException e) {
+                rethrowFailure();
+                throw e;
+            }
+            IngestionReport.FileReport report = new IngestionReport.FileReport(fileName, bytesInflated, parsed, failed,
+                    System.nanoTime() - start);
+            listener.fileIngested(instrument, report);
+            return report;
+        }
+
+        private long inflate() throws IOException, InterruptedException {
+            long total = 0;
+            try (InputStream in = new GZIPInputStream(source.open(), 64 * 1024)) {
+                while (true) {
+                    Chunk chunk = freeChunks.take();
+                    int read = in.readNBytes(chunk.bytes, 0, chunk.bytes.length);
+                    if (read == 0) {
+                        freeChunks.put(chunk);
+                        break;
+                    }
+                    chunk.length = read;
+                    total += read;
+                    listener.bytesInflated(instrument, read);
+                    chunks.put(chunk);
+                }
+            }
+            chunks.put(Chunk.END);
+            return total;
+        }
+
+        private void split() throws IOException, InterruptedException {
+            CastOffsetIndex index = settings.offsetIndexDir() != null ? new CastOffsetIndex() : null;
+            RecordBatch[] current = {freeBatches.take()};
+            CastSplitter splitter = new CastSplitter((buffer, offset, length, streamOffset, rawLength) -> {
+                if (current[0].count() == settings.batchRecords()) {
+                    batches.put(current[0]);
+                    current[0] = freeBatches.take();
+                }
+                current[0].add(buffer, offset, length, streamOffset);
+                if (index != null && rawLength >= 0) {
+                    long castNumber = CastSplitter.castNumberOf(buffer, offset, length);
+                    if (castNumber >= 0) index.add(castNumber, streamOffset, rawLength);
+                }
+            });
+            while (true) {
+                Chunk chunk = chunks.take();
+                if (chunk == Chunk.END) break;
+                splitter.accept(chunk.bytes, 0, chunk.length);
+                freeChunks.put(chunk);
+            }
+            splitter.finish();
+            if (current[0].count() > 0) {
+                batches.put(current[0]);
+            }
+            for (int i = 0; i < settings.parsersPerFile(); i++) {
+                batches.put(endOfBatches);
+            }
+            if (index != null) {
+                writeIndex(index);
+            }
+        }
+
+        /** The index only speeds up fetching single casts, so failing to write it does not fail the file. */
+        private void writeIndex(CastOffsetIndex index) {
+            try {
+                Files.createDirectories(settings.offsetIndexDir());
+                index.write(settings.offsetIndexDir(), file);
+            } catch (IOException e) {
+                log.warn("Could not write the offset index of {} to {}: {}", fileName, settings.offsetIndexDir(),
+                        e.toString());
+            }
+        }
+
+        private ParseCounts parse() throws InterruptedException {
+            WodAsciiParser parser = new WodAsciiParser();
+            WodCastBatch casts = null;
+            if (batchSink != null) {
+                casts = new WodCastBatch(settings.batchRecords(), settings.batchRecords() * 64);
+                casts.instrument(instrument);
+                casts.source(fileName);
+            }
+            long parsed = 0;
+            long failed = 0;
+            while (true) {
+                RecordBatch batch = batches.take();
+                if (batch == endOfBatches) break;
+                byte[] data = batch.data();
+                int batchParsed = 0;
+                long start = System.nanoTime();
+                for (int i = 0; i < batch.count(); i++) {
+                    try {
+                        if (casts != null) {
+                            parser.parseInto(data, batch.offset(i), batch.length(i), casts);
+                        } else {
+                            castSink.accept(parser.parse(data, batch.offset(i), batch.length(i), instrument));
+                        }
+                        batchParsed++;
+                    } catch (WodParseException e) {
+                        failed++;
+                        listener.castFailed(instrument, fileName, batch.streamOffset(i),
+                                e.getPosition() - batch.offset(i), e);
+                    }
+                }
+                // timed per batch, not per cast, to keep clock reads off the per cast path
+                parsed += batchParsed;
+                listener.castsParsed(instrument, batchParsed, System.nanoTime() - start);
+                batch.clear();
+                freeBatches.put(batch);
+                if (casts != null && casts.size() > 0) {
+                    batchSink.accept(casts);
+                    casts.clear();
+                }
+            }
+            return new ParseCounts(parsed, failed);
+        }
+
+        private <T> Future<T> submit(Callable<T> stage) {
+            Future<T> future = executor.submit(() -> {
+                try {
+                    return stage.call();
+                } catch (Exception | Error e) {
+                    fail(e);
+                    throw e;
+                }
+            });
+            stages.add(future);
+            return future;
+        }
+
+        private void fail(Throwable t) {
+            if (failure.compareAndSet(null, t)) {
+                for (Future<?> stage : stages) {
+                    stage.cancel(true);
+                }
+                inflateThread.interrupt();
+            }
+        }
+
+        private void rethrowFailure() throws IOException {
+            Throwable t = failure.get();
+            if (t == null || t instanceof InterruptedException) return;
+            Thread.interrupted(); // clear the interrupt used to unblock this thread
+            if (t instanceof IOException io) throw io;
+            if (t instanceof RuntimeException runtime) throw runtime;
+            if (t instanceof Error error) throw error;
+            throw new IllegalStateException(t);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.luketn.javawod.ingest;
+
+import com.luketn.javawod.wod.WodParseException;
+
+/**
+ * Observes an {@link IngestionEngine} run from its stage threads. {@link #castsParsed} is called
+ * for every batch of records, so implementations must be thread safe and cheap.
+ */
+public interface IngestionListener {
+    IngestionListener NONE = new IngestionListener() {};
+
+    /** A chunk of {@code bytes} was inflated from a file of the instrument. */
+    default void bytesInflated(String instrument, int bytes) {}
+
+    /**
+     * A batch of records was decoded in {@code nanos}, {@code casts} of them successfully. The time
+     * includes records that failed, which are also reported to {@link #castFailed}.
+     */
+    default void castsParsed(String instrument, int casts, long nanos) {}
+
+    /**
+     * A cast record could not be decoded.
+     *
+     * @param recordOffset offset of the record in the file's inflated stream
+     * @param position     offset within the record (line breaks removed) where decoding stopped
+     */
+    default void castFailed(String instrument, String file, long recordOffset, int position, WodParseException error) {}
+
+    default void fileIngested(String instrument, IngestionReport.FileReport report) {}
+
+    /** A listener passing every event to this one, then to {@code next}. */
+    default IngestionListener andThen(IngestionListener next) {
+        IngestionListener first = this;
+        return new IngestionListener() {
+            @Override
+            public void bytesInflated(String instrument, int bytes) {
+                first.bytesInflated(instrument, bytes);
+                next.bytesInflated(instrument, bytes);
+            }
+
+            @Override
+            public void castsParsed(String instrument, int casts, long nanos) {
+                first.castsParsed(instrument, casts, nanos);
+                next.castsParsed(instrument, casts, nanos);
+            }
+
+            @Override
+            public void castFailed(String instrument, String file, long recordOffset, int position, WodParseException error) {
+                first.castFailed(instrument, file, recordOffset, position, error);
+                next.castFailed(instrument, file, recordOffset, position, error);
+            }
+
+            @Override
+            public void fileIngested(String instrument, IngestionReport.FileReport report) {
+                first.fileIngested(instrument, report);
+                next.fileIngested(instrument, report);
+            }
+        };
+    }
+}
@@ -0,0 +1,39 @@
+package com.luketn.javawod.ingest;
+
+import java.util.List;
+
+/**
+ * Outcome of an {@link IngestionEngine#ingest} run.
+ */
+public record IngestionReport(List<FileReport> files, long elapsedNanos) {
+
+    public record FileReport(String fileName, long bytesInflated, long castsParsed, long castsFailed, long elapsedNanos) {
+        public double castsPerSecond() {
+            return elapsedNanos == 0 ? 0 : castsParsed / (elapsedNanos / 1e9);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: %,d casts (%,d failed) from %,d bytes in %.2fs, %,.0f casts/sec",
+                    fileName, castsParsed, castsFailed, bytesInflated, elapsedNanos / 1e9, castsPerSecond());
+        }
+    }
+
+    public long castsParsed() {
+        return files.stream().mapToLong(FileReport::castsParsed).sum();
+    }
+
+    public long castsFailed() {
+        return files.stream().mapToLong(FileReport::castsFailed).sum();
+    }
+
+    public double castsPerSecond() {
+        return elapsedNanos == 0 ? 0 : castsParsed() / (elapsedNanos / 1e9);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d files: %,d casts (%,d failed) in %.2fs, %,.0f casts/sec",
+                files.size(), castsParsed(), castsFailed(), elapsedNanos / 1e9, castsPerSecond());
+    }
+}
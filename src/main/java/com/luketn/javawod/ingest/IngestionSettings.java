@@ -0,0 +1,38 @@
+package com.luketn.javawod.ingest;
+
+import java.nio.file.Path;
+
+/**
+ * Tuning for {@link IngestionEngine}.
+ *
+ * @param maxConcurrentFiles number of files ingested at the same time
+ * @param parsersPerFile     parse stage workers per file
+ * @param queueCapacity      buffers in flight between two stages; producers block when it is full
+ * @param batchRecords       cast records handed from the split stage to the parse stage at a time
+ * @param chunkBytes         size of the inflated byte chunks handed to the split stage
+ * @param offsetIndexDir     directory to write a {@link CastOffsetIndex} of each ingested file
+ *                           to, or null to write none
+ */
+public record IngestionSettings(
+        int maxConcurrentFiles,
+        int parsersPerFile,
+        int queueCapacity,
+        int batchRecords,
+        int chunkBytes,
+        Path offsetIndexDir
+) {
+    public IngestionSettings {
+        if (maxConcurrentFiles < 1 || parsersPerFile < 1 || queueCapacity < 1 || batchRecords < 1 || chunkBytes < 1) {
+            throw new IllegalArgumentException("Ingestion sizes must all be positive");
+        }
+    }
+
+    public static IngestionSettings defaults() {
+        return new IngestionSettings(Runtime.getRuntime().availableProcessors(), 1, 8, 512, 256 * 1024, null);
+    }
+
+    public IngestionSettings withOffsetIndexDir(Path offsetIndexDir) {
+        return new IngestionSettings(maxConcurrentFiles, parsersPerFile, queueCapacity, batchRecords, chunkBytes,
+                offsetIndexDir);
+    }
+}
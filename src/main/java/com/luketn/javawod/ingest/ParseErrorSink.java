@@ -0,0 +1,91 @@
+package com.luketn.javawod.ingest;
+
+import com.luketn.javawod.wod.WodParseException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sampled, rate limited record of parse failures.
+ * <p>
+ * A failure is described by where it happened: the file, the record's offset in the inflated
+ * stream and the field and position within the record. The record text is never kept or logged;
+ * the offset finds it in the gunzipped extract, or {@link CastOffsetIndex#readRecord} by cast
+ * number.
+ * <p>
+ * One in {@code sampleEvery} failures is sampled, and at most {@code maxPerSecond} sampled
+ * failures a second are logged and kept, so a corrupt file cannot flood the log. The last
+ * {@code capacity} kept failures are available from {@link #recent()}.
+ */
+public final class ParseErrorSink implements IngestionListener {
+    private static final Logger log = LoggerFactory.getLogger(ParseErrorSink.class);
+
+    public record ParseError(Instant time, String file, long recordOffset, String field, int position, String message) {}
+
+    private final int sampleEvery;
+    private final int maxPerSecond;
+    private final Clock clock;
+    private final ParseError[] recent;
+    private final AtomicLong failures = new AtomicLong();
+    private long kept;
+    private long second = Long.MIN_VALUE;
+    private int keptThisSecond;
+
+    public ParseErrorSink(int sampleEvery, int maxPerSecond, int capacity) {
+        this(sampleEvery, maxPerSecond, capacity, Clock.systemUTC());
+    }
+
+    public ParseErrorSink(int sampleEvery, int maxPerSecond, int capacity, Clock clock) {
+        if (sampleEvery < 1 || maxPerSecond < 1 || capacity < 1) {
+            throw new IllegalArgumentException("Parse error sink sizes must all be positive");
+        }
+        this.sampleEvery = sampleEvery;
+        this.maxPerSecond = maxPerSecond;
+        this.clock = clock;
+        this.recent = new ParseError[capacity];
+    }
+
+    @Override
+    public void castFailed(String instrument, String file, long recordOffset, int position, WodParseException error) {
+        if ((failures.getAndIncrement() % sampleEvery) != 0) return;
+        Instant now = clock.instant();
+        ParseError parseError;
+        synchronized (this) {
+            if (now.getEpochSecond() != second) {
+                second = now.getEpochSecond();
+                keptThisSecond = 0;
+            }
+            if (keptThisSecond == maxPerSecond) return;
+            keptThisSecond++;
+            parseError = new ParseError(now, file, recordOffset, error.getField(), position, error.getMessage());
+            recent[(int) (kept++ % recent.length)] = parseError;
+        }
+        log.warn("Parse error in {} at record offset {}, field {} at position {}: {}",
+                file, recordOffset, parseError.field(), position, parseError.message());
+    }
+
+    /** Failures seen, sampled or not. */
+    public long failures() {
+        return failures.get();
+    }
+
+    /** Failures logged and kept. */
+    public synchronized long kept() {
+        return kept;
+    }
+
+    /** The most recently kept failures, oldest first. */
+    public synchronized List<ParseError> recent() {
+        int size = (int) Math.min(kept, recent.length);
+        List<ParseError> errors = new ArrayList<>(size);
+        for (long i = kept - size; i < kept; i++) {
+            errors.add(recent[(int) (i % recent.length)]);
+        }
+        return errors;
+    }
+}
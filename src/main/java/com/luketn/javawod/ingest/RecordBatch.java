@@ -0,0 +1,48 @@
+package com.luketn.javawod.ingest;
+
+import java.util.Arrays;
+
+/**
+ * A reusable block of cast records packed end to end in one byte array, handed from the split
+ * stage to the parse stage so the queue between them moves hundreds of records per hand off.
+ */
+final class RecordBatch {
+    private byte[] data;
+    private int size;
+    // offsets[i] is the start of record i, offsets[count] the end of the last record
+    private int[] offsets;
+    // where each record starts in the file's inflated stream, for error reports
+    private long[] streamOffsets;
+    private int count;
+
+    RecordBatch(int initialBytes, int maxRecords) {
+        this.data = new byte[initialBytes];
+        this.offsets = new int[maxRecords + 1];
+        this.streamOffsets = new long[maxRecords];
+    }
+
+    void add(byte[] source, int offset, int length, long streamOffset) {
+        if (size + length > data.length) {
+            data = Arrays.copyOf(data, Math.max(data.length * 2, size + length));
+        }
+        if (count + 1 == offsets.length) {
+            offsets = Arrays.copyOf(offsets, offsets.length * 2);
+            streamOffsets = Arrays.copyOf(streamOffsets, offsets.length - 1);
+        }
+        System.arraycopy(source, offset, data, size, length);
+        size += length;
+        streamOffsets[count] = streamOffset;
+        offsets[++count] = size;
+    }
+
+    void clear() {
+        size = 0;
+        count = 0;
+    }
+
+    int count() { return count; }
+    byte[] data() { return data; }
+    int offset(int record) { return offsets[record]; }
+    int length(int record) { return offsets[record + 1] - offsets[record]; }
+    long streamOffset(int record) { return streamOffsets[record]; }
+}
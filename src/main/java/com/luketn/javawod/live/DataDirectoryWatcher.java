@@ -0,0 +1,183 @@
+package com.luketn.javawod.live;
+
+import com.luketn.javawod.store.CastCache;
+import com.luketn.javawod.store.CastManifest;
+import com.luketn.javawod.store.MappedCastFile;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+/**
+ * Watches the data directory for new WOD extracts and adds their casts to a {@link LiveWod}.
+ * <p>
+ * A {@code .gz} file is taken once its size and modification time have held still for the settle
+ * time, so a file still being copied in is not read half written; the
+ * {@link com.luketn.javawod.download.BulkDownloader} moves complete files into place, which settle
+ * at once. The file is ingested into the {@link CastCache}, recording it in the manifest, and its
+ * casts appended to the live snapshot while queries carry on against the previous one.
+ * <p>
+ * Files already served are skipped. One that changes while served keeps its old casts until the
+ * next start: replacing them in place would renumber the casts of every later file.
+ */
+public final class DataDirectoryWatcher implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(DataDirectoryWatcher.class);
+
+    private final Path dataDir;
+    private final CastCache cache;
+    private final LiveWod live;
+    private final Duration settle;
+    // files seen changing, with what was last observed of them; watcher thread only
+    private final Map<Path, Observation> pending = new HashMap<>();
+    private WatchService watchService;
+    private Thread thread;
+
+    private record Observation(long size, long lastModified, long sinceNanos) {}
+
+    public DataDirectoryWatcher(Path dataDir, CastCache cache, LiveWod live, Duration settle) {
+        this.dataDir = dataDir;
+        this.cache = cache;
+        this.live = live;
+        this.settle = settle;
+    }
+
+    /**
+     * Starts watching on a daemon thread. Extracts already in the directory but not yet served
+     * are picked up too, so nothing arriving between opening the catalog and starting is missed.
+     */
+    public synchronized void start() throws IOException {
+        if (thread != null) throw new IllegalStateException("Already started");
+        Files.createDirectories(dataDir);
+        watchService = dataDir.getFileSystem().newWatchService();
+        dataDir.register(watchService, ENTRY_CREATE, ENTRY_MODIFY);
+        // a platform thread: it waits on ingestion inside the cache's monitor, which would pin a
+        // virtual thread to its carrier and starve the ingestion's own virtual threads
+        thread = Thread.ofPlatform().daemon().name("data-dir-watcher").start(this::run);
+        log.info("Watching {} for new extracts", dataDir);
+    }
+
+    private void run() {
+        try {
+            scan();
+            while (true) {
+                WatchKey key = watchService.poll(settle.toMillis(), TimeUnit.MILLISECONDS);
+                if (key != null) {
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.kind() == OVERFLOW) {
+                            scan();
+                        } else {
+                            consider(dataDir.resolve((Path) event.context()));
+                        }
+                    }
+                    if (!key.reset()) {
+                        log.warn("{} is no longer accessible, stopped watching it", dataDir);
+                        return;
+                    }
+                }
+                addSettled();
+            }
+        } catch (ClosedWatchServiceException | InterruptedException e) {
+            // closed
+        }
+    }
+
+    private void scan() {
+        try (Stream<Path> files = Files.list(dataDir)) {
+            files.forEach(this::consider);
+        } catch (IOException e) {
+            log.warn("Could not list {}: {}", dataDir, e.toString());
+        }
+    }
+
+    private void consider(Path file) {
+        if (file.getFileName().toString().endsWith(".gz")) {
+            pending.put(file, null);
+        }
+    }
+
+    private void addSettled() throws InterruptedException {
+        long now = System.nanoTime();
+        Iterator<Map.Entry<Path, Observation>> entries = pending.entrySet().iterator();
+        while (entries.hasNext()) {
+            Map.Entry<Path, Observation> entry = entries.next();
+            Path file = entry.getKey();
+            Observation seen = entry.getValue();
+            Observation observed;
+            try {
+                observed = new Observation(Files.size(file), Files.getLastModifiedTime(file).toMillis(), now);
+            } catch (NoSuchFileException e) {
+                entries.remove();
+                continue;
+            } catch (IOException e) {
+                log.warn("Could not read {}: {}", file, e.toString());
+                entries.remove();
+                continue;
+            }
+            if (seen == null || seen.size() != observed.size() || seen.lastModified() != observed.lastModified()) {
+                entry.setValue(observed);
+            } else if (now - seen.sinceNanos() >= settle.toNanos()) {
+                entries.remove();
+                add(file);
+            }
+        }
+    }
+
+    private void add(Path source) throws InterruptedException {
+        String name = source.getFileName().toString();
+        try {
+            if (isServed(source)) {
+                CastManifest.Entry entry = cache.manifest().get(name);
+                if (entry == null || !entry.stamp().matches(source)) {
+                    log.warn("{} changed while being served; its casts are replaced at the next start", name);
+                }
+                return;
+            }
+            MappedCastFile file = cache.add(source);
+            live.add(file);
+        } catch (IOException | RuntimeException e) {
+            // left for the next event on the file, or the next start
+            log.warn("Could not add {}: {}", name, e.toString());
+        }
+    }
+
+    private boolean isServed(Path source) {
+        Path cacheFile = cache.cacheFileFor(source).getFileName();
+        for (MappedCastFile file : live.current().catalog().files()) {
+            if (file.path().getFileName().equals(cacheFile)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Stops watching, interrupting an ingestion in progress; its file is picked up again at the
+     * next start.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (watchService == null) return;
+        watchService.close();
+        thread.interrupt();
+        try {
+            thread.join(Duration.ofSeconds(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.luketn.javawod.live;
+
+import com.luketn.javawod.store.MappedCastFile;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The current {@link WodSnapshot}, replaced as files are added while the application runs.
+ * <p>
+ * Readers take {@link #current()} once per request and never wait: a new snapshot is built beside
+ * the current one and swapped in with a single volatile write. Snapshots share their mapped
+ * files, so closing this closes the files of every snapshot handed out.
+ */
+public final class LiveWod implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(LiveWod.class);
+
+    private volatile WodSnapshot current;
+
+    public LiveWod(WodSnapshot initial) {
+        this.current = initial;
+    }
+
+    public WodSnapshot current() {
+        return current;
+    }
+
+    /**
+     * Appends the casts of a file. On failure the file is closed and the current snapshot kept.
+     */
+    public synchronized WodSnapshot add(MappedCastFile file) {
+        long start = System.nanoTime();
+        WodSnapshot next;
+        try {
+            next = current.with(file);
+        } catch (RuntimeException | Error e) {
+            file.close();
+            throw e;
+        }
+        current = next;
+        log.info("Added {} casts from {} in {} ms, {} casts now served", file.size(), file.path().getFileName(),
+                (System.nanoTime() - start) / 1_000_000, next.catalog().size());
+        return next;
+    }
+
+    @Override
+    public synchronized void close() {
+        current.catalog().close();
+    }
+}
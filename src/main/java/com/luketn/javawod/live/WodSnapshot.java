@@ -0,0 +1,108 @@
+package com.luketn.javawod.live;
+
+import com.luketn.javawod.cube.AggregateCube;
+import com.luketn.javawod.query.CastPyramid;
+import com.luketn.javawod.query.NearestCastIndex;
+import com.luketn.javawod.query.SpatioTemporalIndex;
+import com.luketn.javawod.stats.RegionStats;
+import com.luketn.javawod.stats.StatsKernel;
+import com.luketn.javawod.store.CastCache;
+import com.luketn.javawod.store.CastCatalog;
+import com.luketn.javawod.store.MappedCastFile;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The cast catalog together with the indexes, cube and statistics built over it, all consistent
+ * with one another. Immutable: a request that takes a snapshot sees the same casts throughout,
+ * however many files arrive meanwhile.
+ */
+public final class WodSnapshot {
+    private static final Logger log = LoggerFactory.getLogger(WodSnapshot.class);
+
+    private final CastCatalog catalog;
+    private final SpatioTemporalIndex index;
+    private final NearestCastIndex nearest;
+    private final CastPyramid pyramid;
+    private final AggregateCube cube;
+    private final StatsKernel kernel;
+    private final RegionStats regionStats;
+
+    private WodSnapshot(CastCatalog catalog, SpatioTemporalIndex index, NearestCastIndex nearest, CastPyramid pyramid,
+                        AggregateCube cube, StatsKernel kernel) {
+        this.catalog = catalog;
+        this.index = index;
+        this.nearest = nearest;
+        this.pyramid = pyramid;
+        this.cube = cube;
+        this.kernel = kernel;
+        this.regionStats = new RegionStats(catalog, index, kernel);
+    }
+
+    /**
+     * A snapshot of the catalog. The cube and the pyramid are combined from the
+     * {@link AggregateCube#PARTIAL partials} the cast cache wrote beside each file when it was
+     * ingested, so no level is read; only the indexes are built from the position columns.
+     */
+    public static WodSnapshot build(CastCatalog catalog, StatsKernel kernel) {
+        List<AggregateCube> cubes = new ArrayList<>(catalog.files().size());
+        List<CastPyramid> pyramids = new ArrayList<>(catalog.files().size());
+        int[] firstCast = new int[catalog.files().size()];
+        for (int f = 0; f < catalog.files().size(); f++) {
+            cubes.add(cubeOf(catalog.files().get(f)));
+            pyramids.add(pyramidOf(catalog.files().get(f)));
+            firstCast[f] = catalog.firstCast(f);
+        }
+        return new WodSnapshot(catalog, SpatioTemporalIndex.build(catalog), NearestCastIndex.build(catalog),
+                CastPyramid.concat(pyramids, firstCast), AggregateCube.sum(cubes), kernel);
+    }
+
+    /**
+     * A snapshot with the casts of one more file appended. Only the new file's positions are
+     * read: they are merged into a copy of the index and added to the nearest neighbour index,
+     * while the file's pyramid and cube partials are merged into the existing ones.
+     */
+    public WodSnapshot with(MappedCastFile file) {
+        CastCatalog grown = catalog.with(file);
+        return new WodSnapshot(grown, index.append(grown, catalog.size()), nearest.append(grown, catalog.size()),
+                pyramid.plus(pyramidOf(file), catalog.size()), cube.plus(cubeOf(file)), kernel);
+    }
+
+    /** The file's cube partial, or if it cannot be read, its cube built from its levels. */
+    private static AggregateCube cubeOf(MappedCastFile file) {
+        Path partial = CastCache.partialFileOf(file.path(), AggregateCube.PARTIAL);
+        try {
+            return AggregateCube.read(partial);
+        } catch (IOException e) {
+            log.warn("Building the cube of {} from its casts, its partial is unreadable: {}", file.path().getFileName(),
+                    e.toString());
+            AggregateCube.Builder builder = AggregateCube.builder();
+            builder.add(file);
+            return builder.build();
+        }
+    }
+
+    /** The file's pyramid partial, or if it cannot be read, its pyramid built from its positions. */
+    private static CastPyramid pyramidOf(MappedCastFile file) {
+        Path partial = CastCache.partialFileOf(file.path(), CastPyramid.PARTIAL);
+        try {
+            return CastPyramid.read(partial);
+        } catch (IOException e) {
+            log.warn("Building the pyramid of {} from its casts, its partial is unreadable: {}",
+                    file.path().getFileName(), e.toString());
+            return CastPyramid.build(file);
+        }
+    }
+
+    public CastCatalog catalog() { return catalog; }
+    public SpatioTemporalIndex index() { return index; }
+    public NearestCastIndex nearest() { return nearest; }
+    public CastPyramid pyramid() { return pyramid; }
+    public AggregateCube cube() { return cube; }
+    public RegionStats regionStats() { return regionStats; }
+}
@@ -0,0 +1,95 @@
+package com.luketn.javawod.metrics;
+
+import com.luketn.javawod.ingest.IngestionListener;
+import com.luketn.javawod.ingest.IngestionReport;
+import com.luketn.javawod.wod.WodParseException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishes ingestion progress as Micrometer meters, tagged by instrument:
+ * <ul>
+ *     <li>{@code wod.ingest.bytes.inflated} counter</li>
+ *     <li>{@code wod.ingest.casts.parsed} counter</li>
+ *     <li>{@code wod.ingest.batch.duration} timer of the time to decode each batch of records, with
+ *     p50/p95/p99 and a histogram for percentile queries in the monitoring system</li>
+ *     <li>{@code wod.ingest.casts.failed} counter, also tagged with the field that failed</li>
+ *     <li>{@code wod.ingest.file.duration} timer</li>
+ * </ul>
+ * Meters are looked up once per instrument (and field) and cached. The engine reports parsing once
+ * per batch rather than per cast: recording into the timer updates its percentile and histogram
+ * buckets, which costs too much to do for every cast.
+ */
+public final class MicrometerIngestionListener implements IngestionListener {
+    private final MeterRegistry registry;
+    private final Map<String, InstrumentMeters> instruments = new ConcurrentHashMap<>();
+    private final Map<String, Counter> failures = new ConcurrentHashMap<>();
+
+    public MicrometerIngestionListener(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public void bytesInflated(String instrument, int bytes) {
+        meters(instrument).bytesInflated.increment(bytes);
+    }
+
+    @Override
+    public void castsParsed(String instrument, int casts, long nanos) {
+        InstrumentMeters meters = meters(instrument);
+        meters.castsParsed.increment(casts);
+        meters.batchDuration.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void castFailed(String instrument, String file, long recordOffset, int position, WodParseException error) {
+        failures.computeIfAbsent(instrument + '\0' + error.getField(), key -> Counter.builder("wod.ingest.casts.failed")
+                .description("WOD casts that could not be decoded")
+                .tag("instrument", instrument)
+                .tag("field", error.getField())
+                .register(registry)).increment();
+    }
+
+    @Override
+    public void fileIngested(String instrument, IngestionReport.FileReport report) {
+        meters(instrument).fileDuration.record(report.elapsedNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    private InstrumentMeters meters(String instrument) {
+        return instruments.computeIfAbsent(instrument, key -> new InstrumentMeters(registry, key));
+    }
+
+    private static final class InstrumentMeters {
+        final Counter bytesInflated;
+        final Counter castsParsed;
+        final Timer batchDuration;
+        final Timer fileDuration;
+
+        InstrumentMeters(MeterRegistry registry, String instrument) {
+            bytesInflated = Counter.builder("wod.ingest.bytes.inflated")
+                    .description("Bytes inflated from WOD extracts")
+                    .baseUnit("bytes")
+                    .tag("instrument", instrument)
+                    .register(registry);
+            castsParsed = Counter.builder("wod.ingest.casts.parsed")
+                    .description("WOD casts decoded")
+                    .tag("instrument", instrument)
+                    .register(registry);
+            batchDuration = Timer.builder("wod.ingest.batch.duration")
+                    .description("Time to decode one batch of WOD cast records")
+                    .tag("instrument", instrument)
+                    .publishPercentiles(0.5, 0.95, 0.99)
+                    .publishPercentileHistogram()
+                    .register(registry);
+            fileDuration = Timer.builder("wod.ingest.file.duration")
+                    .description("Time to ingest one WOD extract")
+                    .tag("instrument", instrument)
+                    .register(registry);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.luketn.javawod.metrics;
+
+import com.luketn.javawod.ingest.ParseErrorSink;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+
+import java.util.List;
+
+/**
+ * Actuator endpoint {@code /actuator/parseerrors} listing the most recent sampled parse failures.
+ */
+@Endpoint(id = "parseerrors")
+public class ParseErrorsEndpoint {
+    private final ParseErrorSink sink;
+
+    public ParseErrorsEndpoint(ParseErrorSink sink) {
+        this.sink = sink;
+    }
+
+    public record ParseErrors(long failures, long kept, List<ParseErrorSink.ParseError> recent) {}
+
+    @ReadOperation
+    public ParseErrors parseErrors() {
+        return new ParseErrors(sink.failures(), sink.kept(), sink.recent());
+    }
+}
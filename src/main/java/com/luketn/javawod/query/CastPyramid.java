@@ -0,0 +1,464 @@
+package com.luketn.javawod.query;
+
+import com.luketn.javawod.store.CastTable;
+import com.luketn.javawod.store.MappedCastFile;
+import com.luketn.javawod.store.SourcePartial;
+import com.luketn.javawod.wod.WodCastBatch;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntPredicate;
+
+/**
+ * Multi-resolution sample of cast positions, for drawing the casts in a map viewport without
+ * sending all of them.
+ * <p>
+ * Level {@code l} divides the globe into square cells of {@code 180 / 2^l} degrees, from two
+ * cells at level 0 to 0.7 degrees at the finest, each cell nesting four of the next level. Every
+ * cell keeps a sample of at most {@link #SAMPLE_SIZE} of its casts: those with the smallest
+ * priority, a hash of the cast number. That is a uniform random sample of the cell, yet
+ * deterministic, and the samples of a cell's four children hold its own, so the levels are
+ * consistent with each other and samples merge by keeping the smallest priorities of both.
+ * <p>
+ * {@link #sample} picks the finest level with no more cells over the viewport than the point
+ * budget, so an unfiltered request costs at most budget times sample size checks whether it
+ * covers an ocean or a harbour. Casts without a position are not sampled. Immutable once built
+ * and safe to query from any thread; {@link #append} returns a grown copy.
+ * <p>
+ * The pyramid is computed at ingest: {@link #PARTIAL} has the
+ * {@link com.luketn.javawod.store.CastCache} {@link #write} the pyramid of each source beside its
+ * cache file, and startup {@link #read}s those and {@link #concat}s them.
+ */
+public final class CastPyramid {
+    /** Casts kept per cell and level. */
+    public static final int SAMPLE_SIZE = 32;
+    static final int LEVELS = 9;
+    private static final int FINEST = LEVELS - 1;
+    private static final int FINEST_ROWS = 1 << FINEST;
+    private static final float FINEST_DEGREES = 180f / FINEST_ROWS;
+    private static final int FINEST_CELLS = FINEST_ROWS * FINEST_ROWS * 2;
+    private static final int MAGIC = 0x574F4450; // "WODP"
+    private static final int VERSION = 1;
+
+    /**
+     * The pyramid of each source, written beside its cache file as {@code <source>.pyramid}. It
+     * samples the written cache file, whose cast ids are final, rather than the batches.
+     */
+    public static final SourcePartial PARTIAL = new SourcePartial() {
+        @Override
+        public String suffix() {
+            return ".pyramid";
+        }
+
+        @Override
+        public Builder builder() {
+            return new Builder() {
+                @Override
+                public void accept(WodCastBatch batch) {}
+
+                @Override
+                public void write(Path target, MappedCastFile cached) throws IOException {
+                    build(cached).write(target);
+                }
+            };
+        }
+    };
+
+    private final Level[] levels;
+    private final int size;
+
+    /**
+     * One level: the samples of all cells back to back, cell {@code c} owning
+     * {@code cellStart[c] .. cellStart[c + 1]} in ascending priority, each a priority in the high
+     * and cast id in the low 32 bits.
+     */
+    private record Level(int rows, int columns, int[] cellStart, long[] samples) {
+
+        static Level of(int rows, long[][] samples, int[] sampleSizes) {
+            int columns = rows * 2;
+            int[] cellStart = new int[rows * columns + 1];
+            for (int cell = 0; cell < samples.length; cell++) {
+                cellStart[cell + 1] = cellStart[cell] + sampleSizes[cell];
+            }
+            long[] flat = new long[cellStart[samples.length]];
+            for (int cell = 0; cell < samples.length; cell++) {
+                if (sampleSizes[cell] == 0) continue;
+                Arrays.sort(samples[cell], 0, sampleSizes[cell]);
+                System.arraycopy(samples[cell], 0, flat, cellStart[cell], sampleSizes[cell]);
+            }
+            return new Level(rows, columns, cellStart, flat);
+        }
+
+        /** The level above: each cell's sample the smallest priorities of its four children's. */
+        Level coarser() {
+            int parentRows = rows / 2;
+            int parentColumns = columns / 2;
+            long[][] samples = new long[parentRows * parentColumns][];
+            int[] sampleSizes = new int[samples.length];
+            long[] gathered = new long[4 * SAMPLE_SIZE];
+            for (int row = 0; row < parentRows; row++) {
+                for (int column = 0; column < parentColumns; column++) {
+                    int parent = row * parentColumns + column;
+                    int size = 0;
+                    for (int child = 0; child < 4; child++) {
+                        int cell = (2 * row + child / 2) * columns + 2 * column + child % 2;
+                        int from = cellStart[cell];
+                        int length = cellStart[cell + 1] - from;
+                        System.arraycopy(this.samples, from, gathered, size, length);
+                        size += length;
+                    }
+                    if (size == 0) continue;
+                    Arrays.sort(gathered, 0, size);
+                    samples[parent] = Arrays.copyOf(gathered, Math.min(SAMPLE_SIZE, size));
+                    sampleSizes[parent] = samples[parent].length;
+                }
+            }
+            return of(parentRows, samples, sampleSizes);
+        }
+
+        /**
+         * This level's samples merged with those of another at the same resolution, whose cast
+         * ids are shifted by {@code offset}: the key order is kept, the ids being the low bits.
+         */
+        Level plus(Level other, long offset) {
+            int cells = cellStart.length - 1;
+            int[] mergedStart = new int[cells + 1];
+            long[] merged = new long[samples.length + other.samples.length];
+            int out = 0;
+            for (int cell = 0; cell < cells; cell++) {
+                int a = cellStart[cell];
+                int aEnd = cellStart[cell + 1];
+                int b = other.cellStart[cell];
+                int bEnd = other.cellStart[cell + 1];
+                int end = out + Math.min(SAMPLE_SIZE, aEnd - a + bEnd - b);
+                while (out < end) {
+                    merged[out++] = b == bEnd || (a < aEnd && samples[a] < other.samples[b] + offset)
+                            ? samples[a++] : other.samples[b++] + offset;
+                }
+                mergedStart[cell + 1] = out;
+            }
+            return new Level(rows, columns, mergedStart, Arrays.copyOf(merged, out));
+        }
+    }
+
+    private CastPyramid(Level[] levels, int size) {
+        this.levels = levels;
+        this.size = size;
+    }
+
+    public static CastPyramid build(CastTable table) {
+        return build(table, 0);
+    }
+
+    private static CastPyramid build(CastTable table, int fromCast) {
+        // per cell, the smallest priorities seen so far, unordered, and the largest of those once full
+        long[][] samples = new long[FINEST_CELLS][];
+        int[] sampleSizes = new int[FINEST_CELLS];
+        long[] largest = new long[FINEST_CELLS];
+        int size = 0;
+        for (int cast = fromCast; cast < table.size(); cast++) {
+            float latitude = table.latitude(cast);
+            float longitude = table.longitude(cast);
+            if (Float.isNaN(latitude) || Float.isNaN(longitude)) continue;
+            size++;
+            int cell = finestRow(latitude) * FINEST_ROWS * 2 + finestColumn(longitude);
+            long key = priority(table.castNumber(cast)) << 32 | cast;
+            long[] sample = samples[cell];
+            int n = sampleSizes[cell];
+            if (n < SAMPLE_SIZE) {
+                if (sample == null) {
+                    sample = samples[cell] = new long[4];
+                } else if (n == sample.length) {
+                    sample = samples[cell] = Arrays.copyOf(sample, 2 * n);
+                }
+                sample[n] = key;
+                sampleSizes[cell] = n + 1;
+                if (n + 1 == SAMPLE_SIZE) largest[cell] = max(sample);
+            } else if (key < largest[cell]) {
+                // replacements grow rare as the cell fills, the chance being SAMPLE_SIZE / casts seen
+                for (int i = 0; i < SAMPLE_SIZE; i++) {
+                    if (sample[i] == largest[cell]) {
+                        sample[i] = key;
+                        break;
+                    }
+                }
+                largest[cell] = max(sample);
+            }
+        }
+        return of(Level.of(FINEST_ROWS, samples, sampleSizes), size);
+    }
+
+    /** The pyramid over the finest level's samples, each coarser level derived from the next. */
+    private static CastPyramid of(Level finest, int size) {
+        Level[] levels = new Level[LEVELS];
+        levels[FINEST] = finest;
+        for (int level = FINEST - 1; level >= 0; level--) {
+            levels[level] = levels[level + 1].coarser();
+        }
+        return new CastPyramid(levels, size);
+    }
+
+    /**
+     * A new pyramid sampling the casts of this one and casts {@code fromCast .. table.size() - 1}
+     * of the table, which must extend the table this pyramid was built over without changing the
+     * ids of its casts. The samples are the same as a pyramid built over the whole table.
+     */
+    public CastPyramid append(CastTable table, int fromCast) {
+        return plus(build(table, fromCast), 0);
+    }
+
+    /**
+     * A new pyramid sampling the casts of this one and of another, whose cast ids are shifted by
+     * {@code firstCast}: e.g. the pyramid of a source file whose casts are appended to the
+     * catalog from id {@code firstCast}. Every level is merged, none derived again.
+     */
+    public CastPyramid plus(CastPyramid other, int firstCast) {
+        Level[] merged = new Level[LEVELS];
+        for (int level = 0; level < LEVELS; level++) {
+            merged[level] = levels[level].plus(other.levels[level], firstCast);
+        }
+        return new CastPyramid(merged, size + other.size);
+    }
+
+    /**
+     * The pyramid of consecutive tables, e.g. of every source file of a catalog, from theirs: the
+     * cast ids of pyramid {@code i} are shifted by {@code firstCast[i]}. The finest levels are
+     * merged in one pass and the coarser levels derived once, however many pyramids there are.
+     * The samples are the same as a pyramid built over the whole table.
+     */
+    public static CastPyramid concat(List<CastPyramid> pyramids, int[] firstCast) {
+        long[][] samples = new long[FINEST_CELLS][];
+        int[] sampleSizes = new int[FINEST_CELLS];
+        int size = 0;
+        for (int p = 0; p < pyramids.size(); p++) {
+            Level finest = pyramids.get(p).levels[FINEST];
+            size += pyramids.get(p).size;
+            for (int cell = 0; cell < FINEST_CELLS; cell++) {
+                int from = finest.cellStart()[cell];
+                int length = finest.cellStart()[cell + 1] - from;
+                if (length == 0) continue;
+                int n = sampleSizes[cell];
+                if (samples[cell] == null) {
+                    samples[cell] = new long[2 * SAMPLE_SIZE];
+                } else if (n + length > samples[cell].length) {
+                    // keep the smallest: the rest can never be sampled
+                    Arrays.sort(samples[cell], 0, n);
+                    n = SAMPLE_SIZE;
+                }
+                for (int i = 0; i < length; i++) {
+                    samples[cell][n++] = finest.samples()[from + i] + firstCast[p];
+                }
+                sampleSizes[cell] = n;
+            }
+        }
+        for (int cell = 0; cell < FINEST_CELLS; cell++) {
+            if (sampleSizes[cell] <= SAMPLE_SIZE) continue;
+            Arrays.sort(samples[cell], 0, sampleSizes[cell]);
+            sampleSizes[cell] = SAMPLE_SIZE;
+        }
+        return of(Level.of(FINEST_ROWS, samples, sampleSizes), size);
+    }
+
+    /**
+     * Writes the samples of the finest level's non empty cells, from which {@link #read} derives
+     * the rest, replacing any existing file atomically.
+     */
+    public void write(Path target) throws IOException {
+        Level finest = levels[FINEST];
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 64 * 1024))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(size);
+            out.writeInt(finest.samples().length);
+            for (int cell = 0; cell < FINEST_CELLS; cell++) {
+                int from = finest.cellStart()[cell];
+                int length = finest.cellStart()[cell + 1] - from;
+                if (length == 0) continue;
+                out.writeInt(cell);
+                out.writeInt(length);
+                for (int i = 0; i < length; i++) {
+                    out.writeLong(finest.samples()[from + i]);
+                }
+            }
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Reads a pyramid written by {@link #write}.
+     *
+     * @throws IOException if the file cannot be read or is not a pyramid file of this version
+     */
+    public static CastPyramid read(Path path) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 64 * 1024))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not a pyramid file of version " + VERSION + ": " + path);
+            }
+            int size = in.readInt();
+            int remaining = in.readInt();
+            long[][] samples = new long[FINEST_CELLS][];
+            int[] sampleSizes = new int[FINEST_CELLS];
+            while (remaining > 0) {
+                int cell = in.readInt();
+                int length = in.readInt();
+                if (cell < 0 || cell >= FINEST_CELLS || length < 1 || length > Math.min(SAMPLE_SIZE, remaining)) {
+                    throw new IOException("Corrupt pyramid file: " + path);
+                }
+                samples[cell] = new long[length];
+                for (int i = 0; i < length; i++) {
+                    samples[cell][i] = in.readLong();
+                }
+                sampleSizes[cell] = length;
+                remaining -= length;
+            }
+            return of(Level.of(FINEST_ROWS, samples, sampleSizes), size);
+        }
+    }
+
+    /** Number of sampled casts, which is every cast with a position. */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * An evenly spread sample of at most {@code maxPoints} of the casts matching the query.
+     * <p>
+     * The cells over the viewport take turns, in an order scattered by a hash of the cell, to
+     * contribute the next cast of their sample that is in the viewport and passes the filters. So
+     * every cell with a match is drawn before any gets a second point, and a client reading only
+     * a prefix of the result still has an even spread. The result is the same for the same casts
+     * and query. Where a cell has no more casts than its sample holds every match is returned; a
+     * denser cell returns at most {@link #SAMPLE_SIZE} at the finest level.
+     * <p>
+     * A narrow time or instrument filter passes few of each sample. If the budget is not filled,
+     * the sample is drawn again from the next finer level, with four times the candidates, until
+     * it is or the samples hold every match; filtered requests cost more for it.
+     *
+     * @param accept a further filter on the casts, e.g. by country
+     */
+    public int[] sample(CastTable table, CastQuery query, int maxPoints, IntPredicate accept) {
+        if (maxPoints < 1) throw new IllegalArgumentException("maxPoints must be at least 1: " + maxPoints);
+        int level = FINEST;
+        while (level > 0 && cellCount(query, level) > maxPoints) {
+            level--;
+        }
+        while (true) {
+            Level sampled = levels[level];
+            int[] cells = cells(query, level);
+            int[] result = new int[Math.min(maxPoints, 1024)];
+            int found = 0;
+            int active = cells.length;
+            for (int rank = 0; rank < SAMPLE_SIZE && active > 0; rank++) {
+                // cells whose sample is used up drop out, keeping the turn order of the rest
+                int stillActive = 0;
+                for (int i = 0; i < active; i++) {
+                    int cell = cells[i];
+                    int entry = sampled.cellStart()[cell] + rank;
+                    if (entry >= sampled.cellStart()[cell + 1]) continue;
+                    cells[stillActive++] = cell;
+                    int cast = (int) sampled.samples()[entry];
+                    if (!matches(table, query, cast) || !accept.test(cast)) continue;
+                    if (found == result.length) result = Arrays.copyOf(result, Math.min(maxPoints, 2 * found));
+                    result[found++] = cast;
+                    if (found == maxPoints) return result;
+                }
+                active = stillActive;
+            }
+            // cells still active have a full sample, and may have more casts than it holds
+            if (active > 0 && level < FINEST) {
+                level++;
+            } else {
+                return Arrays.copyOf(result, found);
+            }
+        }
+    }
+
+    private static int cellCount(CastQuery query, int level) {
+        int[] rows = rows(query, level);
+        int[] columns = columns(query, level);
+        return (rows[1] - rows[0] + 1) * columns[2];
+    }
+
+    /** The cells at a level overlapping the query box, in turn order. */
+    private int[] cells(CastQuery query, int level) {
+        int[] rows = rows(query, level);
+        int[] columns = columns(query, level);
+        int levelColumns = levels[level].columns();
+        long[] keyed = new long[(rows[1] - rows[0] + 1) * columns[2]];
+        int i = 0;
+        for (int row = rows[0]; row <= rows[1]; row++) {
+            for (int c = 0; c < columns[2]; c++) {
+                int cell = row * levelColumns + (columns[0] + c) % levelColumns;
+                keyed[i++] = priority(cell) << 32 | cell;
+            }
+        }
+        Arrays.sort(keyed);
+        int[] cells = new int[keyed.length];
+        for (i = 0; i < cells.length; i++) cells[i] = (int) keyed[i];
+        return cells;
+    }
+
+    /** First and last row at a level overlapping the query box. */
+    private static int[] rows(CastQuery query, int level) {
+        int shift = FINEST - level;
+        return new int[]{finestRow(query.minLatitude()) >> shift, finestRow(query.maxLatitude()) >> shift};
+    }
+
+    /** First column, last column and number of columns at a level overlapping the query box, which may wrap. */
+    private static int[] columns(CastQuery query, int level) {
+        int shift = FINEST - level;
+        int levelColumns = 2 << level;
+        int first = finestColumn(query.minLongitude());
+        int last = finestColumn(query.maxLongitude());
+        if (!query.crossesAntimeridian()) {
+            return new int[]{first >> shift, last >> shift, (last >> shift) - (first >> shift) + 1};
+        }
+        if (last >= first) {
+            // both edges of the box fall in the same finest column: every column overlaps
+            return new int[]{0, levelColumns - 1, levelColumns};
+        }
+        first >>= shift;
+        last >>= shift;
+        return new int[]{first, last, last >= first ? levelColumns : levelColumns - first + last + 1};
+    }
+
+    private static boolean matches(CastTable table, CastQuery query, int cast) {
+        return query.containsPosition(table.latitude(cast), SpatioTemporalIndex.normalise(table.longitude(cast)))
+                && query.containsTime(table.epochSecond(cast))
+                && (query.instruments().isEmpty() || query.instruments().contains(table.instrument(cast)));
+    }
+
+    private static int finestRow(float latitude) {
+        return SpatioTemporalIndex.row(latitude, FINEST_DEGREES, FINEST_ROWS);
+    }
+
+    private static int finestColumn(float longitude) {
+        return SpatioTemporalIndex.column(SpatioTemporalIndex.normalise(longitude), FINEST_DEGREES, FINEST_ROWS * 2);
+    }
+
+    /** 31 well mixed bits of a cast number or cell (the murmur3 finaliser): random, yet repeatable. */
+    static long priority(int value) {
+        int h = value;
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h >>> 1;
+    }
+
+    private static long max(long[] values) {
+        long max = Long.MIN_VALUE;
+        for (long value : values) max = Math.max(max, value);
+        return max;
+    }
+}
@@ -0,0 +1,49 @@
+package com.luketn.javawod.query;
+
+import java.util.Set;
+
+/**
+ * A bounding box, time range and instrument filter over casts.
+ * <p>
+ * A box whose {@code minLongitude} is greater than its {@code maxLongitude} crosses the
+ * antimeridian, e.g. 170..-170 covers 20 degrees around 180. The time range is
+ * {@code [fromEpochSecond, toEpochSecond)}. An empty instrument set matches every instrument.
+ */
+public record CastQuery(
+        float minLatitude,
+        float maxLatitude,
+        float minLongitude,
+        float maxLongitude,
+        long fromEpochSecond,
+        long toEpochSecond,
+        Set<String> instruments
+) {
+    public CastQuery {
+        if (minLatitude > maxLatitude) {
+            throw new IllegalArgumentException("minLatitude " + minLatitude + " is above maxLatitude " + maxLatitude);
+        }
+        if (fromEpochSecond > toEpochSecond) {
+            throw new IllegalArgumentException("Time range ends before it starts");
+        }
+        instruments = Set.copyOf(instruments);
+    }
+
+    public static CastQuery everything() {
+        return new CastQuery(-90, 90, -180, 180, Long.MIN_VALUE, Long.MAX_VALUE, Set.of());
+    }
+
+    public boolean crossesAntimeridian() {
+        return minLongitude > maxLongitude;
+    }
+
+    public boolean containsPosition(float latitude, float longitude) {
+        if (latitude < minLatitude || latitude > maxLatitude) return false;
+        return crossesAntimeridian()
+                ? longitude >= minLongitude || longitude <= maxLongitude
+                : longitude >= minLongitude && longitude <= maxLongitude;
+    }
+
+    public boolean containsTime(long epochSecond) {
+        return epochSecond >= fromEpochSecond && epochSecond < toEpochSecond;
+    }
+}
@@ -0,0 +1,188 @@
+package com.luketn.javawod.query;
+
+/**
+ * Balanced KD-tree over cast positions as 3D unit vectors, one tree of a {@link NearestCastIndex}.
+ * <p>
+ * The points are held in parallel primitive arrays, reordered in place so that the tree is
+ * implicit: node {@code n} covers a range of the arrays, its children {@code 2n + 1} and
+ * {@code 2n + 2} the halves either side of the middle point, which is the median along the axis
+ * on which the range is widest. Ranges of at most {@link #LEAF_SIZE} points are leaves. Each node
+ * also bounds the days and instruments of its points, so filtered searches skip whole subtrees.
+ * Immutable once built.
+ */
+final class KdTree {
+    static final int LEAF_SIZE = 32;
+    private static final byte LEAF = -1;
+
+    final float[] x;
+    final float[] y;
+    final float[] z;
+    final int[] castIds;
+    final int[] days;
+    final byte[] instrumentIds;
+
+    // per node, heap numbered
+    private final byte[] axis;
+    private final float[] split;
+    private final int[] minDay;
+    private final int[] maxDay;
+    private final long[] instrumentMask;
+
+    /** Builds a tree over the points, reordering the arrays, which it takes ownership of. */
+    KdTree(float[] x, float[] y, float[] z, int[] castIds, int[] days, byte[] instrumentIds) {
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        this.castIds = castIds;
+        this.days = days;
+        this.instrumentIds = instrumentIds;
+        int depth = 0;
+        for (int size = castIds.length; size > LEAF_SIZE; size = (size + 1) / 2) {
+            depth++;
+        }
+        int nodes = (1 << depth + 1) - 1;
+        axis = new byte[nodes];
+        split = new float[nodes];
+        minDay = new int[nodes];
+        maxDay = new int[nodes];
+        instrumentMask = new long[nodes];
+        if (castIds.length > 0) build(0, 0, castIds.length);
+    }
+
+    int size() {
+        return castIds.length;
+    }
+
+    /** Bit of an instrument id in the node masks; ids beyond 62 share the top bit. */
+    static long instrumentBit(int instrumentId) {
+        return 1L << Math.min(instrumentId, 63);
+    }
+
+    /**
+     * Offers every point accepted by the filter that could be closer than the collector's bound
+     * to it.
+     *
+     * @param q           the query position as a unit vector
+     * @param instruments accepted instrument ids, or null for all
+     * @param mask        bits of the accepted instruments, see {@link #instrumentBit}
+     */
+    void search(double[] q, int fromDay, int toDay, boolean[] instruments, long mask, NearestCollector collector) {
+        if (castIds.length > 0) search(0, 0, castIds.length, q, fromDay, toDay, instruments, mask, collector);
+    }
+
+    private void search(int node, int lo, int hi, double[] q, int fromDay, int toDay, boolean[] instruments, long mask,
+                        NearestCollector collector) {
+        if (maxDay[node] < fromDay || minDay[node] >= toDay || (instrumentMask[node] & mask) == 0) return;
+        if (axis[node] == LEAF) {
+            for (int i = lo; i < hi; i++) {
+                double dx = q[0] - x[i];
+                double dy = q[1] - y[i];
+                double dz = q[2] - z[i];
+                double chord2 = dx * dx + dy * dy + dz * dz;
+                if (chord2 > collector.bound()) continue;
+                if (days[i] < fromDay || days[i] >= toDay) continue;
+                if (instruments != null && !instruments[instrumentIds[i]]) continue;
+                collector.offer(chord2, castIds[i]);
+            }
+            return;
+        }
+        int m = (lo + hi) >>> 1;
+        double diff = q[axis[node]] - split[node];
+        // the near side first, so the bound has tightened by the time the far side is considered
+        if (diff < 0) {
+            search(2 * node + 1, lo, m, q, fromDay, toDay, instruments, mask, collector);
+            if (diff * diff <= collector.bound()) search(2 * node + 2, m, hi, q, fromDay, toDay, instruments, mask, collector);
+        } else {
+            search(2 * node + 2, m, hi, q, fromDay, toDay, instruments, mask, collector);
+            if (diff * diff <= collector.bound()) search(2 * node + 1, lo, m, q, fromDay, toDay, instruments, mask, collector);
+        }
+    }
+
+    private void build(int node, int lo, int hi) {
+        if (hi - lo <= LEAF_SIZE) {
+            axis[node] = LEAF;
+            int low = Integer.MAX_VALUE;
+            int high = Integer.MIN_VALUE;
+            long mask = 0;
+            for (int i = lo; i < hi; i++) {
+                low = Math.min(low, days[i]);
+                high = Math.max(high, days[i]);
+                mask |= instrumentBit(instrumentIds[i]);
+            }
+            minDay[node] = low;
+            maxDay[node] = high;
+            instrumentMask[node] = mask;
+            return;
+        }
+        int a = widestAxis(lo, hi);
+        int m = (lo + hi) >>> 1;
+        select(coordinates(a), lo, hi, m);
+        axis[node] = (byte) a;
+        // kept apart: building the right half reorders the points from m on
+        split[node] = coordinates(a)[m];
+        int left = 2 * node + 1;
+        int right = 2 * node + 2;
+        build(left, lo, m);
+        build(right, m, hi);
+        minDay[node] = Math.min(minDay[left], minDay[right]);
+        maxDay[node] = Math.max(maxDay[left], maxDay[right]);
+        instrumentMask[node] = instrumentMask[left] | instrumentMask[right];
+    }
+
+    private float[] coordinates(int axis) {
+        return axis == 0 ? x : axis == 1 ? y : z;
+    }
+
+    private int widestAxis(int lo, int hi) {
+        int widest = 0;
+        float widestExtent = -1;
+        for (int a = 0; a < 3; a++) {
+            float[] c = coordinates(a);
+            float min = Float.POSITIVE_INFINITY;
+            float max = Float.NEGATIVE_INFINITY;
+            for (int i = lo; i < hi; i++) {
+                min = Math.min(min, c[i]);
+                max = Math.max(max, c[i]);
+            }
+            if (max - min > widestExtent) {
+                widestExtent = max - min;
+                widest = a;
+            }
+        }
+        return widest;
+    }
+
+    /**
+     * Quickselect: reorders {@code lo .. hi - 1} so that the point at {@code k} has no greater
+     * key before it and no smaller key after it. Hoare partitioning keeps many equal keys, e.g.
+     * repeat casts at a mooring, balanced.
+     */
+    private void select(float[] key, int lo, int hi, int k) {
+        hi--;
+        while (hi > lo) {
+            float a = key[lo];
+            float b = key[(lo + hi) >>> 1];
+            float c = key[hi];
+            float pivot = Math.max(Math.min(a, b), Math.min(Math.max(a, b), c));
+            int i = lo;
+            int j = hi;
+            while (i <= j) {
+                while (key[i] < pivot) i++;
+                while (key[j] > pivot) j--;
+                if (i <= j) swap(i++, j--);
+            }
+            if (k <= j) hi = j;
+            else if (k >= i) lo = i;
+            else return;
+        }
+    }
+
+    private void swap(int i, int j) {
+        float f = x[i]; x[i] = x[j]; x[j] = f;
+        f = y[i]; y[i] = y[j]; y[j] = f;
+        f = z[i]; z[i] = z[j]; z[j] = f;
+        int n = castIds[i]; castIds[i] = castIds[j]; castIds[j] = n;
+        n = days[i]; days[i] = days[j]; days[j] = n;
+        byte b = instrumentIds[i]; instrumentIds[i] = instrumentIds[j]; instrumentIds[j] = b;
+    }
+}
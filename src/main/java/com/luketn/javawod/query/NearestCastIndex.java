@@ -0,0 +1,191 @@
+package com.luketn.javawod.query;
+
+import com.luketn.javawod.store.CastTable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Nearest neighbour index over cast positions on the sphere: the {@code k} casts nearest a
+ * position, or those within a radius, by great-circle distance.
+ * <p>
+ * Positions are held as 3D unit vectors in {@link KdTree}s. The straight line (chord) between two
+ * unit vectors orders them exactly as the great-circle distance does, since
+ * {@code hav(d / R) = (chord / 2)²}, so the trees search on squared chord length and only the
+ * results are converted to kilometres. Unlike a latitude/longitude grid this needs no special
+ * cases at the poles or the antimeridian. A search visits {@code O(log n)} nodes for a small
+ * {@code k}; time and instrument filters prune whole subtrees by the day and instrument bounds
+ * each node keeps. Like the {@link SpatioTemporalIndex}, time is filtered by whole days, which
+ * relies on cast times being midnight UTC.
+ * <p>
+ * {@link #append} adds casts without rebuilding what is already indexed: the new casts get a tree
+ * of their own, merged with the trees no larger than it so that there are never more than
+ * {@code O(log n)} trees to search. Casts without a position are not indexed. Immutable once built
+ * and safe to query from any thread.
+ */
+public final class NearestCastIndex {
+    /** Mean Earth radius (IUGG) in kilometres. */
+    public static final double EARTH_RADIUS_KM = 6371.0088;
+    private static final long SECONDS_PER_DAY = 86_400L;
+
+    // largest first
+    private final List<KdTree> trees;
+    private final String[] instruments;
+    private final int size;
+
+    private NearestCastIndex(List<KdTree> trees, String[] instruments) {
+        this.trees = List.copyOf(trees);
+        this.instruments = instruments;
+        this.size = trees.stream().mapToInt(KdTree::size).sum();
+    }
+
+    public static NearestCastIndex build(CastTable table) {
+        return new NearestCastIndex(List.of(), new String[0]).append(table, 0);
+    }
+
+    /**
+     * A new index holding the casts of this index and casts {@code fromCast .. table.size() - 1}
+     * of the table, which must extend the table this index was built over without changing the
+     * ids of its casts. This index is unchanged and can go on answering queries meanwhile.
+     */
+    public NearestCastIndex append(CastTable table, int fromCast) {
+        List<String> mergedInstruments = new ArrayList<>(List.of(instruments));
+        Points added = Points.of(table, fromCast, mergedInstruments);
+        List<KdTree> merged = new ArrayList<>(trees);
+        // fold in the smaller trees, so sizes at least double from one tree to the next
+        while (!merged.isEmpty() && merged.getLast().size() <= added.size) {
+            added = Points.concat(merged.removeLast(), added);
+        }
+        if (added.size > 0) {
+            merged.add(new KdTree(added.x, added.y, added.z, added.castIds, added.days, added.instrumentIds));
+        }
+        return new NearestCastIndex(merged, mergedInstruments.toArray(String[]::new));
+    }
+
+    /** Number of indexed casts. */
+    public int size() {
+        return size;
+    }
+
+    /** Number of trees searched by a query. */
+    int trees() {
+        return trees.size();
+    }
+
+    /** The {@code k} casts nearest the query position that match its filters, nearest first. */
+    public Neighbours nearest(NearestQuery query, int k) {
+        return search(query, k, Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * The casts within a great-circle distance of the query position that match its filters,
+     * nearest first, at most {@code limit} of them.
+     */
+    public Neighbours within(NearestQuery query, double radiusKm, int limit) {
+        if (!(radiusKm >= 0)) throw new IllegalArgumentException("Radius must not be negative: " + radiusKm);
+        return search(query, limit, kmToChord2(radiusKm));
+    }
+
+    private Neighbours search(NearestQuery query, int k, double maxChord2) {
+        NearestCollector collector = new NearestCollector(k, maxChord2);
+        boolean[] accepted = null;
+        long mask = -1L;
+        if (!query.instruments().isEmpty()) {
+            accepted = new boolean[instruments.length];
+            mask = 0;
+            for (int i = 0; i < instruments.length; i++) {
+                if (query.instruments().contains(instruments[i])) {
+                    accepted[i] = true;
+                    mask |= KdTree.instrumentBit(i);
+                }
+            }
+            if (mask == 0) return collector.toNeighbours();
+        }
+        int fromDay = SpatioTemporalIndex.dayBound(query.fromEpochSecond());
+        int toDay = SpatioTemporalIndex.dayBound(query.toEpochSecond());
+        double[] q = unitVector(query.latitude(), query.longitude());
+        for (KdTree tree : trees) {
+            tree.search(q, fromDay, toDay, accepted, mask, collector);
+        }
+        return collector.toNeighbours();
+    }
+
+    /** Great-circle distance in kilometres by the haversine formula. */
+    public static double haversineKm(double latitude1, double longitude1, double latitude2, double longitude2) {
+        double dLatitude = Math.toRadians(latitude2 - latitude1);
+        double dLongitude = Math.toRadians(longitude2 - longitude1);
+        double a = Math.pow(Math.sin(dLatitude / 2), 2)
+                + Math.cos(Math.toRadians(latitude1)) * Math.cos(Math.toRadians(latitude2)) * Math.pow(Math.sin(dLongitude / 2), 2);
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    static double chord2ToKm(double chord2) {
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1, Math.sqrt(chord2) / 2));
+    }
+
+    static double kmToChord2(double km) {
+        double angle = km / EARTH_RADIUS_KM;
+        if (angle >= Math.PI) return Double.POSITIVE_INFINITY;
+        double chord = 2 * Math.sin(angle / 2);
+        return chord * chord;
+    }
+
+    static double[] unitVector(double latitude, double longitude) {
+        double phi = Math.toRadians(latitude);
+        double lambda = Math.toRadians(longitude);
+        return new double[]{Math.cos(phi) * Math.cos(lambda), Math.cos(phi) * Math.sin(lambda), Math.sin(phi)};
+    }
+
+    /** Points for a tree in parallel arrays. */
+    private record Points(int size, float[] x, float[] y, float[] z, int[] castIds, int[] days, byte[] instrumentIds) {
+
+        static Points of(CastTable table, int fromCast, List<String> instruments) {
+            int located = 0;
+            for (int cast = fromCast; cast < table.size(); cast++) {
+                if (!Float.isNaN(table.latitude(cast)) && !Float.isNaN(table.longitude(cast))) located++;
+            }
+            Points points = new Points(located, new float[located], new float[located], new float[located],
+                    new int[located], new int[located], new byte[located]);
+            int i = 0;
+            for (int cast = fromCast; cast < table.size(); cast++) {
+                float latitude = table.latitude(cast);
+                float longitude = table.longitude(cast);
+                if (Float.isNaN(latitude) || Float.isNaN(longitude)) continue;
+                double[] v = unitVector(latitude, longitude);
+                points.x[i] = (float) v[0];
+                points.y[i] = (float) v[1];
+                points.z[i] = (float) v[2];
+                points.castIds[i] = cast;
+                points.days[i] = (int) Math.floorDiv(table.epochSecond(cast), SECONDS_PER_DAY);
+                points.instrumentIds[i++] = (byte) instrumentId(instruments, table.instrument(cast));
+            }
+            return points;
+        }
+
+        /** The points of a tree followed by others, copied: trees are never changed. */
+        static Points concat(KdTree tree, Points points) {
+            int size = tree.size() + points.size;
+            Points concat = new Points(size, Arrays.copyOf(tree.x, size), Arrays.copyOf(tree.y, size),
+                    Arrays.copyOf(tree.z, size), Arrays.copyOf(tree.castIds, size), Arrays.copyOf(tree.days, size),
+                    Arrays.copyOf(tree.instrumentIds, size));
+            System.arraycopy(points.x, 0, concat.x, tree.size(), points.size);
+            System.arraycopy(points.y, 0, concat.y, tree.size(), points.size);
+            System.arraycopy(points.z, 0, concat.z, tree.size(), points.size);
+            System.arraycopy(points.castIds, 0, concat.castIds, tree.size(), points.size);
+            System.arraycopy(points.days, 0, concat.days, tree.size(), points.size);
+            System.arraycopy(points.instrumentIds, 0, concat.instrumentIds, tree.size(), points.size);
+            return concat;
+        }
+
+        private static int instrumentId(List<String> instruments, String instrument) {
+            int id = instruments.indexOf(instrument);
+            if (id < 0) {
+                if (instruments.size() == 127) throw new IllegalStateException("More than 127 instruments");
+                id = instruments.size();
+                instruments.add(instrument);
+            }
+            return id;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.luketn.javawod.query;
+
+import java.util.Arrays;
+
+/**
+ * The {@code k} nearest points offered so far within a maximum distance, as a binary max-heap on
+ * squared chord length over parallel primitive arrays. Its {@link #bound()} is the distance a
+ * point must beat to be kept, which is what lets a search prune.
+ */
+final class NearestCollector {
+    private final int k;
+    private final double maxChord2;
+    private double[] chord2 = new double[16];
+    private int[] casts = new int[16];
+    private int size;
+
+    NearestCollector(int k, double maxChord2) {
+        if (k < 1) throw new IllegalArgumentException("k must be at least 1: " + k);
+        this.k = k;
+        this.maxChord2 = maxChord2;
+    }
+
+    /** Largest squared chord length a point may have and still be kept. */
+    double bound() {
+        return size < k ? maxChord2 : chord2[0];
+    }
+
+    void offer(double distance, int cast) {
+        if (size < k) {
+            if (distance > maxChord2) return;
+            if (size == chord2.length) {
+                int capacity = (int) Math.min(k, 2L * size);
+                chord2 = Arrays.copyOf(chord2, capacity);
+                casts = Arrays.copyOf(casts, capacity);
+            }
+            int i = size++;
+            // sift up
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (chord2[parent] >= distance) break;
+                chord2[i] = chord2[parent];
+                casts[i] = casts[parent];
+                i = parent;
+            }
+            chord2[i] = distance;
+            casts[i] = cast;
+        } else if (distance < chord2[0]) {
+            siftDown(distance, cast);
+        }
+    }
+
+    private void siftDown(double distance, int cast) {
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) break;
+            if (child + 1 < size && chord2[child + 1] > chord2[child]) child++;
+            if (chord2[child] <= distance) break;
+            chord2[i] = chord2[child];
+            casts[i] = casts[child];
+            i = child;
+        }
+        chord2[i] = distance;
+        casts[i] = cast;
+    }
+
+    /** The points kept, nearest first, with chord lengths converted to kilometres. */
+    Neighbours toNeighbours() {
+        int[] resultCasts = new int[size];
+        double[] distancesKm = new double[size];
+        while (size > 0) {
+            int last = --size;
+            resultCasts[last] = casts[0];
+            distancesKm[last] = NearestCastIndex.chord2ToKm(chord2[0]);
+            if (last > 0) siftDown(chord2[last], casts[last]);
+        }
+        return new Neighbours(resultCasts, distancesKm);
+    }
+}
@@ -0,0 +1,34 @@
+package com.luketn.javawod.query;
+
+import java.util.Set;
+
+/**
+ * A position to search around, with a time range and instrument filter on the casts considered.
+ * The time range is {@code [fromEpochSecond, toEpochSecond)}; an empty instrument set matches
+ * every instrument.
+ */
+public record NearestQuery(
+        double latitude,
+        double longitude,
+        long fromEpochSecond,
+        long toEpochSecond,
+        Set<String> instruments
+) {
+    public NearestQuery {
+        if (!(latitude >= -90 && latitude <= 90)) {
+            throw new IllegalArgumentException("Latitude must be within -90..90: " + latitude);
+        }
+        if (!Double.isFinite(longitude)) {
+            throw new IllegalArgumentException("Longitude must be finite: " + longitude);
+        }
+        if (fromEpochSecond > toEpochSecond) {
+            throw new IllegalArgumentException("Time range ends before it starts");
+        }
+        instruments = Set.copyOf(instruments);
+    }
+
+    /** Every cast, by distance from a position. */
+    public static NearestQuery at(double latitude, double longitude) {
+        return new NearestQuery(latitude, longitude, Long.MIN_VALUE, Long.MAX_VALUE, Set.of());
+    }
+}
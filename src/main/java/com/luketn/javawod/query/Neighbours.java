@@ -0,0 +1,31 @@
+package com.luketn.javawod.query;
+
+/**
+ * Cast ids with their great-circle distance from a query position, nearest first.
+ */
+public final class Neighbours {
+    private final int[] casts;
+    private final double[] distancesKm;
+
+    Neighbours(int[] casts, double[] distancesKm) {
+        this.casts = casts;
+        this.distancesKm = distancesKm;
+    }
+
+    public int size() {
+        return casts.length;
+    }
+
+    public int cast(int i) {
+        return casts[i];
+    }
+
+    public double distanceKm(int i) {
+        return distancesKm[i];
+    }
+
+    /** All cast ids, nearest first. */
+    public int[] casts() {
+        return casts.clone();
+    }
+}
@@ -0,0 +1,291 @@
+package com.luketn.javawod.query;
+
+import com.luketn.javawod.store.CastTable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+/**
+ * In-memory grid index over cast positions and dates.
+ * <p>
+ * Casts are binned into lat/lon cells of {@code cellDegrees}. The entries of all cells are laid
+ * out back to back in parallel primitive arrays (cast id, day, latitude, longitude, instrument),
+ * cell {@code c} owning {@code cellStart[c] .. cellStart[c + 1]}, and sorted by day within each
+ * cell. A query visits only the cells overlapping its box, binary searches each cell's time
+ * range, and checks positions only in the cells on the edge of the box.
+ * <p>
+ * Time is indexed at day resolution, which is all a WOD cast date carries. Cast times must be
+ * midnight UTC of their date, as {@link com.luketn.javawod.wod.WodAsciiParser} stores them: the
+ * ends of the time range are rounded up to whole days and cast times are never compared to the
+ * second. Casts without a position are not indexed. Immutable once built and safe to query from
+ * any thread; {@link #append} returns a grown copy.
+ */
+public final class SpatioTemporalIndex {
+    private static final long SECONDS_PER_DAY = 86_400L;
+    private static final long DAY_BIAS = 1L << 30;
+
+    private final float cellDegrees;
+    private final int rows;
+    private final int columns;
+    private final int[] cellStart;
+    private final int[] castIds;
+    private final int[] days;
+    private final float[] latitudes;
+    private final float[] longitudes;
+    private final byte[] instrumentIds;
+    private final String[] instruments;
+
+    private SpatioTemporalIndex(float cellDegrees, int rows, int columns, int[] cellStart, int[] castIds, int[] days,
+                                float[] latitudes, float[] longitudes, byte[] instrumentIds, String[] instruments) {
+        this.cellDegrees = cellDegrees;
+        this.rows = rows;
+        this.columns = columns;
+        this.cellStart = cellStart;
+        this.castIds = castIds;
+        this.days = days;
+        this.latitudes = latitudes;
+        this.longitudes = longitudes;
+        this.instrumentIds = instrumentIds;
+        this.instruments = instruments;
+    }
+
+    public static SpatioTemporalIndex build(CastTable table) {
+        return build(table, 1f);
+    }
+
+    public static SpatioTemporalIndex build(CastTable table, float cellDegrees) {
+        int rows = (int) Math.ceil(180 / cellDegrees);
+        int columns = (int) Math.ceil(360 / cellDegrees);
+        SpatioTemporalIndex empty = new SpatioTemporalIndex(cellDegrees, rows, columns, new int[rows * columns + 1],
+                new int[0], new int[0], new float[0], new float[0], new byte[0], new String[0]);
+        return empty.append(table, 0);
+    }
+
+    /**
+     * A new index holding the casts of this index and casts {@code fromCast .. table.size() - 1}
+     * of the table, which must extend the table this index was built over without changing the
+     * ids of its casts. Only the new casts are read and sorted; the entries already indexed are
+     * merged with them cell by cell, so the index grows in one linear pass rather than a rebuild.
+     * This index is unchanged and can go on answering queries meanwhile.
+     */
+    public SpatioTemporalIndex append(CastTable table, int fromCast) {
+        int cells = rows * columns;
+        int casts = table.size() - fromCast;
+
+        // pass 1: cell of every new cast, and cell sizes
+        int[] cellOf = new int[casts];
+        int[] addedStart = new int[cells + 1];
+        int located = 0;
+        for (int i = 0; i < casts; i++) {
+            float latitude = table.latitude(fromCast + i);
+            float longitude = table.longitude(fromCast + i);
+            if (Float.isNaN(latitude) || Float.isNaN(longitude)) {
+                cellOf[i] = -1;
+                continue;
+            }
+            int cell = row(latitude, cellDegrees, rows) * columns + column(normalise(longitude), cellDegrees, columns);
+            cellOf[i] = cell;
+            addedStart[cell + 1]++;
+            located++;
+        }
+        for (int cell = 0; cell < cells; cell++) {
+            addedStart[cell + 1] += addedStart[cell];
+        }
+
+        // pass 2: (day, cast id) keys placed by cell, then sorted within each cell
+        long[] keys = new long[located];
+        int[] next = Arrays.copyOf(addedStart, cells);
+        for (int i = 0; i < casts; i++) {
+            int cell = cellOf[i];
+            if (cell < 0) continue;
+            long day = Math.floorDiv(table.epochSecond(fromCast + i), SECONDS_PER_DAY) + DAY_BIAS;
+            keys[next[cell]++] = day << 32 | fromCast + i;
+        }
+        for (int cell = 0; cell < cells; cell++) {
+            if (addedStart[cell + 1] - addedStart[cell] > 1) {
+                Arrays.sort(keys, addedStart[cell], addedStart[cell + 1]);
+            }
+        }
+
+        // pass 3: each cell's existing entries merged with its new ones; new ids are higher, so
+        // existing entries go first within a day to keep cells in (day, cast id) order
+        int size = castIds.length + located;
+        int[] mergedStart = new int[cells + 1];
+        int[] mergedCastIds = new int[size];
+        int[] mergedDays = new int[size];
+        float[] mergedLatitudes = new float[size];
+        float[] mergedLongitudes = new float[size];
+        byte[] mergedInstrumentIds = new byte[size];
+        List<String> mergedInstruments = new ArrayList<>(List.of(instruments));
+        int out = 0;
+        for (int cell = 0; cell < cells; cell++) {
+            mergedStart[cell] = out;
+            int i = cellStart[cell];
+            int j = addedStart[cell];
+            while (i < cellStart[cell + 1] || j < addedStart[cell + 1]) {
+                int addedDay = j < addedStart[cell + 1] ? (int) ((keys[j] >>> 32) - DAY_BIAS) : Integer.MAX_VALUE;
+                if (i < cellStart[cell + 1] && days[i] <= addedDay) {
+                    mergedCastIds[out] = castIds[i];
+                    mergedDays[out] = days[i];
+                    mergedLatitudes[out] = latitudes[i];
+                    mergedLongitudes[out] = longitudes[i];
+                    mergedInstrumentIds[out++] = instrumentIds[i++];
+                } else {
+                    int cast = (int) keys[j++];
+                    mergedCastIds[out] = cast;
+                    mergedDays[out] = addedDay;
+                    mergedLatitudes[out] = table.latitude(cast);
+                    mergedLongitudes[out] = normalise(table.longitude(cast));
+                    mergedInstrumentIds[out++] = (byte) instrumentId(mergedInstruments, table.instrument(cast));
+                }
+            }
+        }
+        mergedStart[cells] = out;
+        return new SpatioTemporalIndex(cellDegrees, rows, columns, mergedStart, mergedCastIds, mergedDays,
+                mergedLatitudes, mergedLongitudes, mergedInstrumentIds, mergedInstruments.toArray(String[]::new));
+    }
+
+    private static int instrumentId(List<String> instruments, String instrument) {
+        int id = instruments.indexOf(instrument);
+        if (id < 0) {
+            if (instruments.size() == 127) throw new IllegalStateException("More than 127 instruments");
+            id = instruments.size();
+            instruments.add(instrument);
+        }
+        return id;
+    }
+
+    /** Number of indexed casts. */
+    public int size() {
+        return castIds.length;
+    }
+
+    /** Distinct instruments of the indexed casts. */
+    public List<String> instruments() {
+        return List.of(instruments);
+    }
+
+    /**
+     * Passes the id of every cast matching the query to the consumer, cell by cell and in date
+     * order within a cell.
+     */
+    public void forEach(CastQuery query, IntConsumer consumer) {
+        boolean[] instrumentMask = instrumentMask(query);
+        if (instrumentMask != null && !anyTrue(instrumentMask)) return;
+        int fromDay = dayBound(query.fromEpochSecond());
+        int toDay = dayBound(query.toEpochSecond());
+        int firstRow = row(query.minLatitude(), cellDegrees, rows);
+        int lastRow = row(query.maxLatitude(), cellDegrees, rows);
+        int firstColumn = column(normalise(query.minLongitude()), cellDegrees, columns);
+        int lastColumn = column(normalise(query.maxLongitude()), cellDegrees, columns);
+
+        for (int row = firstRow; row <= lastRow; row++) {
+            if (!query.crossesAntimeridian()) {
+                scanColumns(query, row, firstColumn, lastColumn, fromDay, toDay, instrumentMask, consumer);
+            } else if (lastColumn >= firstColumn) {
+                // both edges of the box fall in the same column: every column overlaps
+                scanColumns(query, row, 0, columns - 1, fromDay, toDay, instrumentMask, consumer);
+            } else {
+                scanColumns(query, row, firstColumn, columns - 1, fromDay, toDay, instrumentMask, consumer);
+                scanColumns(query, row, 0, lastColumn, fromDay, toDay, instrumentMask, consumer);
+            }
+        }
+    }
+
+    /** Ids of all casts matching the query. */
+    public int[] query(CastQuery query) {
+        int[][] result = {new int[64]};
+        int[] size = {0};
+        forEach(query, cast -> {
+            if (size[0] == result[0].length) result[0] = Arrays.copyOf(result[0], size[0] * 2);
+            result[0][size[0]++] = cast;
+        });
+        return Arrays.copyOf(result[0], size[0]);
+    }
+
+    public int count(CastQuery query) {
+        int[] count = {0};
+        forEach(query, cast -> count[0]++);
+        return count[0];
+    }
+
+    private void scanColumns(CastQuery query, int row, int firstColumn, int lastColumn, int fromDay, int toDay,
+                             boolean[] instrumentMask, IntConsumer consumer) {
+        float cellMinLatitude = -90 + row * cellDegrees;
+        boolean rowInside = cellMinLatitude >= query.minLatitude()
+                && Math.min(90, cellMinLatitude + cellDegrees) <= query.maxLatitude();
+        for (int column = firstColumn; column <= lastColumn; column++) {
+            int cell = row * columns + column;
+            int start = cellStart[cell];
+            int end = cellStart[cell + 1];
+            if (start == end) continue;
+            start = lowerBound(days, start, end, fromDay);
+            end = lowerBound(days, start, end, toDay);
+            if (start == end) continue;
+
+            float cellMinLongitude = -180 + column * cellDegrees;
+            float cellMaxLongitude = Math.min(180, cellMinLongitude + cellDegrees);
+            boolean inside = rowInside && (query.crossesAntimeridian()
+                    ? cellMinLongitude >= query.minLongitude() || cellMaxLongitude <= query.maxLongitude()
+                    : cellMinLongitude >= query.minLongitude() && cellMaxLongitude <= query.maxLongitude());
+            for (int i = start; i < end; i++) {
+                if (!inside && !query.containsPosition(latitudes[i], longitudes[i])) continue;
+                if (instrumentMask != null && !instrumentMask[instrumentIds[i]]) continue;
+                consumer.accept(castIds[i]);
+            }
+        }
+    }
+
+    private boolean[] instrumentMask(CastQuery query) {
+        if (query.instruments().isEmpty()) return null;
+        boolean[] mask = new boolean[instruments.length];
+        for (int i = 0; i < instruments.length; i++) {
+            mask[i] = query.instruments().contains(instruments[i]);
+        }
+        return mask;
+    }
+
+    private static boolean anyTrue(boolean[] values) {
+        for (boolean value : values) {
+            if (value) return true;
+        }
+        return false;
+    }
+
+    /** First day whose midnight is at or after the given second, clamped to the int range. */
+    static int dayBound(long epochSecond) {
+        long day = Math.floorDiv(epochSecond, SECONDS_PER_DAY);
+        if (Math.floorMod(epochSecond, SECONDS_PER_DAY) != 0) day++;
+        return (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, day));
+    }
+
+    private static int lowerBound(int[] values, int from, int to, int key) {
+        int low = from;
+        int high = to;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (values[mid] < key) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+
+    static int row(float latitude, float cellDegrees, int rows) {
+        int row = (int) Math.floor((latitude + 90) / cellDegrees);
+        return Math.max(0, Math.min(rows - 1, row));
+    }
+
+    static int column(float longitude, float cellDegrees, int columns) {
+        int column = (int) Math.floor((longitude + 180) / cellDegrees);
+        return Math.max(0, Math.min(columns - 1, column));
+    }
+
+    /** Longitude in -180..180. */
+    static float normalise(float longitude) {
+        if (longitude >= -180 && longitude <= 180) return longitude;
+        float normalised = ((longitude + 180) % 360 + 360) % 360 - 180;
+        return normalised;
+    }
+}
@@ -0,0 +1,27 @@
+package com.luketn.javawod.stats;
+
+/**
+ * Count, sum, sum of squares and extremes of the matched values of a column. Two results merge
+ * by adding counts and sums, so partial results over blocks or files combine into one.
+ */
+public record ColumnStats(long count, double sum, double sumSquares, float min, float max) {
+    public static final ColumnStats EMPTY = new ColumnStats(0, 0, 0, Float.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY);
+
+    public ColumnStats merge(ColumnStats other) {
+        return new ColumnStats(count + other.count, sum + other.sum, sumSquares + other.sumSquares,
+                Math.min(min, other.min), Math.max(max, other.max));
+    }
+
+    /** Mean, or NaN when nothing matched. */
+    public double mean() {
+        return count == 0 ? Double.NaN : sum / count;
+    }
+
+    /** Population variance, or NaN when nothing matched. */
+    public double variance() {
+        if (count == 0) return Double.NaN;
+        double mean = mean();
+        // clamped as rounding can take it just below zero
+        return Math.max(0, sumSquares / count - mean * mean);
+    }
+}
@@ -0,0 +1,44 @@
+package com.luketn.javawod.stats;
+
+/**
+ * Counts of values in {@code bins} equal width bins over {@code from .. to}, the upper bound
+ * exclusive. Values outside the range are not counted. Kernels add to the counts, so one histogram
+ * can be filled block by block; not thread safe.
+ */
+public final class Histogram {
+    private final float from;
+    private final float to;
+    private final long[] counts;
+    final float binsPerUnit;
+
+    public Histogram(float from, float to, int bins) {
+        if (!(from < to) || Float.isInfinite(from) || Float.isInfinite(to) || bins < 1) {
+            throw new IllegalArgumentException("Histogram needs a finite range and at least one bin");
+        }
+        this.from = from;
+        this.to = to;
+        this.counts = new long[bins];
+        this.binsPerUnit = bins / (to - from);
+    }
+
+    public float from() { return from; }
+    public float to() { return to; }
+    public int bins() { return counts.length; }
+    public long count(int bin) { return counts[bin]; }
+    public float binFrom(int bin) { return from + bin / binsPerUnit; }
+
+    public long total() {
+        long total = 0;
+        for (long count : counts) total += count;
+        return total;
+    }
+
+    /** Bin of a value known to be in range; rounding can not push it past the last bin. */
+    int bin(float value) {
+        return Math.min(counts.length - 1, (int) ((value - from) * binsPerUnit));
+    }
+
+    long[] counts() {
+        return counts;
+    }
+}
@@ -0,0 +1,46 @@
+package com.luketn.javawod.stats;
+
+/**
+ * Which levels a {@link StatsKernel} counts. A level is counted when its QC flag is in
+ * {@code 0 .. maxQc}, its value is in {@code minValue .. maxValue} and, when depths are given, its
+ * depth is in {@code minDepth .. maxDepth}. The upper bounds are exclusive. Missing (NaN) values,
+ * and missing depths when depths are given, never match.
+ */
+public record LevelFilter(byte maxQc, float minValue, float maxValue, float minDepth, float maxDepth) {
+    /** Matches any QC flag other than missing. */
+    public static final byte ANY_QC = Byte.MAX_VALUE;
+
+    public LevelFilter {
+        if (maxQc < 0) throw new IllegalArgumentException("maxQc must not be negative");
+        if (!(minValue <= maxValue) || !(minDepth <= maxDepth)) {
+            throw new IllegalArgumentException("Empty or undefined range");
+        }
+    }
+
+    /** Levels with an accepted QC flag (0), at any value and depth. */
+    public static LevelFilter accepted() {
+        return new LevelFilter((byte) 0, Float.NEGATIVE_INFINITY, Float.POSITIVE_INFINITY,
+                Float.NEGATIVE_INFINITY, Float.POSITIVE_INFINITY);
+    }
+
+    public LevelFilter withMaxQc(int maxQc) {
+        return new LevelFilter((byte) Math.min(ANY_QC, maxQc), minValue, maxValue, minDepth, maxDepth);
+    }
+
+    public LevelFilter withValues(float minValue, float maxValue) {
+        return new LevelFilter(maxQc, minValue, maxValue, minDepth, maxDepth);
+    }
+
+    public LevelFilter withDepths(float minDepth, float maxDepth) {
+        return new LevelFilter(maxQc, minValue, maxValue, minDepth, maxDepth);
+    }
+
+    boolean matches(float value, byte qc, float depth) {
+        return qc >= 0 && qc <= maxQc && value >= minValue && value < maxValue
+                && depth >= minDepth && depth < maxDepth;
+    }
+
+    boolean matches(float value, byte qc) {
+        return qc >= 0 && qc <= maxQc && value >= minValue && value < maxValue;
+    }
+}
@@ -0,0 +1,41 @@
+package com.luketn.javawod.stats;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Chooses {@link StatsKernel#preferred()} once. The vector kernel is loaded reflectively so that
+ * nothing here links against {@code jdk.incubator.vector} when the module is absent. Setting the
+ * system property {@code wod.stats.scalar} forces the scalar kernel.
+ */
+final class PreferredKernel {
+    private static final Logger log = LoggerFactory.getLogger(PreferredKernel.class);
+    static final StatsKernel KERNEL = choose();
+
+    private PreferredKernel() {}
+
+    private static StatsKernel choose() {
+        if (Boolean.getBoolean("wod.stats.scalar")) {
+            log.info("Using scalar statistics kernels, as configured");
+            return ScalarStatsKernel.INSTANCE;
+        }
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            log.info("Using scalar statistics kernels; add --add-modules jdk.incubator.vector for SIMD");
+            return ScalarStatsKernel.INSTANCE;
+        }
+        try {
+            Class<?> vectorKernel = Class.forName(PreferredKernel.class.getPackageName() + ".VectorStatsKernel");
+            if (!(boolean) vectorKernel.getDeclaredMethod("supported").invoke(null)) {
+                log.info("Using scalar statistics kernels; {} float lanes are too few to vectorise",
+                        vectorKernel.getDeclaredMethod("lanes").invoke(null));
+                return ScalarStatsKernel.INSTANCE;
+            }
+            StatsKernel kernel = (StatsKernel) vectorKernel.getDeclaredConstructor().newInstance();
+            log.info("Using {}", kernel);
+            return kernel;
+        } catch (ReflectiveOperationException | LinkageError e) {
+            log.info("Using scalar statistics kernels, vectors unavailable: {}", e.toString());
+            return ScalarStatsKernel.INSTANCE;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.luketn.javawod.stats;
+
+import com.luketn.javawod.query.CastQuery;
+import com.luketn.javawod.query.SpatioTemporalIndex;
+import com.luketn.javawod.store.CastTable;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * Ad hoc temperature statistics over the levels of the casts matching a {@link CastQuery}.
+ * <p>
+ * The levels of the matching casts are gathered with {@link CastTable#copyLevels} into blocks of
+ * primitive columns, which a {@link StatsKernel} then sweeps. {@link CastQuery#everything()}
+ * bypasses the index and covers every cast, with a position or not, copied in long contiguous runs
+ * straight from the mapped cache files. Safe to use from any
+ * thread; each call gathers into its own buffers.
+ */
+public final class RegionStats {
+    private static final int BLOCK_LEVELS = 64 * 1024;
+
+    private final CastTable table;
+    private final SpatioTemporalIndex index;
+    private final StatsKernel kernel;
+
+    public RegionStats(CastTable table, SpatioTemporalIndex index, StatsKernel kernel) {
+        this.table = table;
+        this.index = index;
+        this.kernel = kernel;
+    }
+
+    public ColumnStats temperature(CastQuery query, LevelFilter filter) {
+        ColumnStats[] stats = {ColumnStats.EMPTY};
+        gather(query, block -> stats[0] = stats[0].merge(
+                kernel.stats(block.temperature, block.qc, block.depth, 0, block.size, filter)));
+        return stats[0];
+    }
+
+    public Histogram temperatureHistogram(CastQuery query, LevelFilter filter, float from, float to, int bins) {
+        Histogram histogram = new Histogram(from, to, bins);
+        gather(query, block -> kernel.histogram(block.temperature, block.qc, block.depth, 0, block.size, filter, histogram));
+        return histogram;
+    }
+
+    private void gather(CastQuery query, Consumer<Block> sweep) {
+        Block block = new Block();
+        if (query.equals(CastQuery.everything())) {
+            // every cast, located or not, in runs of consecutive ids
+            int cast = 0;
+            while (cast < table.size()) {
+                int end = cast;
+                int levels = 0;
+                while (end < table.size() && (end == cast || levels + table.levelCount(end) <= BLOCK_LEVELS)) {
+                    levels += table.levelCount(end++);
+                }
+                block.ensure(levels);
+                block.size = table.copyLevels(cast, end, block.depth, block.temperature, block.qc, 0);
+                sweep.accept(block);
+                cast = end;
+            }
+            return;
+        }
+        index.forEach(query, cast -> {
+            int levels = table.levelCount(cast);
+            if (block.size > 0 && block.size + levels > BLOCK_LEVELS) {
+                sweep.accept(block);
+                block.size = 0;
+            }
+            block.ensure(block.size + levels);
+            block.size += table.copyLevels(cast, cast + 1, block.depth, block.temperature, block.qc, block.size);
+        });
+        if (block.size > 0) sweep.accept(block);
+    }
+
+    private static final class Block {
+        float[] depth = new float[BLOCK_LEVELS];
+        float[] temperature = new float[BLOCK_LEVELS];
+        byte[] qc = new byte[BLOCK_LEVELS];
+        int size;
+
+        /** Grows for a single cast with more levels than a block. */
+        void ensure(int levels) {
+            if (levels <= depth.length) return;
+            depth = Arrays.copyOf(depth, levels);
+            temperature = Arrays.copyOf(temperature, levels);
+            qc = Arrays.copyOf(qc, levels);
+        }
+    }
+}
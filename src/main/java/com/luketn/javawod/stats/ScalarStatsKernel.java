@@ -0,0 +1,48 @@
+package com.luketn.javawod.stats;
+
+/**
+ * Plain loop {@link StatsKernel}, used where the Vector API is not available.
+ */
+final class ScalarStatsKernel implements StatsKernel {
+    static final ScalarStatsKernel INSTANCE = new ScalarStatsKernel();
+
+    private ScalarStatsKernel() {}
+
+    @Override
+    public ColumnStats stats(float[] values, byte[] qc, float[] depths, int from, int to, LevelFilter filter) {
+        long count = 0;
+        double sum = 0;
+        double sumSquares = 0;
+        float min = Float.POSITIVE_INFINITY;
+        float max = Float.NEGATIVE_INFINITY;
+        for (int i = from; i < to; i++) {
+            float value = values[i];
+            if (depths == null ? !filter.matches(value, qc[i]) : !filter.matches(value, qc[i], depths[i])) continue;
+            count++;
+            sum += value;
+            sumSquares += (double) value * value;
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+        return new ColumnStats(count, sum, sumSquares, min, max);
+    }
+
+    @Override
+    public void histogram(float[] values, byte[] qc, float[] depths, int from, int to, LevelFilter filter,
+                          Histogram histogram) {
+        long[] counts = histogram.counts();
+        float low = histogram.from();
+        float high = histogram.to();
+        for (int i = from; i < to; i++) {
+            float value = values[i];
+            if (!(value >= low && value < high)) continue;
+            if (depths == null ? !filter.matches(value, qc[i]) : !filter.matches(value, qc[i], depths[i])) continue;
+            counts[histogram.bin(value)]++;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "scalar statistics kernels";
+    }
+}
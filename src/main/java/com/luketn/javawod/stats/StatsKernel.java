@@ -0,0 +1,29 @@
+package com.luketn.javawod.stats;
+
+/**
+ * Statistics over a range of level columns: {@code values[i]}, {@code qc[i]} and, optionally,
+ * {@code depths[i]} for {@code i} in {@code from .. to}.
+ * <p>
+ * {@link #preferred()} is the SIMD {@link VectorStatsKernel} when the {@code jdk.incubator.vector}
+ * module is present ({@code --add-modules jdk.incubator.vector}) and the CPU has vectors of at least
+ * eight floats, otherwise the {@link ScalarStatsKernel}. Both give the same counts, extremes and
+ * histograms; sums may differ in the last digits. Kernels are stateless and thread safe.
+ */
+public interface StatsKernel {
+
+    /**
+     * @param depths the depth of each level, or null to count levels at any depth
+     */
+    ColumnStats stats(float[] values, byte[] qc, float[] depths, int from, int to, LevelFilter filter);
+
+    /** Adds the matched values to the histogram. */
+    void histogram(float[] values, byte[] qc, float[] depths, int from, int to, LevelFilter filter, Histogram histogram);
+
+    static StatsKernel preferred() {
+        return PreferredKernel.KERNEL;
+    }
+
+    static StatsKernel scalar() {
+        return ScalarStatsKernel.INSTANCE;
+    }
+}
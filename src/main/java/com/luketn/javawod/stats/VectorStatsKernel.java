@@ -0,0 +1,128 @@
+package com.luketn.javawod.stats;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * {@link StatsKernel} on the Vector API ({@code jdk.incubator.vector}).
+ * <p>
+ * Each step loads a vector of values, depths and QC flags (the flags at the same lane count, in
+ * a narrower shape) and builds the filter as a lane mask, so no branch depends on the data. Sums
+ * are accumulated in float lanes over blocks of {@link #BLOCK} vectors and then added into
+ * doubles, which keeps the float rounding error to that of a short sum. The tail shorter than a
+ * vector goes through the scalar kernel.
+ * <p>
+ * Only instantiated by {@link PreferredKernel}, and only when the preferred float vector has at
+ * least eight lanes, the fewest for which a byte vector shape exists.
+ */
+final class VectorStatsKernel implements StatsKernel {
+    private static final VectorSpecies<Float> FLOATS = FloatVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Byte> BYTES = FLOATS.length() < 8 ? null
+            : VectorSpecies.of(byte.class, VectorShape.forBitSize(FLOATS.length() * 8));
+    private static final VectorSpecies<Integer> INTS = VectorSpecies.of(int.class, FLOATS.vectorShape());
+    private static final int BLOCK = 64;
+
+    VectorStatsKernel() {
+        if (!supported()) {
+            throw new IllegalStateException(FLOATS.length() + " float lanes are too few to vectorise");
+        }
+    }
+
+    /** Whether the preferred float vector has lanes enough for this kernel. */
+    static boolean supported() {
+        return BYTES != null;
+    }
+
+    /** Number of float lanes in the preferred vector shape. */
+    static int lanes() {
+        return FLOATS.length();
+    }
+
+    @Override
+    public ColumnStats stats(float[] values, byte[] qc, float[] depths, int from, int to, LevelFilter filter) {
+        int lanes = FLOATS.length();
+        int upper = from + (to - from) / lanes * lanes;
+        long count = 0;
+        double sum = 0;
+        double sumSquares = 0;
+        FloatVector min = FloatVector.broadcast(FLOATS, Float.POSITIVE_INFINITY);
+        FloatVector max = FloatVector.broadcast(FLOATS, Float.NEGATIVE_INFINITY);
+        FloatVector zero = FloatVector.zero(FLOATS);
+
+        int i = from;
+        while (i < upper) {
+            int blockEnd = Math.min(upper, i + BLOCK * lanes);
+            FloatVector blockSum = zero;
+            FloatVector blockSquares = zero;
+            for (; i < blockEnd; i += lanes) {
+                FloatVector value = FloatVector.fromArray(FLOATS, values, i);
+                VectorMask<Float> match = match(value, qc, depths, i, filter);
+                FloatVector matched = zero.blend(value, match);
+                count += match.trueCount();
+                blockSum = blockSum.add(matched);
+                blockSquares = blockSquares.add(matched.mul(matched));
+                min = min.min(min.blend(value, match));
+                max = max.max(max.blend(value, match));
+            }
+            sum += blockSum.reduceLanes(VectorOperators.ADD);
+            sumSquares += blockSquares.reduceLanes(VectorOperators.ADD);
+        }
+        ColumnStats stats = new ColumnStats(count, sum, sumSquares,
+                min.reduceLanes(VectorOperators.MIN), max.reduceLanes(VectorOperators.MAX));
+        return upper == to ? stats : stats.merge(ScalarStatsKernel.INSTANCE.stats(values, qc, depths, upper, to, filter));
+    }
+
+    @Override
+    public void histogram(float[] values, byte[] qc, float[] depths, int from, int to, LevelFilter filter,
+                          Histogram histogram) {
+        int lanes = FLOATS.length();
+        int upper = from + (to - from) / lanes * lanes;
+        long[] counts = histogram.counts();
+        int lastBin = counts.length - 1;
+        float low = histogram.from();
+        float high = histogram.to();
+        int[] bins = new int[lanes];
+        for (int i = from; i < upper; i += lanes) {
+            FloatVector value = FloatVector.fromArray(FLOATS, values, i);
+            VectorMask<Float> match = match(value, qc, depths, i, filter)
+                    .and(value.compare(VectorOperators.GE, low))
+                    .and(value.compare(VectorOperators.LT, high));
+            if (!match.anyTrue()) continue;
+            ((IntVector) value.sub(low).mul(histogram.binsPerUnit).convertShape(VectorOperators.F2I, INTS, 0))
+                    .min(lastBin)
+                    .intoArray(bins, 0);
+            for (long lanesMatched = match.toLong(); lanesMatched != 0; lanesMatched &= lanesMatched - 1) {
+                counts[bins[Long.numberOfTrailingZeros(lanesMatched)]]++;
+            }
+        }
+        if (upper < to) {
+            ScalarStatsKernel.INSTANCE.histogram(values, qc, depths, upper, to, filter, histogram);
+        }
+    }
+
+    /** Lanes passing the filter; comparisons with NaN are false, so missing values never match. */
+    private static VectorMask<Float> match(FloatVector value, byte[] qc, float[] depths, int i, LevelFilter filter) {
+        ByteVector flags = ByteVector.fromArray(BYTES, qc, i);
+        VectorMask<Float> match = flags.compare(VectorOperators.GE, (byte) 0)
+                .and(flags.compare(VectorOperators.LE, filter.maxQc()))
+                .cast(FLOATS)
+                .and(value.compare(VectorOperators.GE, filter.minValue()))
+                .and(value.compare(VectorOperators.LT, filter.maxValue()));
+        if (depths != null) {
+            FloatVector depth = FloatVector.fromArray(FLOATS, depths, i);
+            match = match.and(depth.compare(VectorOperators.GE, filter.minDepth()))
+                    .and(depth.compare(VectorOperators.LT, filter.maxDepth()));
+        }
+        return match;
+    }
+
+    @Override
+    public String toString() {
+        return "vector statistics kernels (" + FLOATS.length() + " float lanes)";
+    }
+}
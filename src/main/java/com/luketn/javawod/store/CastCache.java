@@ -0,0 +1,215 @@
+package com.luketn.javawod.store;
+
+import com.luketn.javawod.ingest.IngestionEngine;
+import com.luketn.javawod.ingest.IngestionReport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps one cast cache file per source extract in a cache directory, named
+ * {@code <source file name>.wodc}, and a {@link CastManifest} of the sources they were built from.
+ * Beside each cache file it keeps the {@link SourcePartial}s it was given, built from the same
+ * decoded batches as the cache file.
+ * <p>
+ * {@link #open} checks each source against its manifest entry with {@link SourceStamp#matches},
+ * re-ingests only the sources that are new or changed, and maps every cache file into a
+ * {@link CastCatalog}. Once the caches are built, startup is one map call per file.
+ * {@link #add} does the same for a single source arriving while the application runs.
+ */
+public class CastCache {
+    public static final String SUFFIX = ".wodc";
+    private static final int MAX_ATTEMPTS = 3;
+    private static final Logger log = LoggerFactory.getLogger(CastCache.class);
+
+    private final Path cacheDir;
+    private final IngestionEngine engine;
+    private final List<SourcePartial> partials;
+    private CastManifest manifest;
+
+    public CastCache(Path cacheDir, IngestionEngine engine) {
+        this(cacheDir, engine, List.of());
+    }
+
+    /**
+     * @param partials summaries to compute of each source as it is ingested and keep beside its
+     *                 cache file
+     */
+    public CastCache(Path cacheDir, IngestionEngine engine, List<SourcePartial> partials) {
+        this.cacheDir = cacheDir;
+        this.engine = engine;
+        this.partials = List.copyOf(partials);
+    }
+
+    public Path cacheFileFor(Path source) {
+        return cacheDir.resolve(source.getFileName() + SUFFIX);
+    }
+
+    /** The file of a partial of the source a cache file was built from, beside the cache file. */
+    public static Path partialFileOf(Path cacheFile, SourcePartial partial) {
+        String name = cacheFile.getFileName().toString();
+        return cacheFile.resolveSibling(name.substring(0, name.length() - SUFFIX.length()) + partial.suffix());
+    }
+
+    /**
+     * Brings the cache up to date with the sources and maps it. Manifest entries of sources no
+     * longer listed are dropped.
+     *
+     * @param sources the source extracts, in catalog order
+     */
+    public synchronized CastCatalog open(List<Path> sources) throws IOException, InterruptedException {
+        CastManifest manifest = manifest();
+        List<Path> stale = new ArrayList<>();
+        for (Path source : sources) {
+            if (!isFresh(source)) stale.add(source);
+        }
+        log.info("{} of {} source file(s) unchanged since they were ingested",
+                sources.size() - stale.size(), sources.size());
+        manifest.retain(sources.stream().map(source -> source.getFileName().toString()).toList());
+        if (!stale.isEmpty()) {
+            rebuild(stale);
+        }
+        manifest.save();
+
+        List<MappedCastFile> files = new ArrayList<>(sources.size());
+        try {
+            for (Path source : sources) {
+                files.add(MappedCastFile.open(cacheFileFor(source)));
+            }
+        } catch (IOException | RuntimeException e) {
+            files.forEach(MappedCastFile::close);
+            throw e;
+        }
+        return new CastCatalog(files);
+    }
+
+    /**
+     * Ingests one source unless it is unchanged since it was last ingested, and maps its cache
+     * file.
+     */
+    public synchronized MappedCastFile add(Path source) throws IOException, InterruptedException {
+        if (!isFresh(source)) {
+            rebuild(List.of(source));
+        }
+        manifest().save();
+        return MappedCastFile.open(cacheFileFor(source));
+    }
+
+    /** The sources ingested into the cache, as of the last {@link #open} or {@link #add}. */
+    public synchronized CastManifest manifest() throws IOException {
+        if (manifest == null) {
+            Files.createDirectories(cacheDir);
+            Path path = cacheDir.resolve(CastManifest.FILE_NAME);
+            try {
+                manifest = CastManifest.load(path);
+            } catch (IOException e) {
+                // the cache files still carry their source stamps, so nothing is lost but a quick start
+                log.warn("Discarding unreadable cast manifest {}: {}", path, e.getMessage());
+                Files.deleteIfExists(path);
+                manifest = CastManifest.load(path);
+            }
+        }
+        return manifest;
+    }
+
+    /**
+     * Ingests the sources, (re)writes their cache files and records them in the manifest. The
+     * manifest is saved by the caller.
+     * <p>
+     * Each source is stamped before it is read and checked against the stamp once ingested. A
+     * source rewritten meanwhile may have been read part old, part new, so rather than being
+     * recorded under a stamp its cache file does not match, it is ingested again.
+     *
+     * @throws IOException also if a source changed during every attempt to ingest it
+     */
+    public synchronized void rebuild(List<Path> sources) throws IOException, InterruptedException {
+        List<Path> pending = sources;
+        for (int attempt = 1; !pending.isEmpty(); attempt++) {
+            if (attempt > MAX_ATTEMPTS) {
+                throw new IOException("Changed while being ingested, " + MAX_ATTEMPTS + " times: " + pending);
+            }
+            pending = ingest(pending);
+        }
+    }
+
+    /** Ingests and records the sources, returning those that changed meanwhile, which are not recorded. */
+    private List<Path> ingest(List<Path> sources) throws IOException, InterruptedException {
+        Map<String, SourceStamp> stamps = new HashMap<>();
+        Map<String, CastCacheWriter> writers = new HashMap<>();
+        Map<String, List<SourcePartial.Builder>> builders = new HashMap<>();
+        for (Path source : sources) {
+            String name = source.getFileName().toString();
+            stamps.put(name, SourceStamp.of(source));
+            writers.put(name, new CastCacheWriter(IngestionEngine.instrumentOf(name)));
+            builders.put(name, partials.stream().map(SourcePartial::builder).toList());
+        }
+        log.info("Building cast cache for {} source file(s)", sources.size());
+        IngestionReport report = engine.ingestBatches(sources, batch -> {
+            writers.get(batch.source()).append(batch);
+            for (SourcePartial.Builder builder : builders.get(batch.source())) {
+                builder.accept(batch);
+            }
+        });
+        CastManifest manifest = manifest();
+        List<Path> changed = new ArrayList<>();
+        for (Path source : sources) {
+            String name = source.getFileName().toString();
+            SourceStamp stamp = stamps.get(name);
+            if (!stamp.matches(source)) {
+                log.warn("{} changed while it was being ingested, ingesting it again", name);
+                changed.add(source);
+                continue;
+            }
+            CastCacheWriter writer = writers.get(name);
+            Path cacheFile = cacheFileFor(source);
+            writer.write(cacheFile, stamp);
+            if (!partials.isEmpty()) {
+                try (MappedCastFile cached = MappedCastFile.open(cacheFile)) {
+                    for (int i = 0; i < partials.size(); i++) {
+                        builders.get(name).get(i).write(partialFileOf(cacheFile, partials.get(i)), cached);
+                    }
+                }
+            }
+            manifest.put(CastManifest.Entry.of(name, stamp, writer.size(), suffixes()));
+        }
+        log.info("Built cast cache: {}", report);
+        return changed;
+    }
+
+    private boolean isFresh(Path source) throws IOException {
+        Path cacheFile = cacheFileFor(source);
+        if (!Files.exists(cacheFile)) return false;
+        String name = source.getFileName().toString();
+        CastManifest.Entry entry = manifest().get(name);
+        if (entry == null) {
+            // built before the manifest was kept: adopt the stamp the cache file carries
+            try (MappedCastFile cached = MappedCastFile.open(cacheFile)) {
+                entry = CastManifest.Entry.of(name, cached.source(), cached.size(), List.of());
+            } catch (IOException e) {
+                log.warn("Discarding unreadable cast cache {}: {}", cacheFile, e.getMessage());
+                return false;
+            }
+        }
+        for (SourcePartial partial : partials) {
+            if (!entry.partials().contains(partial.suffix()) || !Files.exists(partialFileOf(cacheFile, partial))) {
+                return false;
+            }
+        }
+        if (!entry.stamp().matches(source)) return false;
+        long modified = Files.getLastModifiedTime(source).toMillis();
+        // touched but unchanged: record the new time so the checksum is not needed next start
+        manifest().put(modified == entry.lastModified() ? entry : entry.withLastModified(modified));
+        return true;
+    }
+
+    private List<String> suffixes() {
+        return partials.stream().map(SourcePartial::suffix).toList();
+    }
+}
@@ -0,0 +1,88 @@
+package com.luketn.javawod.store;
+
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteOrder;
+
+/**
+ * Byte layout of a cast cache file (version 1). All values are little endian.
+ * <pre>
+ * header (64 bytes)
+ *   0  int    magic "WODC"
+ *   4  int    version
+ *   8  long   source size
+ *   16 long   source last modified (epoch millis)
+ *   24 long   source CRC-32C
+ *   32 int    cast count (n)
+ *   36 int    reserved
+ *   40 long   level count (L)
+ *   48 byte16 instrument code, ASCII, zero padded
+ * columns, each starting on an 8 byte boundary
+ *   int32[n]     cast number, ascending
+ *   int64[n]     epoch second
+ *   float32[n]   latitude
+ *   float32[n]   longitude
+ *   uint16[n]    country, two ASCII characters
+ *   int32[n + 1] level offset of each cast into the level columns
+ *   float32[L]   depth
+ *   float32[L]   temperature
+ *   int8[L]      temperature QC flag
+ * </pre>
+ */
+final class CastCacheLayout {
+    static final int MAGIC = 0x57_4F_44_43; // "WODC"
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 64;
+    static final int INSTRUMENT_BYTES = 16;
+
+    static final long MAGIC_OFFSET = 0;
+    static final long VERSION_OFFSET = 4;
+    static final long SOURCE_SIZE_OFFSET = 8;
+    static final long SOURCE_MODIFIED_OFFSET = 16;
+    static final long SOURCE_CHECKSUM_OFFSET = 24;
+    static final long CAST_COUNT_OFFSET = 32;
+    static final long LEVEL_COUNT_OFFSET = 40;
+    static final long INSTRUMENT_OFFSET = 48;
+
+    static final ValueLayout.OfInt INT = ValueLayout.JAVA_INT_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+    static final ValueLayout.OfLong LONG = ValueLayout.JAVA_LONG_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+    static final ValueLayout.OfFloat FLOAT = ValueLayout.JAVA_FLOAT_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+    static final ValueLayout.OfChar CHAR = ValueLayout.JAVA_CHAR_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+    static final ValueLayout.OfByte BYTE = ValueLayout.JAVA_BYTE;
+
+    final long castNumbers;
+    final long epochSeconds;
+    final long latitudes;
+    final long longitudes;
+    final long countries;
+    final long levelOffsets;
+    final long depths;
+    final long temperatures;
+    final long temperatureQcs;
+    final long fileSize;
+
+    CastCacheLayout(int casts, long levels) {
+        long offset = HEADER_BYTES;
+        castNumbers = offset;
+        offset = align(offset + 4L * casts);
+        epochSeconds = offset;
+        offset = align(offset + 8L * casts);
+        latitudes = offset;
+        offset = align(offset + 4L * casts);
+        longitudes = offset;
+        offset = align(offset + 4L * casts);
+        countries = offset;
+        offset = align(offset + 2L * casts);
+        levelOffsets = offset;
+        offset = align(offset + 4L * (casts + 1));
+        depths = offset;
+        offset = align(offset + 4L * levels);
+        temperatures = offset;
+        offset = align(offset + 4L * levels);
+        temperatureQcs = offset;
+        fileSize = align(offset + levels);
+    }
+
+    private static long align(long offset) {
+        return (offset + 7) & ~7L;
+    }
+}
@@ -0,0 +1,146 @@
+package com.luketn.javawod.store;
+
+import com.luketn.javawod.wod.WodCastBatch;
+
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+import static com.luketn.javawod.store.CastCacheLayout.*;
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * Collects the casts of one source extract from {@link WodCastBatch}es and writes them as a cast
+ * cache file (see {@link CastCacheLayout}), ordered by cast number. {@link #append} may be called
+ * concurrently by the parse workers of the file.
+ */
+public final class CastCacheWriter {
+    private static final int TEMPERATURE = 1;
+
+    private final String instrument;
+    private int casts;
+    private int[] castNumber = new int[1024];
+    private long[] epochSecond = new long[1024];
+    private float[] latitude = new float[1024];
+    private float[] longitude = new float[1024];
+    private char[] country = new char[1024];
+    private int[] levelStart = new int[1024];
+    private int[] levelCount = new int[1024];
+
+    private int levels;
+    private float[] depth = new float[16 * 1024];
+    private float[] temperature = new float[16 * 1024];
+    private byte[] temperatureQc = new byte[16 * 1024];
+
+    public CastCacheWriter(String instrument) {
+        this.instrument = instrument;
+    }
+
+    public synchronized void append(WodCastBatch batch) {
+        for (int c = 0; c < batch.size(); c++) {
+            if (casts == castNumber.length) growCasts();
+            int count = batch.levelCount(c);
+            if ((long) levels + count > Integer.MAX_VALUE - 8) {
+                throw new IllegalStateException("Too many levels for one cache file");
+            }
+            castNumber[casts] = batch.castNumber(c);
+            epochSecond[casts] = batch.epochSecond(c);
+            latitude[casts] = batch.latitude(c);
+            longitude[casts] = batch.longitude(c);
+            country[casts] = batch.country(c);
+            levelStart[casts] = levels;
+            levelCount[casts] = count;
+            casts++;
+
+            if (levels + count > depth.length) growLevels(levels + count);
+            int t = batch.variableIndex(c, TEMPERATURE);
+            for (int l = 0; l < count; l++) {
+                depth[levels] = batch.depth(c, l);
+                if (t >= 0) {
+                    temperature[levels] = batch.value(c, l, t);
+                    temperatureQc[levels] = batch.qc(c, l, t);
+                } else {
+                    temperature[levels] = Float.NaN;
+                    temperatureQc[levels] = WodCastBatch.MISSING_QC;
+                }
+                levels++;
+            }
+        }
+    }
+
+    public synchronized int size() {
+        return casts;
+    }
+
+    /**
+     * Writes the cache file, replacing any existing one atomically.
+     */
+    public synchronized void write(Path target, SourceStamp source) throws IOException {
+        // sort by cast number; the low word carries the original position
+        long[] order = new long[casts];
+        for (int i = 0; i < casts; i++) {
+            order[i] = (long) castNumber[i] << 32 | i;
+        }
+        Arrays.sort(order);
+
+        CastCacheLayout layout = new CastCacheLayout(casts, levels);
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, CREATE, TRUNCATE_EXISTING, READ, WRITE);
+             Arena arena = Arena.ofConfined()) {
+            MemorySegment file = channel.map(FileChannel.MapMode.READ_WRITE, 0, layout.fileSize, arena);
+            file.set(INT, MAGIC_OFFSET, MAGIC);
+            file.set(INT, VERSION_OFFSET, VERSION);
+            file.set(LONG, SOURCE_SIZE_OFFSET, source.size());
+            file.set(LONG, SOURCE_MODIFIED_OFFSET, source.lastModified());
+            file.set(LONG, SOURCE_CHECKSUM_OFFSET, source.checksum());
+            file.set(INT, CAST_COUNT_OFFSET, casts);
+            file.set(LONG, LEVEL_COUNT_OFFSET, levels);
+            byte[] code = instrument.getBytes(StandardCharsets.US_ASCII);
+            MemorySegment.copy(code, 0, file, BYTE, INSTRUMENT_OFFSET, Math.min(code.length, INSTRUMENT_BYTES));
+
+            int level = 0;
+            for (int i = 0; i < casts; i++) {
+                int from = (int) order[i];
+                file.set(INT, layout.castNumbers + 4L * i, castNumber[from]);
+                file.set(LONG, layout.epochSeconds + 8L * i, epochSecond[from]);
+                file.set(FLOAT, layout.latitudes + 4L * i, latitude[from]);
+                file.set(FLOAT, layout.longitudes + 4L * i, longitude[from]);
+                file.set(CHAR, layout.countries + 2L * i, country[from]);
+                file.set(INT, layout.levelOffsets + 4L * i, level);
+                int start = levelStart[from];
+                int count = levelCount[from];
+                MemorySegment.copy(depth, start, file, FLOAT, layout.depths + 4L * level, count);
+                MemorySegment.copy(temperature, start, file, FLOAT, layout.temperatures + 4L * level, count);
+                MemorySegment.copy(temperatureQc, start, file, BYTE, layout.temperatureQcs + level, count);
+                level += count;
+            }
+            file.set(INT, layout.levelOffsets + 4L * casts, level);
+            file.force();
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void growCasts() {
+        int capacity = castNumber.length * 2;
+        castNumber = Arrays.copyOf(castNumber, capacity);
+        epochSecond = Arrays.copyOf(epochSecond, capacity);
+        latitude = Arrays.copyOf(latitude, capacity);
+        longitude = Arrays.copyOf(longitude, capacity);
+        country = Arrays.copyOf(country, capacity);
+        levelStart = Arrays.copyOf(levelStart, capacity);
+        levelCount = Arrays.copyOf(levelCount, capacity);
+    }
+
+    private void growLevels(int required) {
+        int capacity = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(required, depth.length * 2L));
+        depth = Arrays.copyOf(depth, capacity);
+        temperature = Arrays.copyOf(temperature, capacity);
+        temperatureQc = Arrays.copyOf(temperatureQc, capacity);
+    }
+}
@@ -0,0 +1,149 @@
+package com.luketn.javawod.store;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * All mapped cache files presented as one {@link CastTable}. Cast ids run through the files in
+ * order; a cast id is resolved to its file by binary search over the files' first ids.
+ */
+public final class CastCatalog implements CastTable, AutoCloseable {
+    private final List<MappedCastFile> files;
+    private final int[] firstCast;
+    private final int size;
+
+    public CastCatalog(List<MappedCastFile> files) {
+        this.files = List.copyOf(files);
+        this.firstCast = new int[files.size()];
+        long total = 0;
+        for (int i = 0; i < files.size(); i++) {
+            firstCast[i] = (int) total;
+            total += files.get(i).size();
+        }
+        if (total > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many casts for one catalog: " + total);
+        }
+        this.size = (int) total;
+    }
+
+    public static CastCatalog empty() {
+        return new CastCatalog(List.of());
+    }
+
+    /**
+     * A catalog of this catalog's files followed by another. The casts already present keep their
+     * ids and the files are shared, so only the newest of the two catalogs should be closed.
+     */
+    public CastCatalog with(MappedCastFile file) {
+        List<MappedCastFile> files = new ArrayList<>(this.files.size() + 1);
+        files.addAll(this.files);
+        files.add(file);
+        return new CastCatalog(files);
+    }
+
+    public List<MappedCastFile> files() {
+        return files;
+    }
+
+    /** Cast id of the first cast of a file. */
+    public int firstCast(int file) {
+        return firstCast[file];
+    }
+
+    @Override public int size() { return size; }
+
+    @Override
+    public int castNumber(int cast) {
+        int f = fileOf(cast);
+        return files.get(f).castNumber(cast - firstCast[f]);
+    }
+
+    @Override
+    public long epochSecond(int cast) {
+        int f = fileOf(cast);
+        return files.get(f).epochSecond(cast - firstCast[f]);
+    }
+
+    @Override
+    public float latitude(int cast) {
+        int f = fileOf(cast);
+        return files.get(f).latitude(cast - firstCast[f]);
+    }
+
+    @Override
+    public float longitude(int cast) {
+        int f = fileOf(cast);
+        return files.get(f).longitude(cast - firstCast[f]);
+    }
+
+    @Override
+    public String instrument(int cast) {
+        return files.get(fileOf(cast)).instrument();
+    }
+
+    @Override
+    public char country(int cast) {
+        int f = fileOf(cast);
+        return files.get(f).country(cast - firstCast[f]);
+    }
+
+    @Override
+    public int levelCount(int cast) {
+        int f = fileOf(cast);
+        return files.get(f).levelCount(cast - firstCast[f]);
+    }
+
+    @Override
+    public float depth(int cast, int level) {
+        int f = fileOf(cast);
+        return files.get(f).depth(cast - firstCast[f], level);
+    }
+
+    @Override
+    public float temperature(int cast, int level) {
+        int f = fileOf(cast);
+        return files.get(f).temperature(cast - firstCast[f], level);
+    }
+
+    @Override
+    public byte temperatureQc(int cast, int level) {
+        int f = fileOf(cast);
+        return files.get(f).temperatureQc(cast - firstCast[f], level);
+    }
+
+    @Override
+    public int copyLevels(int fromCast, int toCast, float[] depth, float[] temperature, byte[] temperatureQc,
+                          int offset) {
+        int copied = 0;
+        while (fromCast < toCast) {
+            int f = fileOf(fromCast);
+            int end = Math.min(toCast, firstCast[f] + files.get(f).size());
+            copied += files.get(f).copyLevels(fromCast - firstCast[f], end - firstCast[f],
+                    depth, temperature, temperatureQc, offset + copied);
+            fromCast = end;
+        }
+        return copied;
+    }
+
+    /** Index of the file holding a cast id. */
+    public int fileOf(int cast) {
+        if (cast < 0 || cast >= size) throw new IndexOutOfBoundsException(cast);
+        int low = 0;
+        int high = firstCast.length - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (firstCast[mid] <= cast) low = mid;
+            else high = mid - 1;
+        }
+        // skip empty files that share a first id with the next one
+        while (low + 1 < firstCast.length && firstCast[low + 1] <= cast) low++;
+        return low;
+    }
+
+    @Override
+    public void close() {
+        for (MappedCastFile file : files) {
+            file.close();
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.luketn.javawod.store;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The source extracts ingested into a cache directory, one tab separated line per file:
+ * <pre>
+ * # file	size	lastModified	checksum	casts	partials
+ * ocldb1753579979.3150694.OSD.gz	1834201	1753580112000	3203911744	12873	.cube,.pyramid
+ * </pre>
+ * {@link CastCache} consults it to skip sources that have not changed since they were ingested,
+ * without opening their cache files, and records every source it (re)ingests together with the
+ * {@link SourcePartial}s written for it. A line without partials, as written before they were
+ * kept, reads as having none. Saved by writing a
+ * temporary file and moving it into place, so a crash never leaves a partial manifest.
+ */
+public final class CastManifest {
+    public static final String FILE_NAME = "manifest.tsv";
+    private static final String NO_PARTIALS = "-";
+    private static final String HEADER = "# file\tsize\tlastModified\tchecksum\tcasts\tpartials";
+
+    /**
+     * @param file         file name of the source extract
+     * @param lastModified modification time of the source in epoch milliseconds
+     * @param checksum     CRC-32C of the source
+     * @param casts        number of casts ingested from it
+     * @param partials     suffixes of the partials written beside its cache file
+     */
+    public record Entry(String file, long size, long lastModified, long checksum, int casts, List<String> partials) {
+        public Entry {
+            partials = List.copyOf(partials);
+        }
+
+        public static Entry of(String file, SourceStamp stamp, int casts, List<String> partials) {
+            return new Entry(file, stamp.size(), stamp.lastModified(), stamp.checksum(), casts, partials);
+        }
+
+        public SourceStamp stamp() {
+            return new SourceStamp(size, lastModified, checksum);
+        }
+
+        Entry withLastModified(long lastModified) {
+            return new Entry(file, size, lastModified, checksum, casts, partials);
+        }
+    }
+
+    private final Path path;
+    private final Map<String, Entry> entries = new TreeMap<>();
+
+    private CastManifest(Path path) {
+        this.path = path;
+    }
+
+    /**
+     * Reads a manifest, or starts an empty one if the file does not exist yet.
+     *
+     * @throws IOException if the file cannot be read or a line is malformed
+     */
+    public static CastManifest load(Path path) throws IOException {
+        CastManifest manifest = new CastManifest(path);
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(path, StandardCharsets.UTF_8);
+        } catch (NoSuchFileException e) {
+            return manifest;
+        }
+        for (String line : lines) {
+            if (line.isBlank() || line.startsWith("#")) continue;
+            String[] fields = line.split("\t");
+            try {
+                if (fields.length != 5 && fields.length != 6) throw new NumberFormatException("expected 6 fields");
+                List<String> partials = fields.length == 5 || fields[5].equals(NO_PARTIALS)
+                        ? List.of() : List.of(fields[5].split(","));
+                manifest.entries.put(fields[0], new Entry(fields[0], Long.parseLong(fields[1]),
+                        Long.parseLong(fields[2]), Long.parseLong(fields[3]), Integer.parseInt(fields[4]), partials));
+            } catch (NumberFormatException e) {
+                throw new IOException("Malformed line in " + path + ": " + line, e);
+            }
+        }
+        return manifest;
+    }
+
+    public Path path() {
+        return path;
+    }
+
+    /** The entry of a source file name, or null if it has not been ingested. */
+    public synchronized Entry get(String file) {
+        return entries.get(file);
+    }
+
+    /** All entries, ordered by file name. */
+    public synchronized List<Entry> entries() {
+        return new ArrayList<>(entries.values());
+    }
+
+    synchronized void put(Entry entry) {
+        entries.put(entry.file(), entry);
+    }
+
+    /** Drops the entries of every file not named. */
+    synchronized void retain(Collection<String> files) {
+        entries.keySet().retainAll(files);
+    }
+
+    synchronized void save() throws IOException {
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (Writer out = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            out.write(HEADER);
+            out.write('\n');
+            for (Entry entry : entries.values()) {
+                out.write(entry.file() + '\t' + entry.size() + '\t' + entry.lastModified() + '\t'
+                        + entry.checksum() + '\t' + entry.casts() + '\t'
+                        + (entry.partials().isEmpty() ? NO_PARTIALS : String.join(",", entry.partials())) + '\n');
+            }
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,76 @@
+package com.luketn.javawod.store;
+
+/**
+ * Read only, columnar view of casts addressed by a dense cast id {@code 0 .. size() - 1}.
+ * Every accessor returns a primitive straight from the underlying column; missing positions and
+ * values are {@link Float#NaN}.
+ */
+public interface CastTable {
+    int size();
+
+    int castNumber(int cast);
+
+    /** Seconds since 1970-01-01T00:00Z of the cast date. */
+    long epochSecond(int cast);
+
+    float latitude(int cast);
+
+    float longitude(int cast);
+
+    /** Instrument code, e.g. "OSD". */
+    String instrument(int cast);
+
+    /** Two ASCII country code characters packed high byte first. */
+    char country(int cast);
+
+    int levelCount(int cast);
+
+    float depth(int cast, int level);
+
+    /** Temperature (variable code 1) at a level in degrees Celsius. */
+    float temperature(int cast, int level);
+
+    /** QC flag of the temperature at a level, see {@link com.luketn.javawod.wod.WodCastBatch#MISSING_QC}. */
+    byte temperatureQc(int cast, int level);
+
+    /**
+     * Copies the levels of casts {@code fromCast .. toCast} (exclusive) into the arrays from
+     * {@code offset}, cast after cast, for bulk passes over the level columns.
+     *
+     * @return the number of levels copied
+     */
+    default int copyLevels(int fromCast, int toCast, float[] depth, float[] temperature, byte[] temperatureQc,
+                           int offset) {
+        int level = offset;
+        for (int cast = fromCast; cast < toCast; cast++) {
+            int levels = levelCount(cast);
+            for (int i = 0; i < levels; i++, level++) {
+                depth[level] = depth(cast, i);
+                temperature[level] = temperature(cast, i);
+                temperatureQc[level] = temperatureQc(cast, i);
+            }
+        }
+        return level - offset;
+    }
+
+    /**
+     * Temperature of the shallowest level that has one, or NaN: the surface temperature every
+     * view of a cast reports.
+     */
+    default float surfaceTemperature(int cast) {
+        int levels = levelCount(cast);
+        for (int level = 0; level < levels; level++) {
+            float temperature = temperature(cast, level);
+            if (!Float.isNaN(temperature)) return temperature;
+        }
+        return Float.NaN;
+    }
+
+    static String countryCode(char country) {
+        return new String(new char[]{(char) (country >> 8), (char) (country & 0xFF)});
+    }
+
+    static char country(String countryCode) {
+        return (char) (countryCode.charAt(0) << 8 | countryCode.charAt(1));
+    }
+}
@@ -0,0 +1,40 @@
+package com.luketn.javawod.store;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Assigns dense ids to the distinct codes of a column, in order of first appearance. Not thread
+ * safe.
+ */
+final class CodeDictionary {
+    private final int capacity;
+    private final Map<String, Integer> ids = new HashMap<>();
+    private final List<String> codes = new ArrayList<>();
+
+    /** @param capacity most distinct codes, the range of the id type */
+    CodeDictionary(int capacity) {
+        this.capacity = capacity;
+    }
+
+    int id(String code) {
+        Integer id = ids.get(code);
+        if (id != null) return id;
+        if (codes.size() == capacity) {
+            throw new IllegalStateException("More than " + capacity + " distinct codes");
+        }
+        codes.add(code);
+        ids.put(code, codes.size() - 1);
+        return codes.size() - 1;
+    }
+
+    String code(int id) {
+        return codes.get(id);
+    }
+
+    int size() {
+        return codes.size();
+    }
+}
@@ -0,0 +1,186 @@
+package com.luketn.javawod.store;
+
+import com.luketn.javawod.ingest.CastSink;
+import com.luketn.javawod.wod.WodCast;
+
+import java.time.Instant;
+import java.util.Arrays;
+
+/**
+ * Heap resident store of {@link WodCast} headers in a fraction of the memory of the records.
+ * <p>
+ * A {@code WodCast} costs about 120 bytes of heap: the record, an {@link Instant} and three boxed
+ * {@link Float}s. Here each cast is a row across parallel primitive columns, about 24 bytes:
+ * <ul>
+ *     <li>instrument and country codes are dictionary encoded as byte and short ids</li>
+ *     <li>latitude and longitude are fixed point ints in millionths of a degree, the
+ *     temperature in ten thousandths of a degree Celsius</li>
+ *     <li>the date is epoch seconds</li>
+ *     <li>a missing (null) value is a clear bit in that column's presence bitmap</li>
+ * </ul>
+ * Accessors return missing values as {@link Float#NaN}, like {@link CastTable}. Casts are
+ * appended under a lock, so the store can be the sink of an {@link com.luketn.javawod.ingest.IngestionEngine}
+ * run; reads are safe once ingestion has finished.
+ */
+public final class CompactCastStore implements CastSink {
+    /** Fixed point scale of latitude and longitude. */
+    static final float DEGREE_SCALE = 1_000_000f;
+    /** Fixed point scale of temperature. */
+    static final float TEMPERATURE_SCALE = 10_000f;
+
+    private final CodeDictionary instruments = new CodeDictionary(256);
+    private final CodeDictionary countries = new CodeDictionary(65_536);
+    private int size;
+    private byte[] instrumentIds;
+    private short[] countryIds;
+    private long[] epochSeconds;
+    private int[] latitudes;
+    private int[] longitudes;
+    private int[] temperatures;
+    private long[] hasLatitude;
+    private long[] hasLongitude;
+    private long[] hasTemperature;
+
+    public CompactCastStore() {
+        this(1024);
+    }
+
+    public CompactCastStore(int capacity) {
+        allocate(Math.max(64, capacity));
+    }
+
+    @Override
+    public void accept(WodCast cast) {
+        add(cast.instrumentType(), cast.timestamp().getEpochSecond(), cast.isoCountryCode(),
+                orNaN(cast.latitude()), orNaN(cast.longitude()), orNaN(cast.degreesCelcius()));
+    }
+
+    /**
+     * Appends a cast from primitives, missing values being {@link Float#NaN}.
+     *
+     * @return the id of the cast
+     */
+    public synchronized int add(String instrument, long epochSecond, String country,
+                                float latitude, float longitude, float temperature) {
+        if (size == epochSeconds.length) grow();
+        int cast = size;
+        instrumentIds[cast] = (byte) instruments.id(instrument);
+        countryIds[cast] = (short) countries.id(country);
+        epochSeconds[cast] = epochSecond;
+        latitudes[cast] = fixed(latitude, DEGREE_SCALE, hasLatitude, cast);
+        longitudes[cast] = fixed(longitude, DEGREE_SCALE, hasLongitude, cast);
+        temperatures[cast] = fixed(temperature, TEMPERATURE_SCALE, hasTemperature, cast);
+        size++;
+        return cast;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public String instrument(int cast) {
+        return instruments.code(instrumentIds[cast] & 0xFF);
+    }
+
+    public String country(int cast) {
+        return countries.code(countryIds[cast] & 0xFFFF);
+    }
+
+    public long epochSecond(int cast) {
+        return epochSeconds[cast];
+    }
+
+    public float latitude(int cast) {
+        return floating(latitudes[cast], DEGREE_SCALE, hasLatitude, cast);
+    }
+
+    public float longitude(int cast) {
+        return floating(longitudes[cast], DEGREE_SCALE, hasLongitude, cast);
+    }
+
+    public float temperature(int cast) {
+        return floating(temperatures[cast], TEMPERATURE_SCALE, hasTemperature, cast);
+    }
+
+    /** Rebuilds the cast as a record, for callers that need one. */
+    public WodCast toWodCast(int cast) {
+        return new WodCast(instrument(cast), Instant.ofEpochSecond(epochSecond(cast)), country(cast),
+                boxed(latitude(cast)), boxed(longitude(cast)), boxed(temperature(cast)));
+    }
+
+    /** Distinct instrument codes seen. */
+    public int instrumentCount() {
+        return instruments.size();
+    }
+
+    /** Distinct country codes seen. */
+    public int countryCount() {
+        return countries.size();
+    }
+
+    /** Releases the spare capacity left by growing. */
+    public synchronized void trimToSize() {
+        allocate(size);
+    }
+
+    /** Heap held by the columns, excluding the dictionaries. */
+    public synchronized long columnBytes() {
+        int capacity = epochSeconds.length;
+        return (long) capacity * (1 + 2 + 8 + 4 + 4 + 4) + 3L * hasLatitude.length * 8;
+    }
+
+    private void grow() {
+        allocate(Math.max(64, epochSeconds.length * 2));
+    }
+
+    private void allocate(int capacity) {
+        if (instrumentIds == null) {
+            instrumentIds = new byte[capacity];
+            countryIds = new short[capacity];
+            epochSeconds = new long[capacity];
+            latitudes = new int[capacity];
+            longitudes = new int[capacity];
+            temperatures = new int[capacity];
+            hasLatitude = new long[words(capacity)];
+            hasLongitude = new long[words(capacity)];
+            hasTemperature = new long[words(capacity)];
+            return;
+        }
+        instrumentIds = Arrays.copyOf(instrumentIds, capacity);
+        countryIds = Arrays.copyOf(countryIds, capacity);
+        epochSeconds = Arrays.copyOf(epochSeconds, capacity);
+        latitudes = Arrays.copyOf(latitudes, capacity);
+        longitudes = Arrays.copyOf(longitudes, capacity);
+        temperatures = Arrays.copyOf(temperatures, capacity);
+        hasLatitude = Arrays.copyOf(hasLatitude, words(capacity));
+        hasLongitude = Arrays.copyOf(hasLongitude, words(capacity));
+        hasTemperature = Arrays.copyOf(hasTemperature, words(capacity));
+    }
+
+    private static int words(int bits) {
+        return (bits + 63) >>> 6;
+    }
+
+    /** The fixed point value, marking it present or missing in the bitmap. */
+    private static int fixed(float value, float scale, long[] present, int cast) {
+        present[cast >>> 6] &= ~(1L << cast);
+        if (Float.isNaN(value)) return 0;
+        long fixed = Math.round(value * (double) scale);
+        if (fixed != (int) fixed) throw new IllegalArgumentException("Value out of range: " + value);
+        present[cast >>> 6] |= 1L << cast;
+        return (int) fixed;
+    }
+
+    private static float floating(int value, float scale, long[] present, int cast) {
+        if ((present[cast >>> 6] & 1L << cast) == 0) return Float.NaN;
+        return (float) (value / (double) scale);
+    }
+
+    private static float orNaN(Float value) {
+        return value == null ? Float.NaN : value;
+    }
+
+    private static Float boxed(float value) {
+        return Float.isNaN(value) ? null : value;
+    }
+}
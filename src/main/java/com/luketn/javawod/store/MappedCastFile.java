@@ -0,0 +1,125 @@
+package com.luketn.javawod.store;
+
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static com.luketn.javawod.store.CastCacheLayout.*;
+
+/**
+ * A cast cache file mapped read only into memory. Opening is a single map call and every
+ * accessor reads straight from the mapped pages; nothing is copied onto the heap.
+ */
+public final class MappedCastFile implements CastTable, AutoCloseable {
+    private final Path path;
+    private final Arena arena;
+    private final MemorySegment file;
+    private final CastCacheLayout layout;
+    private final int casts;
+    private final String instrument;
+    private final SourceStamp source;
+
+    private MappedCastFile(Path path, Arena arena, MemorySegment file) throws IOException {
+        this.path = path;
+        this.arena = arena;
+        this.file = file;
+        if (file.byteSize() < HEADER_BYTES || file.get(INT, MAGIC_OFFSET) != MAGIC) {
+            throw new IOException("Not a cast cache file: " + path);
+        }
+        if (file.get(INT, VERSION_OFFSET) != VERSION) {
+            throw new IOException("Unsupported cast cache version " + file.get(INT, VERSION_OFFSET) + ": " + path);
+        }
+        this.casts = file.get(INT, CAST_COUNT_OFFSET);
+        this.layout = new CastCacheLayout(casts, file.get(LONG, LEVEL_COUNT_OFFSET));
+        if (layout.fileSize != file.byteSize()) {
+            throw new IOException("Truncated cast cache file: " + path);
+        }
+        byte[] code = file.asSlice(INSTRUMENT_OFFSET, INSTRUMENT_BYTES).toArray(BYTE);
+        int length = 0;
+        while (length < code.length && code[length] != 0) length++;
+        this.instrument = new String(code, 0, length, StandardCharsets.US_ASCII);
+        this.source = new SourceStamp(file.get(LONG, SOURCE_SIZE_OFFSET), file.get(LONG, SOURCE_MODIFIED_OFFSET),
+                file.get(LONG, SOURCE_CHECKSUM_OFFSET));
+    }
+
+    public static MappedCastFile open(Path path) throws IOException {
+        Arena arena = Arena.ofShared();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return new MappedCastFile(path, arena, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size(), arena));
+        } catch (IOException | RuntimeException e) {
+            arena.close();
+            throw e;
+        }
+    }
+
+    public Path path() { return path; }
+    public SourceStamp source() { return source; }
+    public String instrument() { return instrument; }
+
+    @Override public int size() { return casts; }
+    @Override public int castNumber(int cast) { return file.get(INT, layout.castNumbers + 4L * cast); }
+    @Override public long epochSecond(int cast) { return file.get(LONG, layout.epochSeconds + 8L * cast); }
+    @Override public float latitude(int cast) { return file.get(FLOAT, layout.latitudes + 4L * cast); }
+    @Override public float longitude(int cast) { return file.get(FLOAT, layout.longitudes + 4L * cast); }
+    @Override public String instrument(int cast) { return instrument; }
+    @Override public char country(int cast) { return file.get(CHAR, layout.countries + 2L * cast); }
+
+    @Override
+    public int levelCount(int cast) {
+        return levelOffset(cast + 1) - levelOffset(cast);
+    }
+
+    @Override
+    public float depth(int cast, int level) {
+        return file.get(FLOAT, layout.depths + 4L * (levelOffset(cast) + level));
+    }
+
+    @Override
+    public float temperature(int cast, int level) {
+        return file.get(FLOAT, layout.temperatures + 4L * (levelOffset(cast) + level));
+    }
+
+    @Override
+    public byte temperatureQc(int cast, int level) {
+        return file.get(BYTE, layout.temperatureQcs + levelOffset(cast) + level);
+    }
+
+    /** Copies straight from the mapped columns: the levels of consecutive casts are contiguous. */
+    @Override
+    public int copyLevels(int fromCast, int toCast, float[] depth, float[] temperature, byte[] temperatureQc,
+                          int offset) {
+        int first = levelOffset(fromCast);
+        int levels = levelOffset(toCast) - first;
+        MemorySegment.copy(file, FLOAT, layout.depths + 4L * first, depth, offset, levels);
+        MemorySegment.copy(file, FLOAT, layout.temperatures + 4L * first, temperature, offset, levels);
+        MemorySegment.copy(file, BYTE, layout.temperatureQcs + first, temperatureQc, offset, levels);
+        return levels;
+    }
+
+    /** Position of a cast by its WOD cast number (the column is sorted), or -1. */
+    public int indexOf(int castNumber) {
+        int low = 0;
+        int high = casts - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int value = castNumber(mid);
+            if (value < castNumber) low = mid + 1;
+            else if (value > castNumber) high = mid - 1;
+            else return mid;
+        }
+        return -1;
+    }
+
+    private int levelOffset(int cast) {
+        return file.get(INT, layout.levelOffsets + 4L * cast);
+    }
+
+    @Override
+    public void close() {
+        arena.close();
+    }
+}
@@ -0,0 +1,34 @@
+package com.luketn.javawod.store;
+
+import com.luketn.javawod.ingest.CastBatchSink;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * A summary of the casts of one source extract, such as its aggregate cube entries, computed by
+ * the {@link CastCache} while it ingests the source and kept beside its cache file as
+ * {@code <source file name><suffix>}. Startup combines the partials of the sources instead of
+ * reading every cast again.
+ */
+public interface SourcePartial {
+
+    /** Suffix of the partial's file name, e.g. {@code ".cube"}. Recorded in the manifest. */
+    String suffix();
+
+    /** A builder for the partial of one source. */
+    Builder builder();
+
+    /**
+     * Accepts the decoded batches of one source as they are ingested, which may be concurrently.
+     */
+    interface Builder extends CastBatchSink {
+
+        /**
+         * Writes the partial once every batch has been accepted and the source's cache file
+         * written, replacing any existing file atomically. Cast ids are positions in
+         * {@code cached}, which is ordered by cast number rather than in ingestion order.
+         */
+        void write(Path target, MappedCastFile cached) throws IOException;
+    }
+}
@@ -0,0 +1,42 @@
+package com.luketn.javawod.store;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.CRC32C;
+
+/**
+ * Identifies the version of a source extract a cache file was built from.
+ */
+public record SourceStamp(long size, long lastModified, long checksum) {
+
+    /**
+     * Stamps a source, reading it in full to compute its CRC-32C.
+     */
+    public static SourceStamp of(Path source) throws IOException {
+        return new SourceStamp(Files.size(source), Files.getLastModifiedTime(source).toMillis(), checksum(source));
+    }
+
+    /**
+     * Whether the source is unchanged. Size and modification time are compared first; the
+     * checksum is only computed when the size matches but the file was touched.
+     */
+    public boolean matches(Path source) throws IOException {
+        if (Files.size(source) != size) return false;
+        if (Files.getLastModifiedTime(source).toMillis() == lastModified) return true;
+        return checksum(source) == checksum;
+    }
+
+    static long checksum(Path source) throws IOException {
+        CRC32C crc = new CRC32C();
+        byte[] buffer = new byte[256 * 1024];
+        try (InputStream in = Files.newInputStream(source)) {
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                crc.update(buffer, 0, read);
+            }
+        }
+        return crc.getValue();
+    }
+}
@@ -0,0 +1,27 @@
+package com.luketn.javawod.wod;
+
+/**
+ * The 137 WOD standard depth levels in metres. Standard level profiles (profile type 1) do not
+ * carry depths, level i of such a profile lies at {@code depth(i)}.
+ */
+public final class StandardLevels {
+    private static final float[] DEPTHS = new float[137];
+
+    static {
+        int level = 0;
+        for (int depth = 0; depth <= 100; depth += 5) DEPTHS[level++] = depth;
+        for (int depth = 125; depth <= 500; depth += 25) DEPTHS[level++] = depth;
+        for (int depth = 550; depth <= 2000; depth += 50) DEPTHS[level++] = depth;
+        for (int depth = 2100; depth <= 9000; depth += 100) DEPTHS[level++] = depth;
+    }
+
+    private StandardLevels() {}
+
+    public static int count() {
+        return DEPTHS.length;
+    }
+
+    public static float depth(int level) {
+        return DEPTHS[level];
+    }
+}
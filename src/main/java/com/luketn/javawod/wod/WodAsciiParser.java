@@ -0,0 +1,418 @@
+package com.luketn.javawod.wod;
+
+import java.time.Instant;
+
+/**
+ * Byte level decoder for WOD ASCII cast records (see {@code prhFormat} in DataUtil and
+ * https://www.ncei.noaa.gov/sites/default/files/2020-04/wodreadme_0.pdf).
+ * <p>
+ * Walks an int cursor over a {@code byte[]} holding one cast record (line breaks removed) and
+ * decodes every length prefixed field and signif/total/precision numeric triplet straight into
+ * primitives. No intermediate Strings are created and numbers are never boxed; missing values
+ * ('-' markers) are reported as {@link Float#NaN}.
+ * <p>
+ * After {@link #parseHeader} the decoded values are available through the accessors until the
+ * next record is parsed, so one instance can be reused for a whole file. {@link #parseInto}
+ * additionally decodes the level data of every variable into a {@link WodCastBatch}. Instances
+ * are not thread safe - use one per thread.
+ */
+public final class WodAsciiParser {
+    /** Returned by the integer accessors when a length prefixed field was empty. */
+    public static final int MISSING = -1;
+
+    private static final float[] POW10 = {1e0f, 1e1f, 1e2f, 1e3f, 1e4f, 1e5f, 1e6f, 1e7f, 1e8f, 1e9f};
+    private static final long DAYS_0000_TO_1970 = 719528L;
+
+    private byte[] buf;
+    private int pos;
+    private int end;
+
+    private int profileBytes;
+    private int castNumber;
+    private byte countryHigh;
+    private byte countryLow;
+    private int year;
+    private int month;
+    private int day;
+    private float time;
+    private float latitude;
+    private float longitude;
+    private int levels;
+    private int profileType;
+    private int variables;
+    private float temperature;
+    private int[] variableCodes = new int[8];
+
+    // two ASCII bytes -> shared String, so country codes are allocated once per parser
+    private final String[] countryCodes = new String[128 * 128];
+
+    /**
+     * Decodes a complete cast record into a {@link WodCast}.
+     *
+     * @throws WodParseException if the record is malformed
+     */
+    public WodCast parse(byte[] record, int offset, int length, String instrument) {
+        parseHeader(record, offset, length);
+        return toWodCast(instrument);
+    }
+
+    /**
+     * Decodes the primary header and variable metadata of a record, leaving the cursor at the
+     * start of the character data / secondary header section.
+     *
+     * @throws WodParseException if the record is malformed
+     */
+    public void parseHeader(byte[] record, int offset, int length) {
+        reset(record, offset, length);
+
+        if (pos >= end || buf[pos] != 'C') {
+            throw error("Version", "Record does not start with version 'C'");
+        }
+        pos++;
+
+        profileBytes = readPrefixedInt("ProfileBytes");
+        castNumber = readPrefixedInt("CastNumber");
+        countryHigh = readByte("Country");
+        countryLow = readByte("Country");
+        skipPrefixedField("CruiseNumber");
+
+        year = readFixedInt(4, "Year");
+        month = readFixedInt(2, "Month");
+        day = readFixedInt(2, "Day");
+        if (month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month)) {
+            throw error("Day", "Invalid date " + year + "-" + month + "-" + day);
+        }
+
+        time = readScaled("Time");
+        latitude = readScaled("Latitude");
+        longitude = readScaled("Longitude");
+
+        levels = readPrefixedInt("NumberOfLevels");
+        profileType = readFixedInt(1, "ProfileType");
+        variables = readFixedInt(2, "NumVariables");
+        if (levels == MISSING) {
+            throw error("NumberOfLevels", "Missing number of levels");
+        }
+
+        temperature = Float.NaN;
+        if (variables > variableCodes.length) {
+            variableCodes = new int[Math.max(variables, variableCodes.length * 2)];
+        }
+        for (int i = 0; i < variables; i++) {
+            int variableCode = readPrefixedInt("VariableCode");
+            variableCodes[i] = variableCode;
+            readFixedInt(1, "VariableQCFlag");
+            int numVarSpecificMeta = readPrefixedInt("NumVarSpecificMeta");
+            if (numVarSpecificMeta == MISSING) {
+                throw error("NumVarSpecificMeta", "Missing variable specific metadata count");
+            }
+            for (int j = 0; j < numVarSpecificMeta; j++) {
+                readPrefixedInt("VarSpecificCode");
+                float value = readScaled("Value");
+                // variable code 1 is temperature; report its first metadata value
+                if (variableCode == 1 && j == 0 && Float.isNaN(temperature)) {
+                    temperature = value;
+                }
+            }
+        }
+    }
+
+    /**
+     * Decodes a complete cast record, header and every level, appending it to the batch.
+     * The header accessors reflect the cast afterwards, as after {@link #parseHeader}.
+     *
+     * @return the index of the cast in the batch
+     * @throws WodParseException if the record is malformed, in which case the batch is unchanged
+     */
+    public int parseInto(byte[] record, int offset, int length, WodCastBatch batch) {
+        parseHeader(record, offset, length);
+        batch.beginCast(castNumber, epochSecond(), latitude, longitude, countryChar(), profileType);
+        try {
+            for (int i = 0; i < variables; i++) {
+                batch.addVariable(variableCodes[i]);
+            }
+            skipCharacterData();
+            skipHeaderEntries("SecondaryHeader");
+            if (skipHeaderEntries("BiologicalHeader")) {
+                skipTaxaSets();
+            }
+            readLevels(batch);
+        } catch (RuntimeException e) {
+            batch.abandonCast();
+            throw e;
+        }
+        batch.endCast();
+        return batch.size() - 1;
+    }
+
+    /**
+     * Builds a {@link WodCast} from the most recently parsed header.
+     */
+    public WodCast toWodCast(String instrument) {
+        return new WodCast(
+                instrument,
+                Instant.ofEpochSecond(epochDay(year, month, day) * 86400L),
+                countryCode(),
+                boxed(latitude),
+                boxed(longitude),
+                boxed(temperature)
+        );
+    }
+
+    public int profileBytes() { return profileBytes; }
+    public int castNumber() { return castNumber; }
+    public int year() { return year; }
+    public int month() { return month; }
+    public int day() { return day; }
+    public float time() { return time; }
+    public float latitude() { return latitude; }
+    public float longitude() { return longitude; }
+    public int levels() { return levels; }
+    public int profileType() { return profileType; }
+    public int variables() { return variables; }
+    public float temperature() { return temperature; }
+    /** Current cursor position in the record buffer. */
+    public int position() { return pos; }
+
+    /** Seconds since 1970-01-01T00:00Z of the cast date (the time of day is not applied). */
+    public long epochSecond() {
+        return epochDay(year, month, day) * 86400L;
+    }
+
+    /** The two ASCII country code bytes packed into a char, high byte first. */
+    public char countryChar() {
+        return (char) ((countryHigh & 0x7F) << 8 | (countryLow & 0x7F));
+    }
+
+    public String countryCode() {
+        int key = (countryHigh & 0x7F) << 7 | (countryLow & 0x7F);
+        String code = countryCodes[key];
+        if (code == null) {
+            code = new String(new char[]{(char) (countryHigh & 0x7F), (char) (countryLow & 0x7F)});
+            countryCodes[key] = code;
+        }
+        return code;
+    }
+
+    /**
+     * Character data and principal investigator section: originator cruise/station codes
+     * (type 1 and 2) and principal investigator codes per variable (type 3).
+     */
+    private void skipCharacterData() {
+        if (readPrefixedInt("CharacterDataBytes") == MISSING) return;
+        int entries = readFixedInt(1, "CharacterEntries");
+        for (int i = 0; i < entries; i++) {
+            int type = readDigit("CharacterDataType");
+            if (type == 3) {
+                int names = readFixedInt(2, "PrincipalInvestigators");
+                for (int j = 0; j < names; j++) {
+                    readPrefixedInt("PIVariableCode");
+                    readPrefixedInt("PICode");
+                }
+            } else {
+                skip(readFixedInt(2, "CharacterDataLength"), "CharacterData");
+            }
+        }
+    }
+
+    /**
+     * Secondary and biological headers share a layout: total bytes, entry count, then
+     * (code, value) entries.
+     *
+     * @return false if the header is absent
+     */
+    private boolean skipHeaderEntries(String field) {
+        if (readPrefixedInt(field) == MISSING) return false;
+        int entries = readPrefixedInt(field);
+        for (int i = 0; i < entries; i++) {
+            readPrefixedInt(field);
+            readScaled(field);
+        }
+        return true;
+    }
+
+    private void skipTaxaSets() {
+        int sets = readPrefixedInt("TaxaSets");
+        for (int i = 0; i < sets; i++) {
+            int entries = readPrefixedInt("TaxaEntries");
+            for (int j = 0; j < entries; j++) {
+                readPrefixedInt("TaxaCode");
+                readScaled("TaxaValue");
+                readDigit("TaxaQCFlag");
+                readDigit("TaxaOriginatorFlag");
+            }
+        }
+    }
+
+    /**
+     * Profile data: per level the depth (observed levels only) with its error and originator
+     * flags, then per variable the value with its QC and originator flags. A missing value is a
+     * lone '-' without flags.
+     */
+    private void readLevels(WodCastBatch batch) {
+        boolean standardLevels = profileType == 1;
+        if (standardLevels && levels > StandardLevels.count()) {
+            throw error("NumberOfLevels", levels + " standard levels exceeds " + StandardLevels.count());
+        }
+        for (int level = 0; level < levels; level++) {
+            if (standardLevels) {
+                batch.addLevel(StandardLevels.depth(level), (byte) 0);
+            } else {
+                float depth = readScaled("Depth");
+                byte depthQc = WodCastBatch.MISSING_QC;
+                if (!Float.isNaN(depth)) {
+                    depthQc = (byte) readDigit("DepthErrorFlag");
+                    readDigit("DepthOriginatorFlag");
+                }
+                batch.addLevel(depth, depthQc);
+            }
+            for (int v = 0; v < variables; v++) {
+                float value = readScaled("VariableValue");
+                byte qc = WodCastBatch.MISSING_QC;
+                if (!Float.isNaN(value)) {
+                    qc = (byte) readDigit("VariableQCFlag");
+                    readDigit("VariableOriginatorFlag");
+                }
+                batch.addValue(value, qc);
+            }
+        }
+    }
+
+    /** Points the cursor at a record without decoding anything. */
+    void reset(byte[] record, int offset, int length) {
+        this.buf = record;
+        this.pos = offset;
+        this.end = offset + length;
+    }
+
+    private void skip(int length, String field) {
+        if (pos + length > end) throw error(field, "Unexpected end of record");
+        pos += length;
+    }
+
+    private byte readByte(String field) {
+        if (pos >= end) throw error(field, "Unexpected end of record");
+        return buf[pos++];
+    }
+
+    private int readDigit(String field) {
+        int digit = readByte(field) - '0';
+        if (digit < 0 || digit > 9) throw error(field, "Expected a digit");
+        return digit;
+    }
+
+    /**
+     * Reads a "bytes in next field" digit followed by that many digits.
+     * Returns {@link #MISSING} if the field length is zero.
+     */
+    private int readPrefixedInt(String field) {
+        int length = readDigit(field);
+        if (length == 0) return MISSING;
+        return readFixedInt(length, field);
+    }
+
+    private void skipPrefixedField(String field) {
+        int length = readDigit(field);
+        if (pos + length > end) throw error(field, "Unexpected end of record");
+        pos += length;
+    }
+
+    /**
+     * Reads a fixed width, optionally space padded and signed integer.
+     */
+    private int readFixedInt(int width, String field) {
+        int stop = pos + width;
+        if (stop > end) throw error(field, "Unexpected end of record");
+        int value = 0;
+        boolean negative = false;
+        boolean digits = false;
+        for (int i = pos; i < stop; i++) {
+            byte b = buf[i];
+            if (b >= '0' && b <= '9') {
+                value = value * 10 + (b - '0');
+                digits = true;
+            } else if (b == '-' && !digits) {
+                negative = true;
+            } else if (b != ' ') {
+                pos = i;
+                throw error(field, "Unexpected character '" + (char) b + "'");
+            }
+        }
+        if (!digits) throw error(field, "Empty numeric field");
+        pos = stop;
+        return negative ? -value : value;
+    }
+
+    /**
+     * Reads a signif/total/precision triplet and its value, e.g. "452-5513" is -55.13.
+     * A '-' in place of the significant digits marks a missing value and yields NaN.
+     */
+    float readScaled(String field) {
+        if (pos >= end) throw error(field, "Unexpected end of record");
+        if (buf[pos] == '-') {
+            pos++;
+            return Float.NaN;
+        }
+        readDigit(field); // significant digits, not needed to decode the value
+        int totalDigits = readDigit(field);
+        int precision = readDigit(field);
+        if (totalDigits == 0) return Float.NaN;
+
+        int stop = pos + totalDigits;
+        if (stop > end) throw error(field, "Unexpected end of record");
+        long value = 0;
+        boolean negative = false;
+        for (int i = pos; i < stop; i++) {
+            byte b = buf[i];
+            if (b >= '0' && b <= '9') {
+                value = value * 10 + (b - '0');
+            } else if (b == '-' && i == pos) {
+                negative = true;
+            } else {
+                pos = i;
+                throw error(field, "Unexpected character '" + (char) b + "'");
+            }
+        }
+        pos = stop;
+        float scaled = (float) value / POW10[precision];
+        return negative ? -scaled : scaled;
+    }
+
+    private WodParseException error(String field, String message) {
+        return new WodParseException(field, pos, message);
+    }
+
+    private static Float boxed(float value) {
+        return Float.isNaN(value) ? null : value;
+    }
+
+    private static boolean isLeapYear(int year) {
+        return (year & 3) == 0 && (year % 100 != 0 || year % 400 == 0);
+    }
+
+    private static int daysInMonth(int year, int month) {
+        return switch (month) {
+            case 2 -> isLeapYear(year) ? 29 : 28;
+            case 4, 6, 9, 11 -> 30;
+            default -> 31;
+        };
+    }
+
+    // same arithmetic as LocalDate.toEpochDay, without allocating a LocalDate
+    static long epochDay(int year, int month, int day) {
+        long y = year;
+        long total = 365 * y;
+        if (y >= 0) {
+            total += (y + 3) / 4 - (y + 99) / 100 + (y + 399) / 400;
+        } else {
+            total -= y / -4 - y / -100 + y / -400;
+        }
+        total += (367L * month - 362) / 12;
+        total += day - 1;
+        if (month > 2) {
+            total--;
+            if (!isLeapYear(year)) total--;
+        }
+        return total - DAYS_0000_TO_1970;
+    }
+}
@@ -0,0 +1,15 @@
+package com.luketn.javawod.wod;
+
+import java.time.Instant;
+
+/**
+ * A single World Ocean Database cast (profile), reduced to the header values we serve.
+ */
+public record WodCast(
+        String instrumentType,
+        Instant timestamp,
+        String isoCountryCode,
+        Float latitude,  // decimal degrees, null if missing
+        Float longitude, // decimal degrees, null if missing
+        Float degreesCelcius
+) {}
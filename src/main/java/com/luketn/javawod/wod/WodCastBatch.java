@@ -0,0 +1,190 @@
+package com.luketn.javawod.wod;
+
+import java.util.Arrays;
+
+/**
+ * Columnar (struct of arrays) storage for fully decoded casts of one instrument.
+ * <p>
+ * Per cast header values are held in parallel primitive arrays indexed by cast. The profile data
+ * is flattened into shared arrays:
+ * <ul>
+ *     <li>{@code depth}/{@code depthQc} hold one entry per level, cast {@code c} owning the range
+ *     {@code levelOffset[c] .. levelOffset[c + 1]}</li>
+ *     <li>{@code variableCode} holds the variable codes of each cast, from {@code variableOffset[c]}</li>
+ *     <li>{@code value}/{@code qc} hold one entry per level and variable, row major by level, from
+ *     {@code valueOffset[c]}</li>
+ * </ul>
+ * Missing values are {@link Float#NaN} with a qc of {@link #MISSING_QC}. Arrays grow as needed and
+ * keep their capacity across {@link #clear()}, so a batch can be refilled without allocating.
+ */
+public final class WodCastBatch {
+    /** QC flag stored for a missing value. */
+    public static final byte MISSING_QC = -1;
+
+    private String instrument;
+    private String source;
+    private int size;
+
+    private int[] castNumber;
+    private long[] epochSecond;
+    private float[] latitude;
+    private float[] longitude;
+    private char[] country;
+    private byte[] profileType;
+    private int[] levelOffset;
+    private int[] variableOffset;
+    private int[] valueOffset;
+
+    private int[] variableCode;
+    private int variables;
+    private float[] depth;
+    private byte[] depthQc;
+    private int levels;
+    private float[] value;
+    private byte[] qc;
+    private int values;
+
+    public WodCastBatch() {
+        this(256, 16 * 1024);
+    }
+
+    public WodCastBatch(int castCapacity, int levelCapacity) {
+        castNumber = new int[castCapacity];
+        epochSecond = new long[castCapacity];
+        latitude = new float[castCapacity];
+        longitude = new float[castCapacity];
+        country = new char[castCapacity];
+        profileType = new byte[castCapacity];
+        levelOffset = new int[castCapacity + 1];
+        variableOffset = new int[castCapacity + 1];
+        valueOffset = new int[castCapacity + 1];
+        variableCode = new int[castCapacity * 2];
+        depth = new float[levelCapacity];
+        depthQc = new byte[levelCapacity];
+        value = new float[levelCapacity * 2];
+        qc = new byte[levelCapacity * 2];
+    }
+
+    public void clear() {
+        size = 0;
+        variables = 0;
+        levels = 0;
+        values = 0;
+    }
+
+    public void instrument(String instrument) { this.instrument = instrument; }
+    public String instrument() { return instrument; }
+    /** File name of the extract the casts were read from. */
+    public void source(String source) { this.source = source; }
+    public String source() { return source; }
+
+    /** Number of casts in the batch. */
+    public int size() { return size; }
+    /** Total levels over all casts. */
+    public int totalLevels() { return levels; }
+
+    public int castNumber(int cast) { return castNumber[cast]; }
+    public long epochSecond(int cast) { return epochSecond[cast]; }
+    public float latitude(int cast) { return latitude[cast]; }
+    public float longitude(int cast) { return longitude[cast]; }
+    /** Two ASCII country code characters packed high byte first, see {@link WodAsciiParser#countryChar()}. */
+    public char country(int cast) { return country[cast]; }
+    public int profileType(int cast) { return profileType[cast]; }
+
+    public int levelCount(int cast) { return levelOffset[cast + 1] - levelOffset[cast]; }
+    public int levelOffset(int cast) { return levelOffset[cast]; }
+    public int variableCount(int cast) { return variableOffset[cast + 1] - variableOffset[cast]; }
+    public int variableCode(int cast, int variable) { return variableCode[variableOffset[cast] + variable]; }
+
+    /** Index of a variable code within a cast, or -1 if the cast did not measure it. */
+    public int variableIndex(int cast, int code) {
+        for (int v = variableOffset[cast]; v < variableOffset[cast + 1]; v++) {
+            if (variableCode[v] == code) return v - variableOffset[cast];
+        }
+        return -1;
+    }
+
+    public float depth(int cast, int level) { return depth[levelOffset[cast] + level]; }
+    public byte depthQc(int cast, int level) { return depthQc[levelOffset[cast] + level]; }
+    public float value(int cast, int level, int variable) { return value[valueIndex(cast, level, variable)]; }
+    public byte qc(int cast, int level, int variable) { return qc[valueIndex(cast, level, variable)]; }
+
+    private int valueIndex(int cast, int level, int variable) {
+        return valueOffset[cast] + level * variableCount(cast) + variable;
+    }
+
+    // Raw columns, valid up to size() / totalLevels() / the last valueOffset.
+    public float[] depthColumn() { return depth; }
+    public byte[] depthQcColumn() { return depthQc; }
+    public float[] valueColumn() { return value; }
+    public byte[] qcColumn() { return qc; }
+    public int[] levelOffsets() { return levelOffset; }
+    public int[] valueOffsets() { return valueOffset; }
+
+    void beginCast(int castNumber, long epochSecond, float latitude, float longitude, char country, int profileType) {
+        if (size + 1 == levelOffset.length) growCasts();
+        this.castNumber[size] = castNumber;
+        this.epochSecond[size] = epochSecond;
+        this.latitude[size] = latitude;
+        this.longitude[size] = longitude;
+        this.country[size] = country;
+        this.profileType[size] = (byte) profileType;
+        levelOffset[size] = levels;
+        variableOffset[size] = variables;
+        valueOffset[size] = values;
+    }
+
+    void addVariable(int code) {
+        if (variables == variableCode.length) variableCode = Arrays.copyOf(variableCode, grow(variables));
+        variableCode[variables++] = code;
+    }
+
+    void addLevel(float levelDepth, byte levelDepthQc) {
+        if (levels == depth.length) {
+            depth = Arrays.copyOf(depth, grow(levels));
+            depthQc = Arrays.copyOf(depthQc, depth.length);
+        }
+        depth[levels] = levelDepth;
+        depthQc[levels++] = levelDepthQc;
+    }
+
+    void addValue(float levelValue, byte levelQc) {
+        if (values == value.length) {
+            value = Arrays.copyOf(value, grow(values));
+            qc = Arrays.copyOf(qc, value.length);
+        }
+        value[values] = levelValue;
+        qc[values++] = levelQc;
+    }
+
+    void endCast() {
+        size++;
+        levelOffset[size] = levels;
+        variableOffset[size] = variables;
+        valueOffset[size] = values;
+    }
+
+    /** Drops a cast that failed part way through decoding. */
+    void abandonCast() {
+        levels = levelOffset[size];
+        variables = variableOffset[size];
+        values = valueOffset[size];
+    }
+
+    private void growCasts() {
+        int capacity = grow(castNumber.length);
+        castNumber = Arrays.copyOf(castNumber, capacity);
+        epochSecond = Arrays.copyOf(epochSecond, capacity);
+        latitude = Arrays.copyOf(latitude, capacity);
+        longitude = Arrays.copyOf(longitude, capacity);
+        country = Arrays.copyOf(country, capacity);
+        profileType = Arrays.copyOf(profileType, capacity);
+        levelOffset = Arrays.copyOf(levelOffset, capacity + 1);
+        variableOffset = Arrays.copyOf(variableOffset, capacity + 1);
+        valueOffset = Arrays.copyOf(valueOffset, capacity + 1);
+    }
+
+    private static int grow(int length) {
+        return Math.max(16, length * 2);
+    }
+}
@@ -0,0 +1,23 @@
+package com.luketn.javawod.wod;
+
+/**
+ * Thrown when a WOD ASCII record cannot be decoded. Carries the byte position within the
+ * record and the name of the field being read, so callers can report where a record broke
+ * without keeping the record text around.
+ * <p>
+ * Carries no stack trace: a corrupt file can fail on every record, and the position and field
+ * say everything a trace would.
+ */
+public class WodParseException extends RuntimeException {
+    private final String field;
+    private final int position;
+
+    public WodParseException(String field, int position, String message) {
+        super(message + " (field " + field + " at position " + position + ")", null, false, false);
+        this.field = field;
+        this.position = position;
+    }
+
+    public String getField() { return field; }
+    public int getPosition() { return position; }
+}
@@ -1,16 +1,35 @@
 package com.luketn;
 
+import com.luketn.javawod.download.BulkDownloader;
+import com.luketn.javawod.download.DownloadReport;
+import com.luketn.javawod.download.DownloadSettings;
+import com.luketn.javawod.ingest.IngestionEngine;
+import com.luketn.javawod.ingest.IngestionSettings;
+import com.luketn.javawod.ingest.ParseErrorSink;
+import com.luketn.javawod.store.CastCache;
+import com.luketn.javawod.store.CastCacheWriter;
+import com.luketn.javawod.store.CastCatalog;
+import com.luketn.javawod.store.CastTable;
+import com.luketn.javawod.store.CompactCastStore;
+import com.luketn.javawod.store.SourceStamp;
+import com.luketn.javawod.wod.WodCast;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import java.io.*;
 import java.lang.reflect.Array;
-import java.net.URL;
+import java.net.URI;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
 import java.util.zip.GZIPInputStream;
 
 import java.time.Instant;
@@ -23,77 +42,40 @@ import java.nio.charset.StandardCharsets;
  * Ref: https://www.ncei.noaa.gov/sites/default/files/2020-04/wodreadme_0.pdf
  */
 public class DataUtil {
-    private static final String[] localFiles = {
-        "data-raw/ocldb1753579979.3150694.OSD.gz",
-        "data-raw/ocldb1753579979.3150694.OSD2.gz",
-        "data-raw/ocldb1753579979.3150694.OSD3.gz",
-        "data-raw/ocldb1753579979.3150694.OSD4.gz",
-        "data-raw/ocldb1753579979.3150694.CTD.gz",
-        "data-raw/ocldb1753579979.3150694.CTD2.gz",
-        "data-raw/ocldb1753579979.3150694.XBT.gz",
-        "data-raw/ocldb1753579979.3150694.XBT2.gz",
-        "data-raw/ocldb1753579979.3150694.XBT3.gz",
-        "data-raw/ocldb1753579979.3150694.XBT4.gz",
-        "data-raw/ocldb1753579979.3150694.MBT.gz",
-        "data-raw/ocldb1753579979.3150694.MBT2.gz",
-        "data-raw/ocldb1753579979.3150694.MBT3.gz",
-        "data-raw/ocldb1753579979.3150694.PFL.gz",
-        "data-raw/ocldb1753579979.3150694.PFL2.gz",
-        "data-raw/ocldb1753579979.3150694.PFL3.gz",
-        "data-raw/ocldb1753579979.3150694.PFL4.gz",
-        "data-raw/ocldb1753579979.3150694.PFL5.gz",
-        "data-raw/ocldb1753579979.3150694.PFL6.gz",
-        "data-raw/ocldb1753579979.3150694.PFL7.gz",
-        "data-raw/ocldb1753579979.3150694.PFL8.gz",
-        "data-raw/ocldb1753579979.3150694.DRB.gz",
-        "data-raw/ocldb1753579979.3150694.MRB.gz",
-        "data-raw/ocldb1753579979.3150694.MRB2.gz",
-    };
-
+    private static final Logger log = LoggerFactory.getLogger(DataUtil.class);
 
-    public static void main(String[] args) throws IOException {
-        for (String filePath : Arrays.stream(localFiles).filter(s -> s.contains(".OSD.gz")).toList()) {
-            // Create a gunzip stream to read the gzipped file
-            Path path = Paths.get(filePath);
-
-            GZIPInputStream gzipInputStream = new GZIPInputStream(Files.newInputStream(path));
-            InputStreamReader inputStreamReader = new InputStreamReader(gzipInputStream, StandardCharsets.US_ASCII);
-            BufferedReader bufferedReader = new BufferedReader(inputStreamReader);
-            System.out.println("Reading file: " + filePath);
-            int count=0;
-            StringBuilder profileBuilder = new StringBuilder();
-            while (true) {
-                String line = bufferedReader.readLine();
-                if (line == null || line.isEmpty()) {
-                    if (profileBuilder.length() > 0) {
-                        // Process the last profile if it exists
-                        WodCast wodCast = parseProfile(profileBuilder.toString(), path.getFileName().toString());
-                        System.out.println(wodCast);
-                    }
-                    break;
-                } else if (line.startsWith("C")) {
-                    if (profileBuilder.length() > 0) {
-                        // Process the last profile if it exists
-                        WodCast wodCast = parseProfile(profileBuilder.toString(), path.getFileName().toString());
-                        System.out.println(wodCast);
-                    }
-                }
-                profileBuilder.append(line);
+    /**
+     * Brings the cast cache up to date with the extracts in data-raw, ingesting only those that
+     * are new or changed since the last run, and loads the casts into a compact store.
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(Paths.get("data-raw"))) {
+            files = listing.filter(file -> file.getFileName().toString().endsWith(".gz")).sorted().toList();
+        }
+        CastCache cache = new CastCache(Paths.get("data-cache"), ingestionEngine());
+        CompactCastStore casts = new CompactCastStore();
+        try (CastCatalog catalog = cache.open(files)) {
+            for (int cast = 0; cast < catalog.size(); cast++) {
+                casts.add(catalog.instrument(cast), catalog.epochSecond(cast), CastTable.countryCode(catalog.country(cast)),
+                        catalog.latitude(cast), catalog.longitude(cast), catalog.surfaceTemperature(cast));
             }
         }
+        casts.trimToSize();
+        cache.manifest().entries().forEach(entry -> log.info("{}", entry));
+        log.info("Holding {} casts in {} MB", casts.size(), casts.columnBytes() / (1024 * 1024));
     }
-    public record WodCast(
-            String instrumentType,
-            Instant timestamp,
-            String isoCountryCode,
-            Float latitude,  // stored as microdegrees
-            Float longitude, // stored as microdegrees
-            Float degreesCelcius
-    ) {}
 
+    private static IngestionEngine ingestionEngine() {
+        return new IngestionEngine(IngestionSettings.defaults().withOffsetIndexDir(Paths.get("data-cache")),
+                new ParseErrorSink(1, 10, 100));
+    }
+    /**
+     * Original String based parser. Superseded by {@link com.luketn.javawod.wod.WodAsciiParser}
+     * and kept as the reference implementation it is tested against.
+     */
     public static WodCast parseProfile(String line, String fileName) {
         String instrument = extractInstrument(fileName);
-        System.out.println(line);
         AtomicInteger pointer = new AtomicInteger(0);
         try {
             char version = line.charAt(0);
@@ -194,8 +176,6 @@ public class DataUtil {
                     temperature
             );
         } catch (Exception ex) {
-            System.out.println("Error parsing line: " + line + " in file: " + fileName +
-                    " at position: " + pointer.get() + " with error: " + ex.getMessage());
             return null;
         }
     }
@@ -238,7 +218,7 @@ public class DataUtil {
         return Integer.parseInt(stringValue.trim());
     }
 
-    private static Float readNumericFloat(String line, AtomicInteger pointer) throws IOException {
+    public static Float readNumericFloat(String line, AtomicInteger pointer) throws IOException {
         if (line.charAt(pointer.get()) == '-') {
             pointer.getAndIncrement(); // skip the '-'
             return null;
@@ -357,21 +337,29 @@ public class DataUtil {
             "https://www.ncei.noaa.gov/access/world-ocean-database-select/OCLdb_output/ocldb1753579979.3150694.GLD5.gz",
             "https://www.ncei.noaa.gov/access/world-ocean-database-select/OCLdb_output/ocldb1753579979.3150694.GLD6.gz"
     };
-    private static void downloadTemperatures() throws IOException {
-        Files.createDirectories(Paths.get("data-raw"));
-        for (String file : noaQueryExtractUrls) {
-            //download files into the 'data-raw' directory
-            String fileName = file.substring(file.lastIndexOf('/') + 1);
-            String filePath = "data-raw/" + fileName;
-            try {
-                URL url = new URL(file);
-                try (InputStream in = url.openStream()) {
-                    Files.copy(in, Paths.get(filePath), java.nio.file.StandardCopyOption.REPLACE_EXISTING);
-                    System.out.println("Downloaded: " + filePath);
-                }
-            } catch (Exception e) {
-                System.err.println("Failed to download " + file + ": " + e.getMessage());
-            }
+
+    /**
+     * Downloads the extracts into data-raw, parsing each into its cast cache file while it is still
+     * arriving, so that {@link #main} maps the casts instead of ingesting the extracts again.
+     * <p>
+     * The writers are sent batches as bytes arrive, so when a download ultimately fails they already
+     * hold the casts of its partial file, and of any other file still in flight. None of them is
+     * written then, and {@link #main} ingests whichever extracts did complete.
+     */
+    private static void downloadTemperatures() throws IOException, InterruptedException {
+        List<URI> uris = Arrays.stream(noaQueryExtractUrls).map(URI::create).toList();
+        IngestionEngine engine = ingestionEngine();
+        CastCache cache = new CastCache(Paths.get("data-cache"), engine);
+        Map<String, CastCacheWriter> writers = new ConcurrentHashMap<>();
+        DownloadReport report = new BulkDownloader(DownloadSettings.defaults()).downloadAndIngest(uris,
+                Paths.get("data-raw"), engine,
+                batch -> writers.computeIfAbsent(batch.source(), source -> new CastCacheWriter(batch.instrument())).append(batch));
+        Files.createDirectories(Paths.get("data-cache"));
+        for (DownloadReport.FileDownload download : report.files()) {
+            CastCacheWriter writer = writers.get(download.file().getFileName().toString());
+            // adopted by the stamp it carries unless the manifest holds an older entry for the extract
+            if (writer != null) writer.write(cache.cacheFileFor(download.file()), SourceStamp.of(download.file()));
         }
+        log.info("{}", report);
     }
 }
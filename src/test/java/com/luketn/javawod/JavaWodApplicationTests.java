@@ -1,12 +1,27 @@
 package com.luketn.javawod;
 
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.context.annotation.Import;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.nio.file.Path;
 
 @Import(TestcontainersConfiguration.class)
 @SpringBootTest
 class JavaWodApplicationTests {
+    // an empty data directory, so the context never ingests or writes to a real ./data-raw
+    @TempDir
+    static Path temp;
+
+    @DynamicPropertySource
+    static void wodProperties(DynamicPropertyRegistry registry) {
+        registry.add("wod.data-dir", () -> temp.resolve("data-raw").toString());
+        registry.add("wod.cache-dir", () -> temp.resolve("data-cache").toString());
+        registry.add("wod.watch.enabled", () -> "false");
+    }
 
     @Test
     void contextLoads() {
@@ -0,0 +1,149 @@
+package com.luketn.javawod.api;
+
+import com.luketn.javawod.query.CastPyramid;
+import com.luketn.javawod.query.CastQuery;
+import com.luketn.javawod.query.SpatioTemporalIndex;
+import com.luketn.javawod.store.ArrayCastTable;
+import com.luketn.javawod.store.CastTable;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CastStreamTest {
+    private static final ArrayCastTable TABLE = new ArrayCastTable(
+            new int[]{101, 102, 103},
+            new long[]{
+                    Instant.parse("1975-06-15T00:00:00Z").getEpochSecond(),
+                    Instant.parse("1899-12-31T00:00:00Z").getEpochSecond(),
+                    Instant.parse("2020-02-29T00:00:00Z").getEpochSecond()},
+            new float[]{-12.3f, 45.5f, -12.25f},
+            new float[]{123f, -170.125f, 123.5f},
+            new String[]{"OSD", "CTD", "OSD"},
+            new char[]{CastTable.country("AU"), CastTable.country("US"), CastTable.country("AU")},
+            new float[]{14.5f, Float.NaN, -1.875f});
+    private static final SpatioTemporalIndex INDEX = SpatioTemporalIndex.build(TABLE);
+
+    @Test
+    void writesOneJsonObjectPerCast() throws IOException {
+        CastQuery query = new CastQuery(-13, -12, 120, 125, Long.MIN_VALUE, Long.MAX_VALUE, Set.of());
+
+        String ndjson = write(new CastStream(TABLE, INDEX, query, Set.of(), CastStream.Format.NDJSON));
+
+        assertEquals("""
+                {"castNumber":101,"instrument":"OSD","timestamp":"1975-06-15T00:00:00Z","country":"AU","latitude":-12.3,"longitude":123,"temperature":14.5,"levels":1}
+                {"castNumber":103,"instrument":"OSD","timestamp":"2020-02-29T00:00:00Z","country":"AU","latitude":-12.25,"longitude":123.5,"temperature":-1.875,"levels":1}
+                """, ndjson);
+    }
+
+    @Test
+    void writesMissingValuesAsNull() throws IOException {
+        CastQuery query = new CastQuery(40, 50, -180, 180, Long.MIN_VALUE, Long.MAX_VALUE, Set.of("CTD"));
+
+        String ndjson = write(new CastStream(TABLE, INDEX, query, Set.of("US"), CastStream.Format.NDJSON));
+
+        assertEquals("{\"castNumber\":102,\"instrument\":\"CTD\",\"timestamp\":\"1899-12-31T00:00:00Z\",\"country\":\"US\","
+                + "\"latitude\":45.5,\"longitude\":-170.125,\"temperature\":null,\"levels\":1}\n", ndjson);
+    }
+
+    @Test
+    void filtersByCountry() throws IOException {
+        CastQuery query = CastQuery.everything();
+
+        assertEquals(1, write(new CastStream(TABLE, INDEX, query, Set.of("US"), CastStream.Format.NDJSON)).lines().count());
+        assertEquals(2, write(new CastStream(TABLE, INDEX, query, Set.of("AU"), CastStream.Format.NDJSON)).lines().count());
+        assertEquals(0, write(new CastStream(TABLE, INDEX, query, Set.of("GB"), CastStream.Format.NDJSON)).lines().count());
+        assertThrows(IllegalArgumentException.class,
+                () -> new CastStream(TABLE, INDEX, query, Set.of("USA"), CastStream.Format.NDJSON));
+    }
+
+    @Test
+    void writesLittleEndianBinaryRows() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CastQuery query = new CastQuery(40, 50, -180, 180, Long.MIN_VALUE, Long.MAX_VALUE, Set.of());
+        new CastStream(TABLE, INDEX, query, Set.of(), CastStream.Format.BINARY).write(out);
+
+        ByteBuffer buffer = ByteBuffer.wrap(out.toByteArray()).order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals("WODB", new String(out.toByteArray(), 0, 4, StandardCharsets.US_ASCII));
+        buffer.position(4);
+        assertEquals(BinaryRowWriter.VERSION, buffer.getShort());
+        assertEquals(BinaryRowWriter.ROW_BYTES, buffer.getShort());
+        String[] instruments = new String[buffer.get()];
+        for (int i = 0; i < instruments.length; i++) {
+            byte[] code = new byte[buffer.get()];
+            buffer.get(code);
+            instruments[i] = new String(code, StandardCharsets.US_ASCII);
+        }
+        assertEquals(BinaryRowWriter.ROW_BYTES, buffer.remaining());
+        assertEquals(102, buffer.getInt());
+        assertEquals(Instant.parse("1899-12-31T00:00:00Z").getEpochSecond(), buffer.getLong());
+        assertEquals(45.5f, buffer.getFloat());
+        assertEquals(-170.125f, buffer.getFloat());
+        assertTrue(Float.isNaN(buffer.getFloat()));
+        assertEquals(1, buffer.getInt());
+        assertEquals("CTD", instruments[buffer.get()]);
+        assertEquals('U', buffer.get());
+        assertEquals('S', buffer.get());
+    }
+
+    @Test
+    void streamsLargeResultsThroughTheBuffer() throws IOException {
+        ArrayCastTable table = ArrayCastTable.random(20_000, 3);
+        SpatioTemporalIndex index = SpatioTemporalIndex.build(table);
+        CountingOutputStream out = new CountingOutputStream();
+
+        new CastStream(table, index, CastQuery.everything(), Set.of(), CastStream.Format.BINARY).write(out);
+
+        assertTrue(out.writes > 1);
+        assertEquals(index.size(), (out.bytes - headerBytes(index)) / BinaryRowWriter.ROW_BYTES);
+    }
+
+    @Test
+    void sampledStreamWritesAtMostTheBudget() throws IOException {
+        ArrayCastTable table = ArrayCastTable.random(20_000, 3);
+        SpatioTemporalIndex index = SpatioTemporalIndex.build(table);
+        CastPyramid pyramid = CastPyramid.build(table);
+
+        String ndjson = write(CastStream.sampled(table, index, pyramid, 250, CastQuery.everything(), Set.of("US"),
+                CastStream.Format.NDJSON));
+
+        assertEquals(250, ndjson.lines().count());
+        assertTrue(ndjson.lines().allMatch(line -> line.contains("\"country\":\"US\"")));
+        assertThrows(IllegalArgumentException.class, () -> CastStream.sampled(table, index, pyramid, 0,
+                CastQuery.everything(), Set.of(), CastStream.Format.NDJSON));
+    }
+
+    private static long headerBytes(SpatioTemporalIndex index) {
+        return 9 + index.instruments().stream().mapToInt(instrument -> 1 + instrument.length()).sum();
+    }
+
+    private static String write(CastStream stream) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        stream.write(out);
+        return out.toString(StandardCharsets.US_ASCII);
+    }
+
+    private static final class CountingOutputStream extends OutputStream {
+        long bytes;
+        int writes;
+
+        @Override
+        public void write(int b) {
+            bytes++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            bytes += len;
+            writes++;
+        }
+    }
+}
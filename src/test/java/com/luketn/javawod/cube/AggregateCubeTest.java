@@ -0,0 +1,223 @@
+package com.luketn.javawod.cube;
+
+import com.luketn.javawod.store.ArrayCastTable;
+import com.luketn.javawod.store.CastTable;
+import com.luketn.javawod.wod.WodAsciiParser;
+import com.luketn.javawod.wod.WodCastBatch;
+import com.luketn.javawod.wod.WodRecords;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AggregateCubeTest {
+    private static final ArrayCastTable TABLE = ArrayCastTable.random(20_000, 11);
+    private static final AggregateCube CUBE = build(TABLE);
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void accumulatesAcceptedLevelsFromDecodedBatches() {
+        WodAsciiParser parser = new WodAsciiParser();
+        WodCastBatch batch = new WodCastBatch();
+        for (String record : new String[]{
+                WodRecords.profile(1, "AU", "19750615", -33.5f, 151.5f, new float[]{0, 5, 50}, new float[]{18, 16, 12}),
+                WodRecords.profile(2, "AU", "19750620", -33.25f, 151.75f, new float[]{2}, new float[]{20}),
+                WodRecords.profile(3, "AU", "19750701", -33.5f, 151.5f, new float[]{1, 3}, new float[]{10, Float.NaN})}) {
+            byte[] bytes = record.getBytes(StandardCharsets.US_ASCII);
+            parser.parseInto(bytes, 0, bytes.length, batch);
+        }
+        AggregateCube.Builder builder = AggregateCube.builder();
+        builder.accept(batch);
+        AggregateCube cube = builder.build();
+
+        assertEquals(3, cube.size());
+        int june1975 = CubeQuery.monthIndex(1975, 6);
+        CubeSlice slice = cube.slice(new CubeQuery(-34, -33, 151, 152, june1975, june1975 + 1, 0, 10, 1, Period.MONTH, false));
+
+        assertEquals(1, slice.size());
+        assertEquals("1975-06", slice.periodLabel(0));
+        assertEquals(-34f, slice.cellMinLatitude(0));
+        assertEquals(151f, slice.cellMinLongitude(0));
+        assertEquals(0f, slice.depthFrom(0));
+        assertEquals(10f, slice.depthTo(0));
+        assertEquals(3, slice.count(0));
+        assertEquals(18, slice.mean(0), 1e-9);
+        assertEquals(Math.sqrt(8 / 3d), slice.standardDeviation(0), 1e-6);
+        assertEquals(16f, slice.min(0));
+        assertEquals(20f, slice.max(0));
+    }
+
+    @Test
+    void rollsUpToCoarserCellsAndYears() {
+        int from = CubeQuery.monthIndex(1950, 1);
+        int to = CubeQuery.monthIndex(1960, 1);
+        CubeQuery query = new CubeQuery(-60, 60, -180, 180, from, to, 0, 100, 10, Period.YEAR, false);
+
+        CubeSlice slice = CUBE.slice(query);
+
+        long total = 0;
+        for (int i = 0; i < slice.size(); i++) {
+            total += slice.count(i);
+            assertEquals(brute(query, slice.cellMinLatitude(i), slice.cellMinLongitude(i), slice.period(i)),
+                    slice.count(i));
+            assertTrue(slice.min(i) <= slice.mean(i) && slice.mean(i) <= slice.max(i));
+        }
+        assertEquals(brute(query, Float.NaN, Float.NaN, -1), total);
+        assertTrue(total > 0);
+    }
+
+    @Test
+    void climatologyMatchesRollUpOfMonthlyEntries() {
+        CubeQuery climatology = CubeQuery.global(30, Period.MONTH_OF_YEAR);
+        // a bounded month range forces the slice through the monthly entries
+        CubeQuery monthly = new CubeQuery(-90, 90, -180, 180, 0, Integer.MAX_VALUE - 1,
+                0, Float.POSITIVE_INFINITY, 30, Period.MONTH_OF_YEAR, false);
+
+        CubeSlice expected = CUBE.slice(monthly);
+        CubeSlice actual = CUBE.slice(climatology);
+
+        assertEquals(12 * 6 * 12, actual.size());
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < actual.size(); i++) {
+            assertEquals(expected.periodLabel(i), actual.periodLabel(i));
+            assertEquals(expected.cellMinLatitude(i), actual.cellMinLatitude(i));
+            assertEquals(expected.cellMinLongitude(i), actual.cellMinLongitude(i));
+            assertEquals(expected.count(i), actual.count(i));
+            assertEquals(expected.mean(i), actual.mean(i), 1e-9);
+            assertEquals(expected.min(i), actual.min(i));
+            assertEquals(expected.max(i), actual.max(i));
+        }
+    }
+
+    @Test
+    void rollsUpLargeSlicesThroughTheHashedPath() {
+        // 12 months x 20 bands x 64800 cells is too many possible keys for the dense table
+        CubeSlice slice = CUBE.slice(CubeQuery.global(1, Period.MONTH_OF_YEAR));
+
+        long total = 0;
+        for (int i = 0; i < slice.size(); i++) {
+            total += slice.count(i);
+            if (i > 0) {
+                assertTrue(slice.period(i - 1) < slice.period(i) || slice.period(i - 1) == slice.period(i)
+                        && (slice.cellMinLatitude(i - 1) < slice.cellMinLatitude(i)
+                        || slice.cellMinLatitude(i - 1) == slice.cellMinLatitude(i)
+                        && slice.cellMinLongitude(i - 1) < slice.cellMinLongitude(i)));
+            }
+        }
+        assertEquals(brute(CubeQuery.global(1, Period.MONTH), Float.NaN, Float.NaN, -1), total);
+    }
+
+    @Test
+    void mergesDepthBandsAndAllTime() {
+        CubeSlice slice = CUBE.slice(new CubeQuery(-90, 90, 170, -170, Integer.MIN_VALUE, Integer.MAX_VALUE,
+                0, 50, 180, Period.ALL, true));
+
+        // the box straddles the antimeridian, so it falls in both 180 degree cells
+        assertEquals(2, slice.size());
+        assertEquals("all", slice.periodLabel(0));
+        assertEquals(0f, slice.depthFrom(0));
+        assertEquals(50f, slice.depthTo(0));
+        CubeQuery everything = new CubeQuery(-90, 90, 170, -170, Integer.MIN_VALUE, Integer.MAX_VALUE,
+                0, Float.POSITIVE_INFINITY, 1, Period.MONTH, false);
+        assertEquals(brute(everything, Float.NaN, Float.NaN, -1), slice.count(0) + slice.count(1));
+    }
+
+    @Test
+    void plusMatchesCubeBuiltOverBothTables() {
+        ArrayCastTable added = ArrayCastTable.random(5_000, 12);
+        AggregateCube.Builder builder = AggregateCube.builder();
+        builder.add(TABLE);
+        builder.add(added);
+        AggregateCube expected = builder.build();
+
+        AggregateCube merged = CUBE.plus(build(added));
+
+        assertSameCube(expected, merged);
+    }
+
+    @Test
+    void sumMatchesCubeBuiltOverEveryTable() {
+        ArrayCastTable[] tables = {ArrayCastTable.random(3_000, 21), ArrayCastTable.random(4_000, 22),
+                ArrayCastTable.random(5_000, 23)};
+        AggregateCube.Builder builder = AggregateCube.builder();
+        for (ArrayCastTable table : tables) builder.add(table);
+
+        AggregateCube sum = AggregateCube.sum(List.of(build(tables[0]), build(tables[1]), build(tables[2])));
+
+        assertSameCube(builder.build(), sum);
+        assertEquals(0, AggregateCube.sum(List.of()).size());
+    }
+
+    @Test
+    void writtenCubeReadsBackTheSame() throws IOException {
+        Path file = dir.resolve("ocldb1.OSD.gz.cube");
+        CUBE.write(file);
+
+        assertSameCube(CUBE, AggregateCube.read(file));
+        Files.writeString(file, "not a cube");
+        assertThrows(IOException.class, () -> AggregateCube.read(file));
+    }
+
+    @Test
+    void rejectsCellsThatDoNotTileTheGlobe() {
+        assertThrows(IllegalArgumentException.class, () -> CubeQuery.global(7, Period.ALL));
+        assertThrows(IllegalArgumentException.class, () -> CubeQuery.global(0, Period.ALL));
+    }
+
+    private static AggregateCube build(CastTable table) {
+        AggregateCube.Builder builder = AggregateCube.builder();
+        builder.add(table);
+        return builder.build();
+    }
+
+    private static void assertSameCube(AggregateCube expected, AggregateCube actual) {
+        assertEquals(expected.size(), actual.size());
+        for (CubeQuery query : new CubeQuery[]{CubeQuery.global(5, Period.MONTH), CubeQuery.global(30, Period.MONTH_OF_YEAR)}) {
+            CubeSlice expectedSlice = expected.slice(query);
+            CubeSlice actualSlice = actual.slice(query);
+            assertEquals(expectedSlice.size(), actualSlice.size());
+            for (int i = 0; i < actualSlice.size(); i++) {
+                assertEquals(expectedSlice.periodLabel(i), actualSlice.periodLabel(i));
+                assertEquals(expectedSlice.cellMinLatitude(i), actualSlice.cellMinLatitude(i));
+                assertEquals(expectedSlice.cellMinLongitude(i), actualSlice.cellMinLongitude(i));
+                assertEquals(expectedSlice.count(i), actualSlice.count(i));
+                assertEquals(expectedSlice.mean(i), actualSlice.mean(i), 1e-9);
+                assertEquals(expectedSlice.min(i), actualSlice.min(i));
+                assertEquals(expectedSlice.max(i), actualSlice.max(i));
+            }
+        }
+    }
+
+    /** Levels counted straight from the table, optionally only in one output cell and period. */
+    private static long brute(CubeQuery query, float cellLatitude, float cellLongitude, int period) {
+        long count = 0;
+        for (int cast = 0; cast < TABLE.size(); cast++) {
+            float latitude = TABLE.latitude(cast);
+            float longitude = TABLE.longitude(cast);
+            if (Float.isNaN(latitude)) continue;
+            float centreLatitude = (float) Math.floor(latitude) + 0.5f;
+            float centreLongitude = (float) Math.floor(longitude) + 0.5f;
+            if (!query.containsCellCentre(centreLatitude, centreLongitude)) continue;
+            LocalDate date = LocalDate.ofEpochDay(TABLE.epochSecond(cast) / 86_400);
+            int month = CubeQuery.monthIndex(date.getYear(), date.getMonthValue());
+            if (month < query.fromMonth() || month >= query.toMonth()) continue;
+            if (period >= 0 && query.period().of(month) != period) continue;
+            if (!Float.isNaN(cellLatitude)) {
+                int degrees = query.cellDegrees();
+                if (Math.floorDiv((int) Math.floor(latitude) + 90, degrees) * degrees - 90 != (int) cellLatitude) continue;
+                if (Math.floorDiv((int) Math.floor(longitude) + 180, degrees) * degrees - 180 != (int) cellLongitude) continue;
+            }
+            count++;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,208 @@
+package com.luketn.javawod.download;
+
+import com.luketn.javawod.ingest.IngestionEngine;
+import com.luketn.javawod.ingest.IngestionSettings;
+import com.luketn.javawod.wod.SyntheticWod;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+import static com.luketn.javawod.download.StandInServer.Fault.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class BulkDownloaderTest {
+    private static final DownloadSettings SETTINGS = new DownloadSettings(2, 3, Duration.ZERO, Duration.ofSeconds(10));
+    private static final DownloadSettings RETRYING = new DownloadSettings(2, 4, Duration.ZERO, Duration.ofSeconds(10));
+
+    private final StandInServer server = new StandInServer();
+
+    @TempDir
+    Path dir;
+
+    BulkDownloaderTest() throws IOException {}
+
+    @AfterEach
+    void stopServer() {
+        server.close();
+    }
+
+    @Test
+    void downloadsEveryFileWithBoundedConnections() throws Exception {
+        List<byte[]> contents = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            contents.add(extract(i, 200));
+            server.serve("ocldb1.OSD" + (i + 1) + ".gz", contents.get(i));
+        }
+        server.pauseMidBody(50);
+
+        DownloadReport report = new BulkDownloader(SETTINGS).download(uris(5), dir);
+
+        for (int i = 0; i < 5; i++) {
+            assertArrayEquals(contents.get(i), Files.readAllBytes(dir.resolve("ocldb1.OSD" + (i + 1) + ".gz")));
+        }
+        assertFalse(Files.exists(dir.resolve("ocldb1.OSD1.gz" + BulkDownloader.PART_SUFFIX)));
+        assertEquals(2, server.maxActive());
+        assertEquals(contents.stream().mapToLong(c -> c.length).sum(), report.transferred());
+    }
+
+    @Test
+    void resumesBrokenTransfersWithRangeRequests() throws Exception {
+        byte[] content = extract(1, 500);
+        server.serve("ocldb1.OSD1.gz", content);
+        server.inject("ocldb1.OSD1.gz", CUT, UNAVAILABLE, CUT);
+
+        DownloadReport report = new BulkDownloader(RETRYING).download(uris(1), dir);
+
+        assertArrayEquals(content, Files.readAllBytes(dir.resolve("ocldb1.OSD1.gz")));
+        List<String> requests = server.requests();
+        assertEquals(4, requests.size());
+        assertEquals("ocldb1.OSD1.gz ", requests.get(0));
+        long previous = 0;
+        for (String request : requests.subList(1, 4)) {
+            long offset = Long.parseLong(request.substring(request.indexOf('=') + 1, request.length() - 1));
+            assertTrue(offset > 0 && offset >= previous && offset < content.length, request);
+            previous = offset;
+        }
+        assertEquals(4, report.files().get(0).attempts());
+        assertEquals(content.length, report.files().get(0).transferred());
+    }
+
+    @Test
+    void resumesAPartialFileLeftByAnEarlierRun() throws Exception {
+        byte[] content = extract(1, 300);
+        server.serve("ocldb1.OSD1.gz", content);
+        Files.write(dir.resolve("ocldb1.OSD1.gz" + BulkDownloader.PART_SUFFIX), Arrays.copyOf(content, 1000));
+
+        DownloadReport report = new BulkDownloader(SETTINGS).download(uris(1), dir);
+
+        assertArrayEquals(content, Files.readAllBytes(dir.resolve("ocldb1.OSD1.gz")));
+        assertEquals(List.of("ocldb1.OSD1.gz bytes=1000-"), server.requests());
+        assertEquals(content.length - 1000, report.files().get(0).transferred());
+    }
+
+    @Test
+    void skipsHeldBytesWhenTheServerIgnoresRange() throws Exception {
+        byte[] content = extract(1, 300);
+        server.serve("ocldb1.OSD1.gz", content);
+        server.inject("ocldb1.OSD1.gz", CUT, IGNORE_RANGE);
+
+        new BulkDownloader(SETTINGS).download(uris(1), dir);
+
+        assertArrayEquals(content, Files.readAllBytes(dir.resolve("ocldb1.OSD1.gz")));
+    }
+
+    @Test
+    void completeFileCostsOneEmptyRequest() throws Exception {
+        byte[] content = extract(1, 300);
+        server.serve("ocldb1.OSD1.gz", content);
+        Files.write(dir.resolve("ocldb1.OSD1.gz"), content);
+
+        DownloadReport report = new BulkDownloader(SETTINGS).download(uris(1), dir);
+
+        assertEquals(List.of("ocldb1.OSD1.gz bytes=" + content.length + "-"), server.requests());
+        assertEquals(0, report.transferred());
+        assertArrayEquals(content, Files.readAllBytes(dir.resolve("ocldb1.OSD1.gz")));
+    }
+
+    @Test
+    void givesUpAfterMaxAttempts() throws Exception {
+        server.serve("ocldb1.OSD1.gz", extract(1, 300));
+        server.inject("ocldb1.OSD1.gz", UNAVAILABLE, UNAVAILABLE, UNAVAILABLE);
+
+        IOException e = assertThrows(IOException.class, () -> new BulkDownloader(SETTINGS).download(uris(1), dir));
+
+        assertTrue(e.getMessage().contains("HTTP 503"), e.getMessage());
+        assertEquals(3, server.requests().size());
+        assertFalse(Files.exists(dir.resolve("ocldb1.OSD1.gz")));
+    }
+
+    @Test
+    void completeFileSurvivesAnUnavailableServer() throws Exception {
+        byte[] content = extract(1, 300);
+        server.serve("ocldb1.OSD1.gz", content);
+        server.inject("ocldb1.OSD1.gz", UNAVAILABLE, UNAVAILABLE, UNAVAILABLE);
+        Files.write(dir.resolve("ocldb1.OSD1.gz"), content);
+
+        assertThrows(IOException.class, () -> new BulkDownloader(SETTINGS).download(uris(1), dir));
+
+        assertEquals(3, server.requests().size());
+        assertArrayEquals(content, Files.readAllBytes(dir.resolve("ocldb1.OSD1.gz")));
+        assertFalse(Files.exists(dir.resolve("ocldb1.OSD1.gz" + BulkDownloader.PART_SUFFIX)));
+    }
+
+    @Test
+    void doesNotRetryWhatRetryingCannotFix() throws Exception {
+        server.serve("ocldb1.OSD1.gz", extract(1, 300));
+        server.inject("ocldb1.OSD1.gz", OVERLONG);
+
+        assertThrows(DownloadException.class, () -> new BulkDownloader(SETTINGS).download(uris(1), dir));
+        assertThrows(DownloadException.class,
+                () -> new BulkDownloader(SETTINGS).download(List.of(server.uri("missing.gz")), dir));
+        assertEquals(List.of("ocldb1.OSD1.gz ", "missing.gz "), server.requests());
+    }
+
+    @Test
+    void ingestsEveryCastOnceWhileDownloading() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            server.serve("ocldb1.OSD" + (i + 1) + ".gz", extract(i, 400));
+        }
+        server.inject("ocldb1.OSD2.gz", CUT, IGNORE_RANGE);
+        server.pauseMidBody(20);
+        IngestionEngine engine = new IngestionEngine(new IngestionSettings(1, 1, 2, 32, 4096, null));
+        AtomicInteger casts = new AtomicInteger();
+
+        DownloadReport report = new BulkDownloader(RETRYING)
+                .downloadAndIngest(uris(3), dir, engine, batch -> casts.addAndGet(batch.size()));
+
+        assertEquals(1200, casts.get());
+        for (DownloadReport.FileDownload file : report.files()) {
+            assertEquals(400, file.ingestion().castsParsed());
+            assertEquals(0, file.ingestion().castsFailed());
+        }
+    }
+
+    @Test
+    void failedDownloadFailsItsIngestion() throws Exception {
+        server.serve("ocldb1.OSD1.gz", extract(1, 300));
+        server.inject("ocldb1.OSD1.gz", CUT, UNAVAILABLE, UNAVAILABLE);
+        IngestionEngine engine = new IngestionEngine(new IngestionSettings(1, 1, 2, 32, 4096, null));
+
+        assertThrows(IOException.class, () -> new BulkDownloader(SETTINGS)
+                .downloadAndIngest(uris(1), dir, engine, batch -> {}));
+    }
+
+    @Test
+    void fileNameIsTheLastPathSegment() {
+        assertEquals("ocldb1753579979.3150694.OSD.gz", BulkDownloader.fileNameOf(URI.create(
+                "https://www.ncei.noaa.gov/access/world-ocean-database-select/OCLdb_output/ocldb1753579979.3150694.OSD.gz")));
+    }
+
+    private List<URI> uris(int files) {
+        List<URI> uris = new ArrayList<>();
+        for (int i = 0; i < files; i++) {
+            uris.add(server.uri("ocldb1.OSD" + (i + 1) + ".gz"));
+        }
+        return uris;
+    }
+
+    private static byte[] extract(long seed, int casts) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (OutputStream out = new GZIPOutputStream(bytes)) {
+            new SyntheticWod(seed).write(out, casts);
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,153 @@
+package com.luketn.javawod.download;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Local stand-in for the WOD extract server. Serves files from memory with Range support, and
+ * fails requests on demand.
+ */
+final class StandInServer implements AutoCloseable {
+
+    enum Fault {
+        /** sends half of the body, then drops the connection */
+        CUT,
+        /** answers 503 */
+        UNAVAILABLE,
+        /** ignores the Range header and sends the whole file */
+        IGNORE_RANGE,
+        /** announces one byte less than it sends */
+        OVERLONG
+    }
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Map<String, byte[]> files = new ConcurrentHashMap<>();
+    private final Map<String, Queue<Fault>> faults = new ConcurrentHashMap<>();
+    private final List<String> requests = new CopyOnWriteArrayList<>();
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger maxActive = new AtomicInteger();
+    private volatile long pauseMillis;
+
+    StandInServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", this::handle);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    URI uri(String name) {
+        return URI.create("http://localhost:" + server.getAddress().getPort() + "/extracts/" + name);
+    }
+
+    void serve(String name, byte[] content) {
+        files.put(name, content);
+    }
+
+    /** Fails the next requests for the file, one fault per request. */
+    void inject(String name, Fault... next) {
+        faults.computeIfAbsent(name, key -> new ConcurrentLinkedQueue<>()).addAll(List.of(next));
+    }
+
+    /** Pauses half way through every body, so that transfers overlap. */
+    void pauseMidBody(long millis) {
+        pauseMillis = millis;
+    }
+
+    /** Requests made, as "name range", range being empty for a whole file request. */
+    List<String> requests() {
+        return requests;
+    }
+
+    /** Most requests served at the same time. */
+    int maxActive() {
+        return maxActive.get();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+        try (exchange) {
+            String path = exchange.getRequestURI().getPath();
+            String name = path.substring(path.lastIndexOf('/') + 1);
+            String range = exchange.getRequestHeaders().getFirst("Range");
+            requests.add(name + " " + (range == null ? "" : range));
+            byte[] content = files.get(name);
+            if (content == null) {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+            Queue<Fault> pending = faults.get(name);
+            Fault fault = pending == null ? null : pending.poll();
+            if (fault == Fault.UNAVAILABLE) {
+                exchange.sendResponseHeaders(503, -1);
+                return;
+            }
+
+            int from = 0;
+            if (range != null && fault != Fault.IGNORE_RANGE) {
+                from = Integer.parseInt(range.substring("bytes=".length(), range.indexOf('-')));
+                if (from >= content.length) {
+                    exchange.getResponseHeaders().set("Content-Range", "bytes */" + content.length);
+                    exchange.sendResponseHeaders(416, -1);
+                    return;
+                }
+            }
+            int count = content.length - from;
+            if (fault == Fault.OVERLONG) {
+                // chunked, so the body can run past the announced total
+                exchange.getResponseHeaders().set("Content-Range",
+                        "bytes " + from + "-" + (content.length - 2) + "/" + (content.length - 1));
+                exchange.sendResponseHeaders(206, 0);
+            } else if (from > 0) {
+                exchange.getResponseHeaders().set("Content-Range",
+                        "bytes " + from + "-" + (content.length - 1) + "/" + content.length);
+                exchange.sendResponseHeaders(206, count);
+            } else {
+                exchange.sendResponseHeaders(200, count);
+            }
+            OutputStream body = exchange.getResponseBody();
+            int half = count / 2;
+            body.write(content, from, half);
+            body.flush();
+            if (pauseMillis > 0) sleep(pauseMillis);
+            if (fault == Fault.CUT) {
+                // a short fixed length body makes the server drop the connection
+                return;
+            }
+            body.write(content, from + half, count - half);
+        } catch (IOException e) {
+            // expected when a cut transfer is closed short
+        } finally {
+            active.decrementAndGet();
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.close();
+    }
+}
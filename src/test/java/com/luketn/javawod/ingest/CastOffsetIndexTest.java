@@ -0,0 +1,107 @@
+package com.luketn.javawod.ingest;
+
+import com.luketn.javawod.wod.WodRecords;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CastOffsetIndexTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void ingestionWritesIndexThatFetchesSingleCasts() throws Exception {
+        Path file = dir.resolve("ocldb1.XBT.gz");
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(file))) {
+            for (int i = 1; i <= 300; i++) {
+                out.write(WodRecords.lines(WodRecords.cast(1000 + i, "19750615")).getBytes(StandardCharsets.US_ASCII));
+            }
+        }
+        IngestionSettings settings = new IngestionSettings(1, 1, 2, 16, 1024, dir.resolve("index"));
+        new IngestionEngine(settings).ingest(List.of(file), cast -> {});
+
+        CastOffsetIndex index = CastOffsetIndex.load(dir.resolve("index"), file);
+
+        assertNotNull(index);
+        assertEquals(300, index.size());
+        assertFalse(index.contains(1));
+        assertEquals(-1, index.offsetOf(1));
+        // offsets are into the inflated stream, so they address the gunzipped extract
+        Path gunzipped = dir.resolve("ocldb1.XBT");
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(file))) {
+            Files.copy(in, gunzipped);
+        }
+        byte[] record = index.readRecord(gunzipped, 1150);
+        assertEquals(WodRecords.cast(1150, "19750615"), new String(record, StandardCharsets.US_ASCII));
+        assertThrows(IllegalArgumentException.class, () -> index.readRecord(file, 1150));
+    }
+
+    @Test
+    void unwritableIndexDirectoryDoesNotFailIngestion() throws Exception {
+        Path file = dir.resolve("ocldb1.XBT.gz");
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(file))) {
+            out.write(WodRecords.lines(WodRecords.cast(1, "19750615")).getBytes(StandardCharsets.US_ASCII));
+        }
+        // a file where the directory should be
+        Path notADirectory = Files.writeString(dir.resolve("index"), "");
+        IngestionSettings settings = new IngestionSettings(1, 1, 2, 16, 1024, notADirectory);
+
+        IngestionReport report = new IngestionEngine(settings).ingest(List.of(file), cast -> {});
+
+        assertEquals(1, report.castsParsed());
+        assertFalse(Files.exists(dir.resolve("ocldb1.XBT.gz" + CastOffsetIndex.SUFFIX)));
+    }
+
+    @Test
+    void plainSourcesAreReadPositionally() throws Exception {
+        Path file = dir.resolve("casts.txt");
+        String first = WodRecords.cast(1, "19750615");
+        String second = WodRecords.cast(2, "19750615");
+        Files.writeString(file, WodRecords.lines(first) + WodRecords.lines(second), StandardCharsets.US_ASCII);
+        CastOffsetIndex index = new CastOffsetIndex();
+        index.add(2, WodRecords.lines(first).length(), WodRecords.lines(second).length());
+
+        assertEquals(second, new String(index.readRecord(file, 2), StandardCharsets.US_ASCII));
+        assertNull(index.readRecord(file, 1));
+    }
+
+    @Test
+    void changedSourceInvalidatesIndex() throws Exception {
+        Path file = dir.resolve("casts.txt");
+        Files.writeString(file, WodRecords.lines(WodRecords.cast(1, "19750615")), StandardCharsets.US_ASCII);
+        CastOffsetIndex index = new CastOffsetIndex();
+        index.add(1, 0, (int) Files.size(file));
+        index.write(dir, file);
+        assertEquals(1, CastOffsetIndex.load(dir, file).size());
+
+        Files.setLastModifiedTime(file, FileTime.fromMillis(Files.getLastModifiedTime(file).toMillis() + 1000));
+
+        assertNull(CastOffsetIndex.load(dir, file));
+    }
+
+    @Test
+    void hashMapGrowsAndKeepsEveryEntry() {
+        LongLongHashMap map = new LongLongHashMap(4);
+        for (long key = 0; key < 10_000; key++) {
+            map.put(key * 7919, key);
+        }
+        assertEquals(10_000, map.size());
+        for (long key = 0; key < 10_000; key++) {
+            assertEquals(key, map.get(key * 7919, -1));
+        }
+        assertEquals(-1, map.get(3, -1));
+        assertEquals(0, map.put(0, 42, -1));
+        assertEquals(10_000, map.size());
+    }
+}
@@ -0,0 +1,76 @@
+package com.luketn.javawod.ingest;
+
+import com.luketn.javawod.wod.WodRecords;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CastSplitterTest {
+
+    record Split(String record, long streamOffset, int rawLength) {}
+
+    @Test
+    void dataLineStartingWithCDoesNotSplitACast() throws Exception {
+        // the 'C' lands at the start of the second 80 character line
+        String record = WodRecords.record("512345" + "A".repeat(69) + "C" + "B".repeat(20));
+        assertEquals('C', record.charAt(80));
+        String stream = WodRecords.lines(record) + WodRecords.lines(WodRecords.cast(7, "19750615"));
+
+        List<Split> splits = split(stream, stream.length());
+
+        assertEquals(2, splits.size());
+        assertEquals(record, splits.get(0).record());
+        assertEquals(12345, castNumber(splits.get(0).record()));
+        assertEquals(7, castNumber(splits.get(1).record()));
+    }
+
+    @Test
+    void reportsStreamOffsetsAcrossChunkBoundaries() throws Exception {
+        String first = WodRecords.cast(1, "19750615");
+        String second = WodRecords.cast(22, "19750616");
+        String stream = WodRecords.lines(first) + WodRecords.lines(second);
+
+        List<Split> splits = split(stream, 1);
+
+        assertEquals(List.of(
+                new Split(first, 0, first.length() + first.length() / 80),
+                new Split(second, WodRecords.lines(first).length(), second.length() + second.length() / 80)
+        ), splits);
+        Split last = splits.get(1);
+        String raw = stream.substring((int) last.streamOffset(), (int) last.streamOffset() + last.rawLength());
+        assertEquals(second, raw.replace("\n", ""));
+    }
+
+    @Test
+    void damagedHeaderIsEmittedAndSplittingRecovers() throws Exception {
+        String stream = "C3XY9garbage\n" + WodRecords.lines(WodRecords.cast(5, "19750615"));
+
+        List<Split> splits = split(stream, 7);
+
+        assertEquals(2, splits.size());
+        assertEquals("C3XY9garbage", splits.get(0).record());
+        assertEquals(-1, splits.get(0).rawLength());
+        assertEquals(5, castNumber(splits.get(1).record()));
+    }
+
+    private static long castNumber(String record) {
+        byte[] bytes = record.getBytes(StandardCharsets.US_ASCII);
+        return CastSplitter.castNumberOf(bytes, 0, bytes.length);
+    }
+
+    private static List<Split> split(String stream, int chunkSize) throws InterruptedException {
+        List<Split> splits = new ArrayList<>();
+        CastSplitter splitter = new CastSplitter((buffer, offset, length, streamOffset, rawLength) ->
+                splits.add(new Split(new String(buffer, offset, length, StandardCharsets.US_ASCII), streamOffset, rawLength)));
+        byte[] bytes = stream.getBytes(StandardCharsets.US_ASCII);
+        for (int start = 0; start < bytes.length; start += chunkSize) {
+            splitter.accept(bytes, start, Math.min(chunkSize, bytes.length - start));
+        }
+        splitter.finish();
+        return splits;
+    }
+}
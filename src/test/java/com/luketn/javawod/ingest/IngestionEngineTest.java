@@ -0,0 +1,132 @@
+package com.luketn.javawod.ingest;
+
+import com.luketn.javawod.wod.WodCast;
+import com.luketn.javawod.wod.WodParseException;
+import com.luketn.javawod.wod.WodRecords;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IngestionEngineTest {
+    // tiny chunks, batches and queues so records straddle every boundary
+    private static final IngestionSettings SMALL = new IngestionSettings(2, 2, 2, 3, 50, null);
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void ingestsAllCastsOfAllFiles() throws Exception {
+        Path osd = writeExtract("ocldb1.OSD.gz", 25, false);
+        Path ctd = writeExtract("ocldb1.CTD2.gz", 40, true);
+        ConcurrentLinkedQueue<WodCast> casts = new ConcurrentLinkedQueue<>();
+
+        IngestionReport report = new IngestionEngine(SMALL).ingest(List.of(osd, ctd), casts::add);
+
+        assertEquals(64, report.castsParsed());
+        assertEquals(1, report.castsFailed());
+        assertEquals(64, casts.size());
+        assertEquals(25, casts.stream().filter(c -> c.instrumentType().equals("OSD")).count());
+        assertEquals(39, casts.stream().filter(c -> c.instrumentType().equals("CTD")).count());
+        assertEquals("ocldb1.OSD.gz", report.files().get(0).fileName());
+        assertTrue(report.files().get(0).bytesInflated() > Files.size(osd));
+    }
+
+    @Test
+    void ingestsBatchesOfFullyDecodedCasts() throws Exception {
+        Path osd = writeExtract("ocldb1.OSD.gz", 25, true);
+        AtomicInteger casts = new AtomicInteger();
+
+        IngestionReport report = new IngestionEngine(SMALL).ingestBatches(List.of(osd), batch -> {
+            assertEquals("OSD", batch.instrument());
+            casts.addAndGet(batch.size());
+        });
+
+        assertEquals(24, report.castsParsed());
+        assertEquals(24, casts.get());
+    }
+
+    @Test
+    void sinkFailureStopsIngestion() throws Exception {
+        Path osd = writeExtract("ocldb1.OSD.gz", 500, false);
+
+        IllegalStateException e = assertThrows(IllegalStateException.class,
+                () -> new IngestionEngine(SMALL).ingest(List.of(osd), cast -> {
+                    throw new IllegalStateException("sink full");
+                }));
+        assertEquals("sink full", e.getMessage());
+    }
+
+    @Test
+    void reportsProgressAndFailuresToTheListener() throws Exception {
+        Path ctd = writeExtract("ocldb1.CTD.gz", 10, true);
+        AtomicLong bytes = new AtomicLong();
+        AtomicInteger parsed = new AtomicInteger();
+        List<String> failures = new CopyOnWriteArrayList<>();
+        List<IngestionReport.FileReport> files = new CopyOnWriteArrayList<>();
+        IngestionListener listener = new IngestionListener() {
+            @Override
+            public void bytesInflated(String instrument, int count) {
+                bytes.addAndGet(count);
+            }
+
+            @Override
+            public void castsParsed(String instrument, int casts, long nanos) {
+                assertEquals("CTD", instrument);
+                assertTrue(nanos >= 0);
+                parsed.addAndGet(casts);
+            }
+
+            @Override
+            public void castFailed(String instrument, String file, long recordOffset, int position, WodParseException error) {
+                failures.add(file + "@" + recordOffset + ":" + error.getField() + "@" + position);
+            }
+
+            @Override
+            public void fileIngested(String instrument, IngestionReport.FileReport report) {
+                files.add(report);
+            }
+        };
+
+        IngestionReport report = new IngestionEngine(SMALL, listener).ingest(List.of(ctd), cast -> {});
+
+        long offset = 0;
+        for (int i = 0; i < 3; i++) {
+            offset += WodRecords.lines(WodRecords.cast(i + 1, "19750615")).length();
+        }
+        int position = WodRecords.cast(4, "1975X615").indexOf("1975X615") + 4;
+        assertEquals(List.of("ocldb1.CTD.gz@" + offset + ":Month@" + position), failures);
+        assertEquals(9, parsed.get());
+        assertEquals(report.files(), files);
+        assertEquals(report.files().get(0).bytesInflated(), bytes.get());
+    }
+
+    @Test
+    void instrumentIgnoresFileSequenceNumber() {
+        assertEquals("PFL", IngestionEngine.instrumentOf("ocldb1753579979.3150694.PFL8.gz"));
+        assertEquals("OSD", IngestionEngine.instrumentOf("ocldb1753579979.3150694.OSD.gz"));
+    }
+
+    private Path writeExtract(String name, int casts, boolean withMalformedCast) throws IOException {
+        Path file = dir.resolve(name);
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(file))) {
+            for (int i = 0; i < casts; i++) {
+                String record = WodRecords.cast(i + 1, withMalformedCast && i == 3 ? "1975X615" : "19750615");
+                out.write(WodRecords.lines(record).getBytes(StandardCharsets.US_ASCII));
+            }
+        }
+        return file;
+    }
+}
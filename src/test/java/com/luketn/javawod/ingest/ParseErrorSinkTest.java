@@ -0,0 +1,92 @@
+package com.luketn.javawod.ingest;
+
+import com.luketn.javawod.wod.WodParseException;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParseErrorSinkTest {
+
+    @Test
+    void keepsWhereARecordFailedButNotItsText() {
+        ParseErrorSink sink = new ParseErrorSink(1, 10, 10, new ManualClock());
+
+        sink.castFailed("OSD", "ocldb1.OSD.gz", 1234, 17, new WodParseException("Month", 99, "Unexpected character 'X'"));
+
+        ParseErrorSink.ParseError error = sink.recent().get(0);
+        assertEquals("ocldb1.OSD.gz", error.file());
+        assertEquals(1234, error.recordOffset());
+        assertEquals("Month", error.field());
+        assertEquals(17, error.position());
+        assertEquals(1, sink.failures());
+        assertEquals(1, sink.kept());
+    }
+
+    @Test
+    void samplesOneInEveryN() {
+        ParseErrorSink sink = new ParseErrorSink(4, 100, 100, new ManualClock());
+
+        fail(sink, 10);
+
+        assertEquals(10, sink.failures());
+        assertEquals(List.of(0L, 4L, 8L), sink.recent().stream().map(ParseErrorSink.ParseError::recordOffset).toList());
+    }
+
+    @Test
+    void limitsKeptFailuresPerSecond() {
+        ManualClock clock = new ManualClock();
+        ParseErrorSink sink = new ParseErrorSink(1, 3, 100, clock);
+
+        fail(sink, 10);
+        assertEquals(3, sink.kept());
+
+        clock.now = clock.now.plusMillis(999);
+        fail(sink, 10);
+        assertEquals(3, sink.kept());
+
+        clock.now = clock.now.plusMillis(1);
+        fail(sink, 10);
+        assertEquals(6, sink.kept());
+        assertEquals(30, sink.failures());
+    }
+
+    @Test
+    void recentHoldsTheLastFailuresOldestFirst() {
+        ParseErrorSink sink = new ParseErrorSink(1, 100, 3, new ManualClock());
+
+        fail(sink, 5);
+
+        assertEquals(List.of(2L, 3L, 4L), sink.recent().stream().map(ParseErrorSink.ParseError::recordOffset).toList());
+    }
+
+    private static void fail(ParseErrorSink sink, int failures) {
+        for (int i = 0; i < failures; i++) {
+            sink.castFailed("OSD", "ocldb1.OSD.gz", i, 0, new WodParseException("Day", 0, "Invalid date"));
+        }
+    }
+
+    private static final class ManualClock extends Clock {
+        Instant now = Instant.parse("2024-01-01T00:00:00Z");
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.luketn.javawod.live;
+
+import com.luketn.javawod.cube.AggregateCube;
+import com.luketn.javawod.cube.CubeQuery;
+import com.luketn.javawod.cube.CubeSlice;
+import com.luketn.javawod.cube.Period;
+import com.luketn.javawod.ingest.IngestionEngine;
+import com.luketn.javawod.ingest.IngestionSettings;
+import com.luketn.javawod.query.CastPyramid;
+import com.luketn.javawod.query.CastQuery;
+import com.luketn.javawod.query.SpatioTemporalIndex;
+import com.luketn.javawod.stats.StatsKernel;
+import com.luketn.javawod.store.CastCache;
+import com.luketn.javawod.store.CastCatalog;
+import com.luketn.javawod.wod.SyntheticWod;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DataDirectoryWatcherTest {
+    private static final IngestionEngine ENGINE = new IngestionEngine(new IngestionSettings(2, 1, 2, 64, 64 * 1024, null));
+    private static final Duration SETTLE = Duration.ofMillis(50);
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void servesExtractsArrivingWhileRunning() throws Exception {
+        Path data = Files.createDirectories(dir.resolve("data-raw"));
+        Path osd = new SyntheticWod(1).writeGzip(data.resolve("ocldb1.OSD.gz"), 500);
+        CastCache cache = cache();
+
+        try (LiveWod live = new LiveWod(WodSnapshot.build(cache.open(List.of(osd)), StatsKernel.scalar()));
+             DataDirectoryWatcher watcher = new DataDirectoryWatcher(data, cache, live, SETTLE)) {
+            watcher.start();
+            WodSnapshot before = live.current();
+
+            // written aside and moved into place, as the downloader does
+            Path part = new SyntheticWod(2).writeGzip(data.resolve("ocldb1.CTD.gz.part"), 300);
+            Files.move(part, data.resolve("ocldb1.CTD.gz"), StandardCopyOption.ATOMIC_MOVE);
+            WodSnapshot after = awaitCasts(live, 800);
+
+            assertEquals(500, before.catalog().size());
+            assertEquals(before.index().count(CastQuery.everything()), SpatioTemporalIndex.build(before.catalog()).size());
+            assertEquals("CTD", after.catalog().instrument(799));
+            assertEquals(SpatioTemporalIndex.build(after.catalog()).size(), after.index().size());
+            assertEquals(AggregateCube.build(after.catalog()).size(), after.cube().size());
+            assertArrayEquals(CastPyramid.build(after.catalog()).sample(after.catalog(), CastQuery.everything(), 500, cast -> true),
+                    after.pyramid().sample(after.catalog(), CastQuery.everything(), 500, cast -> true));
+            assertEquals(300, cache.manifest().get("ocldb1.CTD.gz").casts());
+        }
+    }
+
+    @Test
+    void picksUpExtractsPresentBeforeWatching() throws Exception {
+        Path data = Files.createDirectories(dir.resolve("data-raw"));
+        Path osd = new SyntheticWod(1).writeGzip(data.resolve("ocldb1.OSD.gz"), 200);
+        CastCache cache = cache();
+        try (LiveWod live = new LiveWod(WodSnapshot.build(cache.open(List.of(osd)), StatsKernel.scalar()))) {
+            // arrives after the catalog was opened but before the directory is watched
+            new SyntheticWod(3).writeGzip(data.resolve("ocldb1.XBT.gz"), 100);
+
+            try (DataDirectoryWatcher watcher = new DataDirectoryWatcher(data, cache, live, SETTLE)) {
+                watcher.start();
+                assertEquals("XBT", awaitCasts(live, 300).catalog().instrument(250));
+            }
+        }
+    }
+
+    @Test
+    void leavesServedExtractsAndOtherFilesAlone() throws Exception {
+        Path data = Files.createDirectories(dir.resolve("data-raw"));
+        Path osd = new SyntheticWod(1).writeGzip(data.resolve("ocldb1.OSD.gz"), 200);
+        CastCache cache = cache();
+        try (LiveWod live = new LiveWod(WodSnapshot.build(cache.open(List.of(osd)), StatsKernel.scalar()));
+             DataDirectoryWatcher watcher = new DataDirectoryWatcher(data, cache, live, SETTLE)) {
+            watcher.start();
+            WodSnapshot before = live.current();
+
+            Files.setLastModifiedTime(osd, FileTime.fromMillis(Files.getLastModifiedTime(osd).toMillis() + 5000));
+            Files.writeString(data.resolve("notes.txt"), "not an extract");
+            new SyntheticWod(4).writeGzip(data.resolve("ocldb1.OSD.gz.part"), 100);
+            Thread.sleep(SETTLE.multipliedBy(10).toMillis());
+
+            assertSame(before, live.current());
+        }
+    }
+
+    @Test
+    void snapshotCombinesThePartialsWrittenAtIngest() throws Exception {
+        Path data = Files.createDirectories(dir.resolve("data-raw"));
+        Path osd = new SyntheticWod(1).writeGzip(data.resolve("ocldb1.OSD.gz"), 400);
+        Path ctd = new SyntheticWod(2).writeGzip(data.resolve("ocldb1.CTD.gz"), 300);
+        CastCache cache = cache();
+
+        try (CastCatalog catalog = cache.open(List.of(osd, ctd))) {
+            WodSnapshot snapshot = WodSnapshot.build(catalog, StatsKernel.scalar());
+
+            assertTrue(Files.exists(CastCache.partialFileOf(cache.cacheFileFor(ctd), AggregateCube.PARTIAL)));
+            assertTrue(Files.exists(CastCache.partialFileOf(cache.cacheFileFor(ctd), CastPyramid.PARTIAL)));
+            AggregateCube cube = AggregateCube.build(catalog);
+            CubeSlice expected = cube.slice(CubeQuery.global(10, Period.YEAR));
+            CubeSlice actual = snapshot.cube().slice(CubeQuery.global(10, Period.YEAR));
+            assertEquals(cube.size(), snapshot.cube().size());
+            assertEquals(expected.size(), actual.size());
+            for (int i = 0; i < actual.size(); i++) {
+                assertEquals(expected.count(i), actual.count(i));
+                assertEquals(expected.mean(i), actual.mean(i), 1e-9);
+            }
+            CastQuery pacific = new CastQuery(-60, 60, 150, -100, Long.MIN_VALUE, Long.MAX_VALUE, Set.of());
+            assertArrayEquals(CastPyramid.build(catalog).sample(catalog, pacific, 100, cast -> true),
+                    snapshot.pyramid().sample(catalog, pacific, 100, cast -> true));
+        }
+    }
+
+    /** A cache keeping the cube and pyramid partials, as the application's does. */
+    private CastCache cache() {
+        return new CastCache(dir.resolve("cache"), ENGINE, List.of(AggregateCube.PARTIAL, CastPyramid.PARTIAL));
+    }
+
+    private static WodSnapshot awaitCasts(LiveWod live, int casts) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (live.current().catalog().size() < casts) {
+            if (System.nanoTime() > deadline) {
+                fail("Served " + live.current().catalog().size() + " casts, expected " + casts);
+            }
+            Thread.sleep(10);
+        }
+        assertEquals(casts, live.current().catalog().size());
+        return live.current();
+    }
+}
@@ -0,0 +1,151 @@
+package com.luketn.javawod.query;
+
+import com.luketn.javawod.store.ArrayCastTable;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CastPyramidTest {
+    private static final ArrayCastTable TABLE = ArrayCastTable.random(200_000, 42);
+    private static final CastPyramid PYRAMID = CastPyramid.build(TABLE);
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void sampleStaysWithinBudgetAndViewport() {
+        CastQuery query = new CastQuery(-60, 30, -70, 20, Long.MIN_VALUE, Long.MAX_VALUE, Set.of());
+
+        int[] casts = PYRAMID.sample(TABLE, query, 1_000, cast -> true);
+
+        assertEquals(1_000, casts.length);
+        assertEquals(1_000, Arrays.stream(casts).distinct().count());
+        for (int cast : casts) {
+            assertTrue(query.containsPosition(TABLE.latitude(cast), TABLE.longitude(cast)));
+        }
+        assertArrayEquals(casts, PYRAMID.sample(TABLE, query, 1_000, cast -> true));
+    }
+
+    @Test
+    void worldSampleIsSpreadEvenly() {
+        // 2048 cells of 5.625 degrees at level 5: one cast from each before any has a second
+        int[] casts = PYRAMID.sample(TABLE, CastQuery.everything(), 2_048, cast -> true);
+
+        int[] perCell = new int[2_048];
+        for (int cast : casts) {
+            int row = (int) ((TABLE.latitude(cast) + 90) / 5.625f);
+            int column = (int) ((TABLE.longitude(cast) + 180) / 5.625f);
+            perCell[Math.min(31, row) * 64 + Math.min(63, column)]++;
+        }
+        assertEquals(2_048, casts.length);
+        assertTrue(Arrays.stream(perCell).allMatch(count -> count == 1));
+    }
+
+    @Test
+    void smallViewportReturnsEveryMatch() {
+        CastQuery query = new CastQuery(-34, -33, 151, 153, Long.MIN_VALUE, Long.MAX_VALUE, Set.of());
+
+        int[] casts = PYRAMID.sample(TABLE, query, 100, cast -> true);
+
+        int[] sorted = casts.clone();
+        Arrays.sort(sorted);
+        assertTrue(sorted.length > 0);
+        assertArrayEquals(LinearScan.query(TABLE, query), sorted);
+    }
+
+    @Test
+    void filtersSampledCasts() {
+        long from = Instant.parse("1950-01-01T00:00:00Z").getEpochSecond();
+        long to = Instant.parse("1980-01-01T00:00:00Z").getEpochSecond();
+        CastQuery query = new CastQuery(-90, 90, -180, 180, from, to, Set.of("CTD", "XBT"));
+
+        int[] casts = PYRAMID.sample(TABLE, query, 500, cast -> TABLE.castNumber(cast) % 2 == 0);
+
+        assertEquals(500, casts.length);
+        for (int cast : casts) {
+            assertTrue(query.containsTime(TABLE.epochSecond(cast)));
+            assertTrue(Set.of("CTD", "XBT").contains(TABLE.instrument(cast)));
+            assertEquals(0, TABLE.castNumber(cast) % 2);
+        }
+    }
+
+    @Test
+    void antimeridianViewportCoversBothSides() {
+        CastQuery query = new CastQuery(-20, 20, 170, -170, Long.MIN_VALUE, Long.MAX_VALUE, Set.of());
+
+        int[] casts = PYRAMID.sample(TABLE, query, 200, cast -> true);
+
+        assertEquals(200, casts.length);
+        assertTrue(Arrays.stream(casts).anyMatch(cast -> TABLE.longitude(cast) > 170));
+        assertTrue(Arrays.stream(casts).anyMatch(cast -> TABLE.longitude(cast) < -170));
+        for (int cast : casts) {
+            assertTrue(query.containsPosition(TABLE.latitude(cast), TABLE.longitude(cast)));
+        }
+    }
+
+    @Test
+    void appendedPyramidMatchesPyramidBuiltOverAllCasts() {
+        CastPyramid appended = CastPyramid.build(TABLE.head(120_000)).append(TABLE, 120_000);
+
+        assertSameSamples(PYRAMID, appended);
+    }
+
+    @Test
+    void pyramidsOfConsecutiveTablesCombineToPyramidBuiltOverAllCasts() {
+        int[] firstCast = {0, 50_000, 120_000, 190_000};
+        List<CastPyramid> parts = new ArrayList<>();
+        for (int i = 0; i < firstCast.length; i++) {
+            int to = i + 1 < firstCast.length ? firstCast[i + 1] : TABLE.size();
+            parts.add(CastPyramid.build(TABLE.slice(firstCast[i], to)));
+        }
+        CastPyramid plus = parts.getFirst();
+        for (int i = 1; i < parts.size(); i++) {
+            plus = plus.plus(parts.get(i), firstCast[i]);
+        }
+
+        assertSameSamples(PYRAMID, CastPyramid.concat(parts, firstCast));
+        assertSameSamples(PYRAMID, plus);
+    }
+
+    @Test
+    void writtenPyramidReadsBackTheSame() throws IOException {
+        Path file = dir.resolve("ocldb1.OSD.gz.pyramid");
+        PYRAMID.write(file);
+
+        assertSameSamples(PYRAMID, CastPyramid.read(file));
+        Files.writeString(file, "not a pyramid");
+        assertThrows(IOException.class, () -> CastPyramid.read(file));
+    }
+
+    @Test
+    void rejectsEmptyBudget() {
+        assertThrows(IllegalArgumentException.class,
+                () -> PYRAMID.sample(TABLE, CastQuery.everything(), 0, cast -> true));
+    }
+
+    /** Same samples of the table for random viewports and budgets. */
+    private static void assertSameSamples(CastPyramid expected, CastPyramid actual) {
+        assertEquals(expected.size(), actual.size());
+        Random random = new Random(11);
+        for (int i = 0; i < 50; i++) {
+            float minLatitude = random.nextFloat() * 180 - 90;
+            float minLongitude = random.nextFloat() * 360 - 180;
+            CastQuery query = new CastQuery(minLatitude, Math.min(90, minLatitude + random.nextFloat() * 90),
+                    minLongitude, random.nextFloat() * 360 - 180, Long.MIN_VALUE, Long.MAX_VALUE, Set.of());
+            int maxPoints = 1 + random.nextInt(5_000);
+            assertArrayEquals(expected.sample(TABLE, query, maxPoints, cast -> true),
+                    actual.sample(TABLE, query, maxPoints, cast -> true));
+        }
+    }
+}
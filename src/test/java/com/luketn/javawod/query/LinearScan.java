@@ -0,0 +1,54 @@
+package com.luketn.javawod.query;
+
+import com.luketn.javawod.store.CastTable;
+
+import java.util.Arrays;
+
+/**
+ * Reference full scan over a {@link CastTable}, to check and benchmark the indexes against.
+ */
+final class LinearScan {
+    private LinearScan() {}
+
+    static int[] query(CastTable table, CastQuery query) {
+        int[] result = new int[64];
+        int size = 0;
+        for (int cast = 0; cast < table.size(); cast++) {
+            float latitude = table.latitude(cast);
+            float longitude = table.longitude(cast);
+            if (Float.isNaN(latitude) || Float.isNaN(longitude)) continue;
+            if (!query.containsPosition(latitude, longitude)) continue;
+            if (!query.containsTime(table.epochSecond(cast))) continue;
+            if (!query.instruments().isEmpty() && !query.instruments().contains(table.instrument(cast))) continue;
+            if (size == result.length) result = Arrays.copyOf(result, size * 2);
+            result[size++] = cast;
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    /**
+     * The casts matching the query's filters within a great-circle distance of its position,
+     * nearest first by haversine distance, at most {@code k} of them.
+     */
+    static int[] nearest(CastTable table, NearestQuery query, int k, double maxKm) {
+        // distance as float bits, which sort as the distances do, above the cast id
+        long[] matches = new long[64];
+        int size = 0;
+        for (int cast = 0; cast < table.size(); cast++) {
+            float latitude = table.latitude(cast);
+            float longitude = table.longitude(cast);
+            if (Float.isNaN(latitude) || Float.isNaN(longitude)) continue;
+            long epochSecond = table.epochSecond(cast);
+            if (epochSecond < query.fromEpochSecond() || epochSecond >= query.toEpochSecond()) continue;
+            if (!query.instruments().isEmpty() && !query.instruments().contains(table.instrument(cast))) continue;
+            double km = NearestCastIndex.haversineKm(query.latitude(), query.longitude(), latitude, longitude);
+            if (km > maxKm) continue;
+            if (size == matches.length) matches = Arrays.copyOf(matches, size * 2);
+            matches[size++] = (long) Float.floatToIntBits((float) km) << 32 | cast;
+        }
+        Arrays.sort(matches, 0, size);
+        int[] result = new int[Math.min(k, size)];
+        for (int i = 0; i < result.length; i++) result[i] = (int) matches[i];
+        return result;
+    }
+}
@@ -0,0 +1,159 @@
+package com.luketn.javawod.query;
+
+import com.luketn.javawod.store.ArrayCastTable;
+import com.luketn.javawod.store.CastTable;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NearestCastIndexTest {
+    private static final ArrayCastTable TABLE = ArrayCastTable.random(50_000, 42);
+    private static final NearestCastIndex INDEX = NearestCastIndex.build(TABLE);
+    // positions are held as float unit vectors, good to well under a metre
+    private static final double TOLERANCE_KM = 0.01;
+
+    @Test
+    void haversineDistanceBetweenKnownPlaces() {
+        assertEquals(713.43, NearestCastIndex.haversineKm(-33.8688, 151.2093, -37.8136, 144.9631), 0.01);
+        assertEquals(111.195, NearestCastIndex.haversineKm(0, 179.5, 0, -179.5), 0.001);
+        assertEquals(Math.PI * NearestCastIndex.EARTH_RADIUS_KM, NearestCastIndex.haversineKm(90, 0, -90, 0), 1e-6);
+    }
+
+    @Test
+    void nearestMatchesLinearScanForRandomQueries() {
+        Random random = new Random(7);
+        for (int i = 0; i < 200; i++) {
+            NearestQuery query = randomQuery(random);
+            int k = 1 + random.nextInt(50);
+
+            assertSameNeighbours(TABLE, query, LinearScan.nearest(TABLE, query, k, Double.POSITIVE_INFINITY),
+                    INDEX.nearest(query, k));
+        }
+    }
+
+    @Test
+    void withinMatchesLinearScanForRandomQueries() {
+        Random random = new Random(9);
+        for (int i = 0; i < 200; i++) {
+            NearestQuery query = randomQuery(random);
+            double radiusKm = random.nextDouble() * 2_000;
+
+            Neighbours neighbours = INDEX.within(query, radiusKm, Integer.MAX_VALUE);
+
+            int[] expected = LinearScan.nearest(TABLE, query, Integer.MAX_VALUE, radiusKm);
+            // a cast right on the circle may fall either side of it
+            assertEquals(expected.length, neighbours.size(), 1);
+            if (expected.length == neighbours.size()) assertSameNeighbours(TABLE, query, expected, neighbours);
+            for (int n = 0; n < neighbours.size(); n++) {
+                assertTrue(neighbours.distanceKm(n) <= radiusKm + TOLERANCE_KM);
+            }
+        }
+    }
+
+    @Test
+    void withinStopsAtLimit() {
+        NearestQuery query = NearestQuery.at(0, 0);
+
+        Neighbours neighbours = INDEX.within(query, 3_000, 25);
+
+        assertEquals(25, neighbours.size());
+        assertSameNeighbours(TABLE, query, LinearScan.nearest(TABLE, query, 25, 3_000), neighbours);
+    }
+
+    @Test
+    void searchesAcrossTheAntimeridianAndPoles() {
+        CastTable table = new ArrayCastTable(new int[]{1, 2, 3, 4},
+                new long[]{0, 0, 0, 0},
+                new float[]{0, 0, 89.9f, 89.9f},
+                new float[]{179.9f, -179.9f, 0, 180},
+                new String[]{"CTD", "CTD", "CTD", "CTD"},
+                new char[4]);
+        NearestCastIndex index = NearestCastIndex.build(table);
+
+        Neighbours acrossAntimeridian = index.nearest(NearestQuery.at(0, -179.95), 2);
+        Neighbours acrossPole = index.nearest(NearestQuery.at(89.95, 90), 2);
+
+        assertEquals(Set.of(0, 1), Set.of(acrossAntimeridian.cast(0), acrossAntimeridian.cast(1)));
+        assertEquals(16.68, acrossAntimeridian.distanceKm(1), 0.01);
+        assertEquals(Set.of(2, 3), Set.of(acrossPole.cast(0), acrossPole.cast(1)));
+    }
+
+    @Test
+    void filtersOnTimeAndInstrument() {
+        long from = Instant.parse("1950-01-01T00:00:00Z").getEpochSecond();
+        long to = Instant.parse("1960-01-01T00:00:00Z").getEpochSecond();
+        NearestQuery query = new NearestQuery(-37.8, 144.9, from, to, Set.of("OSD", "PFL"));
+
+        Neighbours neighbours = INDEX.nearest(query, 20);
+
+        assertEquals(20, neighbours.size());
+        for (int cast : neighbours.casts()) {
+            assertTrue(TABLE.epochSecond(cast) >= from && TABLE.epochSecond(cast) < to);
+            assertTrue(Set.of("OSD", "PFL").contains(TABLE.instrument(cast)));
+        }
+        assertSameNeighbours(TABLE, query, LinearScan.nearest(TABLE, query, 20, Double.POSITIVE_INFINITY), neighbours);
+        assertEquals(0, INDEX.nearest(new NearestQuery(0, 0, from, to, Set.of("NOPE")), 5).size());
+        assertEquals(0, INDEX.nearest(new NearestQuery(0, 0, from, from, Set.of()), 5).size());
+    }
+
+    @Test
+    void castsWithoutPositionAreNotIndexed() {
+        int unlocated = (int) java.util.stream.IntStream.range(0, TABLE.size())
+                .filter(cast -> Float.isNaN(TABLE.latitude(cast))).count();
+
+        assertEquals(TABLE.size() - unlocated, INDEX.size());
+        assertEquals(INDEX.size(), INDEX.within(NearestQuery.at(0, 0), 30_000, Integer.MAX_VALUE).size());
+    }
+
+    @Test
+    void appendedIndexMatchesIndexBuiltOverAllCasts() {
+        NearestCastIndex appended = NearestCastIndex.build(TABLE.head(10_000));
+        for (int from = 10_000; from < TABLE.size(); from += 5_000) {
+            appended = appended.append(TABLE.head(from + 5_000), from);
+        }
+
+        assertEquals(INDEX.size(), appended.size());
+        // merged as it grew, not one tree per append
+        assertTrue(appended.trees() <= 3, "trees: " + appended.trees());
+        Random random = new Random(11);
+        for (int i = 0; i < 100; i++) {
+            NearestQuery query = randomQuery(random);
+            assertArrayEquals(INDEX.nearest(query, 10).casts(), appended.nearest(query, 10).casts());
+        }
+    }
+
+    @Test
+    void rejectsInvalidQueries() {
+        assertThrows(IllegalArgumentException.class, () -> NearestQuery.at(91, 0));
+        assertThrows(IllegalArgumentException.class, () -> NearestQuery.at(0, Double.NaN));
+        assertThrows(IllegalArgumentException.class, () -> INDEX.nearest(NearestQuery.at(0, 0), 0));
+        assertThrows(IllegalArgumentException.class, () -> INDEX.within(NearestQuery.at(0, 0), -1, 10));
+    }
+
+    private static NearestQuery randomQuery(Random random) {
+        double latitude = random.nextDouble() * 180 - 90;
+        double longitude = random.nextDouble() * 360 - 180;
+        if (random.nextBoolean()) return NearestQuery.at(latitude, longitude);
+        long from = -2_208_988_800L + random.nextLong(120 * 365L) * 86_400L;
+        long to = from + random.nextLong(40 * 365L) * 86_400L;
+        Set<String> instruments = random.nextBoolean() ? Set.of() : Set.of("OSD", "PFL");
+        return new NearestQuery(latitude, longitude, from, to, instruments);
+    }
+
+    /** Same distances nearest first, each that of its cast; casts at equal distance may swap. */
+    private static void assertSameNeighbours(CastTable table, NearestQuery query, int[] expected, Neighbours actual) {
+        assertEquals(expected.length, actual.size());
+        for (int n = 0; n < expected.length; n++) {
+            double expectedKm = NearestCastIndex.haversineKm(query.latitude(), query.longitude(),
+                    table.latitude(expected[n]), table.longitude(expected[n]));
+            double actualKm = NearestCastIndex.haversineKm(query.latitude(), query.longitude(),
+                    table.latitude(actual.cast(n)), table.longitude(actual.cast(n)));
+            assertEquals(expectedKm, actual.distanceKm(n), TOLERANCE_KM);
+            assertEquals(actualKm, actual.distanceKm(n), TOLERANCE_KM);
+        }
+    }
+}
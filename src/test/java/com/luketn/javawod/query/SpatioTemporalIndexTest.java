@@ -0,0 +1,87 @@
+package com.luketn.javawod.query;
+
+import com.luketn.javawod.store.ArrayCastTable;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SpatioTemporalIndexTest {
+    private static final ArrayCastTable TABLE = ArrayCastTable.random(50_000, 42);
+    private static final SpatioTemporalIndex INDEX = SpatioTemporalIndex.build(TABLE, 2.5f);
+
+    @Test
+    void matchesLinearScanForRandomQueries() {
+        Random random = new Random(7);
+        for (int i = 0; i < 200; i++) {
+            float minLatitude = random.nextFloat() * 180 - 90;
+            float maxLatitude = minLatitude + random.nextFloat() * (90 - minLatitude);
+            float minLongitude = random.nextFloat() * 360 - 180;
+            float maxLongitude = random.nextFloat() * 360 - 180; // half of these cross the antimeridian
+            long from = -2_208_988_800L + random.nextLong(120 * 365L) * 86_400L + random.nextInt(86_400);
+            long to = from + random.nextLong(40 * 365L) * 86_400L;
+            Set<String> instruments = random.nextBoolean() ? Set.of() : Set.of("OSD", "PFL");
+            CastQuery query = new CastQuery(minLatitude, maxLatitude, minLongitude, maxLongitude, from, to, instruments);
+
+            assertSameCasts(LinearScan.query(TABLE, query), INDEX.query(query));
+        }
+    }
+
+    @Test
+    void antimeridianBoxCoversBothSides() {
+        long from = Instant.parse("1950-01-01T00:00:00Z").getEpochSecond();
+        long to = Instant.parse("1960-01-01T00:00:00Z").getEpochSecond();
+        CastQuery query = new CastQuery(-20, 20, 170, -170, from, to, Set.of());
+
+        int[] casts = INDEX.query(query);
+
+        assertTrue(casts.length > 0);
+        assertTrue(Arrays.stream(casts).anyMatch(cast -> TABLE.longitude(cast) > 170));
+        assertTrue(Arrays.stream(casts).anyMatch(cast -> TABLE.longitude(cast) < -170));
+        assertSameCasts(LinearScan.query(TABLE, query), casts);
+    }
+
+    @Test
+    void castsWithoutPositionAreNotIndexed() {
+        int unlocated = (int) java.util.stream.IntStream.range(0, TABLE.size())
+                .filter(cast -> Float.isNaN(TABLE.latitude(cast))).count();
+
+        assertEquals(TABLE.size() - unlocated, INDEX.size());
+        assertEquals(INDEX.size(), INDEX.count(CastQuery.everything()));
+        assertEquals(0, INDEX.count(new CastQuery(-90, 90, -180, 180, 0, 1, Set.of("NOPE"))));
+    }
+
+    @Test
+    void appendedIndexMatchesIndexBuiltOverAllCasts() {
+        SpatioTemporalIndex head = SpatioTemporalIndex.build(TABLE.head(30_000), 2.5f);
+
+        SpatioTemporalIndex appended = head.append(TABLE, 30_000);
+
+        assertEquals(INDEX.size(), appended.size());
+        assertEquals(Set.copyOf(INDEX.instruments()), Set.copyOf(appended.instruments()));
+        Random random = new Random(11);
+        for (int i = 0; i < 100; i++) {
+            float minLatitude = random.nextFloat() * 180 - 90;
+            float minLongitude = random.nextFloat() * 360 - 180;
+            long from = -2_208_988_800L + random.nextLong(120 * 365L) * 86_400L;
+            CastQuery query = new CastQuery(minLatitude, Math.min(90, minLatitude + 40), minLongitude,
+                    minLongitude + 60 > 180 ? minLongitude - 300 : minLongitude + 60, from, from + 30 * 365 * 86_400L,
+                    random.nextBoolean() ? Set.of() : Set.of("CTD", "GLD"));
+            // same casts in the same order: cell by cell, by date then id
+            assertArrayEquals(INDEX.query(query), appended.query(query));
+        }
+        // the index appended to is unchanged
+        assertEquals(SpatioTemporalIndex.build(TABLE.head(30_000), 2.5f).count(CastQuery.everything()),
+                head.count(CastQuery.everything()));
+    }
+
+    private static void assertSameCasts(int[] expected, int[] actual) {
+        int[] sorted = actual.clone();
+        Arrays.sort(sorted);
+        assertArrayEquals(expected, sorted);
+    }
+}
@@ -0,0 +1,71 @@
+package com.luketn.javawod.stats;
+
+import com.luketn.javawod.ingest.IngestionEngine;
+import com.luketn.javawod.ingest.IngestionSettings;
+import com.luketn.javawod.query.CastQuery;
+import com.luketn.javawod.query.SpatioTemporalIndex;
+import com.luketn.javawod.store.CastCache;
+import com.luketn.javawod.store.CastCatalog;
+import com.luketn.javawod.store.CastTable;
+import com.luketn.javawod.wod.SyntheticWod;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RegionStatsTest {
+    private static final IngestionEngine ENGINE = new IngestionEngine(new IngestionSettings(2, 1, 2, 64, 64 * 1024, null));
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void matchesALevelByLevelScanOfTheCatalog() throws Exception {
+        Path osd = new SyntheticWod(1).writeGzip(dir.resolve("ocldb1.OSD.gz"), 3000);
+        Path ctd = new SyntheticWod(2).writeGzip(dir.resolve("ocldb1.CTD.gz"), 2000);
+        LevelFilter filter = LevelFilter.accepted().withDepths(0, 500);
+
+        try (CastCatalog catalog = new CastCache(dir.resolve("cache"), ENGINE).open(List.of(osd, ctd))) {
+            RegionStats stats = new RegionStats(catalog, SpatioTemporalIndex.build(catalog), StatsKernel.preferred());
+            CastQuery north = new CastQuery(0, 90, -180, 180, Long.MIN_VALUE, Long.MAX_VALUE, Set.of("CTD"));
+
+            for (CastQuery query : List.of(CastQuery.everything(), north)) {
+                ColumnStats expected = scan(catalog, query, filter);
+                ColumnStats actual = stats.temperature(query, filter);
+                assertTrue(expected.count() > 1000, "levels " + expected.count());
+                assertEquals(expected.count(), actual.count());
+                assertEquals(expected.mean(), actual.mean(), 1e-4);
+                assertEquals(expected.min(), actual.min());
+                assertEquals(expected.max(), actual.max());
+
+                Histogram histogram = stats.temperatureHistogram(query, filter, -100, 100, 40);
+                assertEquals(expected.count(), histogram.total());
+            }
+        }
+    }
+
+    private static ColumnStats scan(CastTable table, CastQuery query, LevelFilter filter) {
+        boolean everything = query.equals(CastQuery.everything());
+        long count = 0;
+        double sum = 0;
+        float min = Float.POSITIVE_INFINITY;
+        float max = Float.NEGATIVE_INFINITY;
+        for (int cast = 0; cast < table.size(); cast++) {
+            if (!everything && (!query.containsPosition(table.latitude(cast), table.longitude(cast))
+                    || !query.instruments().contains(table.instrument(cast)))) continue;
+            for (int level = 0; level < table.levelCount(cast); level++) {
+                float value = table.temperature(cast, level);
+                if (!filter.matches(value, table.temperatureQc(cast, level), table.depth(cast, level))) continue;
+                count++;
+                sum += value;
+                min = Math.min(min, value);
+                max = Math.max(max, value);
+            }
+        }
+        return new ColumnStats(count, sum, 0, min, max);
+    }
+}
@@ -0,0 +1,110 @@
+package com.luketn.javawod.stats;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StatsKernelTest {
+    private static final int LEVELS = 10_007; // not a multiple of any vector length
+
+    private final float[] values = new float[LEVELS];
+    private final float[] depths = new float[LEVELS];
+    private final byte[] qc = new byte[LEVELS];
+
+    StatsKernelTest() {
+        Random random = new Random(3);
+        for (int i = 0; i < LEVELS; i++) {
+            values[i] = random.nextInt(20) == 0 ? Float.NaN : -2 + random.nextFloat() * 32;
+            depths[i] = random.nextInt(50) == 0 ? Float.NaN : random.nextFloat() * 6000;
+            qc[i] = Float.isNaN(values[i]) ? -1 : (byte) (random.nextInt(4) == 0 ? random.nextInt(10) : 0);
+        }
+    }
+
+    @Test
+    void scalarStatsCountOnlyMatchingLevels() {
+        LevelFilter filter = LevelFilter.accepted().withValues(0, 20).withDepths(100, 500);
+
+        ColumnStats stats = StatsKernel.scalar().stats(values, qc, depths, 0, LEVELS, filter);
+
+        long count = 0;
+        double sum = 0;
+        float min = Float.POSITIVE_INFINITY;
+        for (int i = 0; i < LEVELS; i++) {
+            if (qc[i] == 0 && values[i] >= 0 && values[i] < 20 && depths[i] >= 100 && depths[i] < 500) {
+                count++;
+                sum += values[i];
+                min = Math.min(min, values[i]);
+            }
+        }
+        assertTrue(count > 0);
+        assertEquals(count, stats.count());
+        assertEquals(sum / count, stats.mean(), 1e-9);
+        assertEquals(min, stats.min());
+    }
+
+    @Test
+    void vectorKernelMatchesScalar() {
+        StatsKernel vector = vectorKernel();
+        if (vector == null) return;
+        LevelFilter[] filters = {
+                LevelFilter.accepted(),
+                LevelFilter.accepted().withMaxQc(LevelFilter.ANY_QC),
+                LevelFilter.accepted().withMaxQc(3).withValues(5, 25),
+                LevelFilter.accepted().withDepths(0, 200),
+        };
+        for (LevelFilter filter : filters) {
+            for (float[] depthColumn : new float[][]{null, depths}) {
+                for (int from : new int[]{0, 3, 5000}) {
+                    ColumnStats expected = StatsKernel.scalar().stats(values, qc, depthColumn, from, LEVELS - 1, filter);
+                    ColumnStats actual = vector.stats(values, qc, depthColumn, from, LEVELS - 1, filter);
+                    assertEquals(expected.count(), actual.count());
+                    assertEquals(expected.min(), actual.min());
+                    assertEquals(expected.max(), actual.max());
+                    assertEquals(expected.mean(), actual.mean(), 1e-5);
+                    assertEquals(expected.variance(), actual.variance(), 1e-4);
+                }
+            }
+        }
+    }
+
+    @Test
+    void histogramsAgree() {
+        LevelFilter filter = LevelFilter.accepted().withDepths(0, 1000);
+        Histogram scalar = new Histogram(0, 30, 60);
+        StatsKernel.scalar().histogram(values, qc, depths, 0, LEVELS, filter, scalar);
+
+        long inRange = 0;
+        for (int i = 0; i < LEVELS; i++) {
+            if (qc[i] == 0 && values[i] >= 0 && values[i] < 30 && depths[i] >= 0 && depths[i] < 1000) inRange++;
+        }
+        assertEquals(inRange, scalar.total());
+        assertEquals(0.5f, scalar.binFrom(1));
+
+        StatsKernel vector = vectorKernel();
+        if (vector == null) return;
+        Histogram vectored = new Histogram(0, 30, 60);
+        vector.histogram(values, qc, depths, 0, LEVELS / 2, filter, vectored);
+        vector.histogram(values, qc, depths, LEVELS / 2, LEVELS, filter, vectored);
+        for (int bin = 0; bin < 60; bin++) {
+            assertEquals(scalar.count(bin), vectored.count(bin), "bin " + bin);
+        }
+    }
+
+    @Test
+    void emptySelectionHasNoMean() {
+        ColumnStats stats = StatsKernel.preferred().stats(values, qc, depths, 0, LEVELS,
+                LevelFilter.accepted().withValues(100, 200));
+
+        assertEquals(0, stats.count());
+        assertTrue(Double.isNaN(stats.mean()));
+        assertTrue(Double.isNaN(stats.variance()));
+    }
+
+    /** The vector kernel, or null where this JVM or CPU can not run it. */
+    private static StatsKernel vectorKernel() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) return null;
+        return VectorStatsKernel.supported() ? new VectorStatsKernel() : null;
+    }
+}
@@ -0,0 +1,96 @@
+package com.luketn.javawod.store;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Heap backed {@link CastTable} for tests. Casts have either no levels, or a single surface level
+ * when temperatures are given.
+ */
+public final class ArrayCastTable implements CastTable {
+    private static final String[] INSTRUMENTS = {"OSD", "CTD", "XBT", "MBT", "PFL", "DRB", "MRB", "APB", "UOR", "SUR", "GLD"};
+
+    private final int[] castNumber;
+    private final long[] epochSecond;
+    private final float[] latitude;
+    private final float[] longitude;
+    private final String[] instrument;
+    private final char[] country;
+    private final float[] temperature;
+
+    public ArrayCastTable(int[] castNumber, long[] epochSecond, float[] latitude, float[] longitude,
+                          String[] instrument, char[] country) {
+        this(castNumber, epochSecond, latitude, longitude, instrument, country, null);
+    }
+
+    public ArrayCastTable(int[] castNumber, long[] epochSecond, float[] latitude, float[] longitude,
+                          String[] instrument, char[] country, float[] temperature) {
+        this.castNumber = castNumber;
+        this.epochSecond = epochSecond;
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.instrument = instrument;
+        this.country = country;
+        this.temperature = temperature;
+    }
+
+    /**
+     * Casts spread uniformly over the globe and 1900..2020, with a few missing positions, each with
+     * a surface temperature of -2..30 degrees.
+     */
+    public static ArrayCastTable random(int casts, long seed) {
+        Random random = new Random(seed);
+        int[] castNumber = new int[casts];
+        long[] epochSecond = new long[casts];
+        float[] latitude = new float[casts];
+        float[] longitude = new float[casts];
+        String[] instrument = new String[casts];
+        char[] country = new char[casts];
+        float[] temperature = new float[casts];
+        long from = -2_208_988_800L; // 1900-01-01
+        long days = 120 * 365;
+        for (int i = 0; i < casts; i++) {
+            castNumber[i] = i + 1;
+            epochSecond[i] = from + random.nextLong(days) * 86_400L;
+            boolean missing = random.nextInt(1000) == 0;
+            latitude[i] = missing ? Float.NaN : random.nextFloat() * 180 - 90;
+            longitude[i] = missing ? Float.NaN : random.nextFloat() * 360 - 180;
+            instrument[i] = INSTRUMENTS[random.nextInt(INSTRUMENTS.length)];
+            country[i] = CastTable.country(random.nextBoolean() ? "US" : "AU");
+            temperature[i] = random.nextFloat() * 32 - 2;
+        }
+        return new ArrayCastTable(castNumber, epochSecond, latitude, longitude, instrument, country, temperature);
+    }
+
+    /** The first casts of this table, with the same ids. */
+    public ArrayCastTable head(int casts) {
+        return new ArrayCastTable(Arrays.copyOf(castNumber, casts), Arrays.copyOf(epochSecond, casts),
+                Arrays.copyOf(latitude, casts), Arrays.copyOf(longitude, casts), Arrays.copyOf(instrument, casts),
+                Arrays.copyOf(country, casts), temperature == null ? null : Arrays.copyOf(temperature, casts));
+    }
+
+    /** Casts {@code from .. to - 1} of this table, with ids from 0. */
+    public ArrayCastTable slice(int from, int to) {
+        return new ArrayCastTable(Arrays.copyOfRange(castNumber, from, to), Arrays.copyOfRange(epochSecond, from, to),
+                Arrays.copyOfRange(latitude, from, to), Arrays.copyOfRange(longitude, from, to),
+                Arrays.copyOfRange(instrument, from, to), Arrays.copyOfRange(country, from, to),
+                temperature == null ? null : Arrays.copyOfRange(temperature, from, to));
+    }
+
+    @Override public int size() { return castNumber.length; }
+    @Override public int castNumber(int cast) { return castNumber[cast]; }
+    @Override public long epochSecond(int cast) { return epochSecond[cast]; }
+    @Override public float latitude(int cast) { return latitude[cast]; }
+    @Override public float longitude(int cast) { return longitude[cast]; }
+    @Override public String instrument(int cast) { return instrument[cast]; }
+    @Override public char country(int cast) { return country[cast]; }
+    @Override public int levelCount(int cast) { return temperature == null ? 0 : 1; }
+    @Override public float depth(int cast, int level) { return surface(level, 0f); }
+    @Override public float temperature(int cast, int level) { return surface(level, temperature[cast]); }
+    @Override public byte temperatureQc(int cast, int level) { return (byte) surface(level, 0); }
+
+    private float surface(int level, float value) {
+        if (temperature == null || level != 0) throw new IndexOutOfBoundsException(level);
+        return value;
+    }
+}
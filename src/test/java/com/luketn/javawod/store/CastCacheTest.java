@@ -0,0 +1,221 @@
+package com.luketn.javawod.store;
+
+import com.luketn.javawod.ingest.IngestionEngine;
+import com.luketn.javawod.ingest.IngestionListener;
+import com.luketn.javawod.ingest.IngestionReport;
+import com.luketn.javawod.ingest.IngestionSettings;
+import com.luketn.javawod.wod.WodCastBatch;
+import com.luketn.javawod.wod.WodRecords;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CastCacheTest {
+    private static final IngestionSettings ENGINE_SETTINGS = new IngestionSettings(2, 1, 2, 8, 4096, null);
+    private static final IngestionEngine ENGINE = new IngestionEngine(ENGINE_SETTINGS);
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void buildsAndMapsColumnsOfEveryCast() throws Exception {
+        Path osd = writeExtract("ocldb1.OSD.gz", 300, 100);
+        Path ctd = writeExtract("ocldb1.CTD.gz", 5, 1);
+        CastCache cache = new CastCache(dir.resolve("cache"), ENGINE);
+
+        try (CastCatalog catalog = cache.open(List.of(osd, ctd))) {
+            assertEquals(305, catalog.size());
+            // casts are ordered by cast number within a file
+            assertEquals(100, catalog.castNumber(0));
+            assertEquals(399, catalog.castNumber(299));
+            assertEquals("OSD", catalog.instrument(0));
+            assertEquals("CTD", catalog.instrument(300));
+            assertEquals(1, catalog.castNumber(300));
+
+            int cast = catalog.files().get(0).indexOf(123);
+            assertEquals(Instant.parse("1975-06-15T00:00:00Z").getEpochSecond(), catalog.epochSecond(cast));
+            assertEquals("AU", CastTable.countryCode(catalog.country(cast)));
+            assertEquals(-12.3f, catalog.latitude(cast), 1e-6f);
+            assertEquals(123f, catalog.longitude(cast), 1e-6f);
+            assertEquals(3, catalog.levelCount(cast));
+            assertEquals(10f, catalog.depth(cast, 1));
+            assertEquals(14.5f, catalog.temperature(cast, 1), 1e-6f);
+            assertEquals(0, catalog.temperatureQc(cast, 1));
+            assertTrue(Float.isNaN(catalog.temperature(cast, 2)));
+        }
+    }
+
+    @Test
+    void rebuildsOnlyChangedSources() throws Exception {
+        Path osd = writeExtract("ocldb1.OSD.gz", 10, 1);
+        Path ctd = writeExtract("ocldb1.CTD.gz", 10, 1);
+        CastCache cache = new CastCache(dir.resolve("cache"), ENGINE);
+        cache.open(List.of(osd, ctd)).close();
+        Object osdBuilt = fileKey(cache.cacheFileFor(osd));
+        Object ctdBuilt = fileKey(cache.cacheFileFor(ctd));
+
+        writeExtract("ocldb1.CTD.gz", 20, 1);
+        // touched without changing content: kept, the checksum still matches
+        Files.setLastModifiedTime(osd, FileTime.fromMillis(Files.getLastModifiedTime(osd).toMillis() + 5000));
+
+        try (CastCatalog catalog = cache.open(List.of(osd, ctd))) {
+            assertEquals(30, catalog.size());
+        }
+        // a rebuilt cache file is written aside and moved into place
+        assertEquals(osdBuilt, fileKey(cache.cacheFileFor(osd)));
+        assertNotEquals(ctdBuilt, fileKey(cache.cacheFileFor(ctd)));
+    }
+
+    @Test
+    void recordsIngestedSourcesInTheManifest() throws Exception {
+        Path osd = writeExtract("ocldb1.OSD.gz", 12, 1);
+        Path ctd = writeExtract("ocldb1.CTD.gz", 7, 1);
+        CastCache cache = new CastCache(dir.resolve("cache"), ENGINE);
+        cache.open(List.of(osd, ctd)).close();
+
+        CastManifest manifest = CastManifest.load(dir.resolve("cache").resolve(CastManifest.FILE_NAME));
+        assertEquals(List.of("ocldb1.CTD.gz", "ocldb1.OSD.gz"),
+                manifest.entries().stream().map(CastManifest.Entry::file).toList());
+        CastManifest.Entry entry = manifest.get("ocldb1.OSD.gz");
+        assertEquals(SourceStamp.of(osd), entry.stamp());
+        assertEquals(12, entry.casts());
+        assertEquals(7, manifest.get("ocldb1.CTD.gz").casts());
+
+        // a source no longer listed is dropped
+        cache.open(List.of(osd)).close();
+        assertNull(CastManifest.load(manifest.path()).get("ocldb1.CTD.gz"));
+    }
+
+    @Test
+    void addsNewSourceWithoutRebuildingOthers() throws Exception {
+        Path osd = writeExtract("ocldb1.OSD.gz", 10, 1);
+        CastCache cache = new CastCache(dir.resolve("cache"), ENGINE);
+        cache.open(List.of(osd)).close();
+        Object osdBuilt = fileKey(cache.cacheFileFor(osd));
+
+        Path ctd = writeExtract("ocldb1.CTD.gz", 4, 1);
+        try (MappedCastFile added = cache.add(ctd)) {
+            assertEquals(4, added.size());
+            assertEquals("CTD", added.instrument());
+        }
+        assertEquals(4, cache.manifest().get("ocldb1.CTD.gz").casts());
+        assertEquals(osdBuilt, fileKey(cache.cacheFileFor(osd)));
+
+        // on the next start both are unchanged
+        Object ctdBuilt = fileKey(cache.cacheFileFor(ctd));
+        try (CastCatalog catalog = new CastCache(dir.resolve("cache"), ENGINE).open(List.of(osd, ctd))) {
+            assertEquals(14, catalog.size());
+        }
+        assertEquals(ctdBuilt, fileKey(cache.cacheFileFor(ctd)));
+    }
+
+    @Test
+    void reingestsSourceRewrittenWhileItWasIngested() throws Exception {
+        Path osd = writeExtract("ocldb1.OSD.gz", 10, 1);
+        AtomicBoolean rewritten = new AtomicBoolean();
+        IngestionEngine engine = new IngestionEngine(ENGINE_SETTINGS, new IngestionListener() {
+            @Override
+            public void fileIngested(String instrument, IngestionReport.FileReport report) {
+                if (!rewritten.compareAndSet(false, true)) return;
+                try {
+                    writeExtract("ocldb1.OSD.gz", 25, 1);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        });
+        CastCache cache = new CastCache(dir.resolve("cache"), engine);
+
+        try (CastCatalog catalog = cache.open(List.of(osd))) {
+            assertEquals(25, catalog.size());
+        }
+        assertTrue(rewritten.get());
+        assertEquals(SourceStamp.of(osd), cache.manifest().get("ocldb1.OSD.gz").stamp());
+        assertEquals(25, cache.manifest().get("ocldb1.OSD.gz").casts());
+    }
+
+    @Test
+    void writesPartialsBesideCacheFilesAndRecordsThem() throws Exception {
+        Path osd = writeExtract("ocldb1.OSD.gz", 10, 1);
+        SourcePartial counts = new SourcePartial() {
+            @Override
+            public String suffix() {
+                return ".count";
+            }
+
+            @Override
+            public Builder builder() {
+                AtomicInteger casts = new AtomicInteger();
+                return new Builder() {
+                    @Override
+                    public void accept(WodCastBatch batch) {
+                        casts.addAndGet(batch.size());
+                    }
+
+                    @Override
+                    public void write(Path target, MappedCastFile cached) throws IOException {
+                        Files.writeString(target, casts.get() + " " + cached.size());
+                    }
+                };
+            }
+        };
+        CastCache cache = new CastCache(dir.resolve("cache"), ENGINE, List.of(counts));
+        cache.open(List.of(osd)).close();
+
+        Path partial = CastCache.partialFileOf(cache.cacheFileFor(osd), counts);
+        assertEquals(dir.resolve("cache").resolve("ocldb1.OSD.gz.count"), partial);
+        assertEquals("10 10", Files.readString(partial));
+        CastManifest manifest = CastManifest.load(dir.resolve("cache").resolve(CastManifest.FILE_NAME));
+        assertEquals(List.of(".count"), manifest.get("ocldb1.OSD.gz").partials());
+
+        // a missing partial has its source ingested again
+        Object built = fileKey(cache.cacheFileFor(osd));
+        Files.delete(partial);
+        new CastCache(dir.resolve("cache"), ENGINE, List.of(counts)).open(List.of(osd)).close();
+        assertEquals("10 10", Files.readString(partial));
+        assertNotEquals(built, fileKey(cache.cacheFileFor(osd)));
+    }
+
+    @Test
+    void readsManifestLinesWrittenBeforePartialsWereKept() throws Exception {
+        Path path = Files.writeString(dir.resolve(CastManifest.FILE_NAME),
+                "# file\tsize\tlastModified\tchecksum\tcasts\nocldb1.OSD.gz\t100\t200\t300\t4\n");
+
+        CastManifest.Entry entry = CastManifest.load(path).get("ocldb1.OSD.gz");
+
+        assertEquals(new CastManifest.Entry("ocldb1.OSD.gz", 100, 200, 300, 4, List.of()), entry);
+    }
+
+    private static Object fileKey(Path file) throws IOException {
+        return Files.readAttributes(file, BasicFileAttributes.class).fileKey();
+    }
+
+    private Path writeExtract(String name, int casts, int firstCast) throws IOException {
+        Path file = dir.resolve(name);
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(file))) {
+            // written in descending cast number order
+            for (int i = casts - 1; i >= 0; i--) {
+                int castNumber = firstCast + i;
+                String record = WodRecords.profile(castNumber, "AU", "19750615", -12.3f, castNumber,
+                        new float[]{0, 10, 20}, new float[]{15.25f, 14.5f, Float.NaN});
+                out.write(WodRecords.lines(record).getBytes(StandardCharsets.US_ASCII));
+            }
+        }
+        return file;
+    }
+}
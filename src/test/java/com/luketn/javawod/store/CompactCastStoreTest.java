@@ -0,0 +1,81 @@
+package com.luketn.javawod.store;
+
+import com.luketn.javawod.wod.WodCast;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompactCastStoreTest {
+
+    @Test
+    void roundTripsCasts() {
+        List<WodCast> casts = List.of(
+                new WodCast("OSD", Instant.parse("1975-06-15T00:00:00Z"), "US", 45.1234f, -55.13f, 12.345f),
+                new WodCast("CTD", Instant.parse("1802-01-31T00:00:00Z"), "GB", -89.99f, 179.9999f, -1.8f),
+                new WodCast("OSD", Instant.parse("2024-12-31T00:00:00Z"), "US", 0.0001f, 0f, 0.001f));
+        CompactCastStore store = new CompactCastStore(1);
+        casts.forEach(store::accept);
+
+        assertEquals(3, store.size());
+        for (int i = 0; i < casts.size(); i++) {
+            assertEquals(casts.get(i), store.toWodCast(i));
+        }
+        assertEquals(2, store.instrumentCount());
+        assertEquals(2, store.countryCount());
+        assertEquals(Instant.parse("1802-01-31T00:00:00Z").getEpochSecond(), store.epochSecond(1));
+    }
+
+    @Test
+    void missingValuesStayMissing() {
+        CompactCastStore store = new CompactCastStore();
+        store.accept(new WodCast("XBT", Instant.EPOCH, "AU", null, 150.5f, null));
+        store.accept(new WodCast("XBT", Instant.EPOCH, "AU", 0f, null, 0f));
+
+        assertTrue(Float.isNaN(store.latitude(0)));
+        assertEquals(150.5f, store.longitude(0));
+        assertTrue(Float.isNaN(store.temperature(0)));
+        assertEquals(0f, store.latitude(1));
+        assertTrue(Float.isNaN(store.longitude(1)));
+        assertEquals(0f, store.temperature(1));
+        assertEquals(new WodCast("XBT", Instant.EPOCH, "AU", null, 150.5f, null), store.toWodCast(0));
+    }
+
+    @Test
+    void keepsFixedPointPrecisionOverManyCasts() {
+        Random random = new Random(7);
+        CompactCastStore store = new CompactCastStore(16);
+        List<float[]> expected = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            float latitude = (random.nextInt(18_000_001) - 9_000_000) / 100_000f;
+            float longitude = (random.nextInt(36_000_001) - 18_000_000) / 100_000f;
+            float temperature = (random.nextInt(40_000) - 2_000) / 1_000f;
+            expected.add(new float[]{latitude, longitude, temperature});
+            store.add("PFL", i * 86_400L, "JP", latitude, longitude, temperature);
+        }
+        store.trimToSize();
+
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i)[0], store.latitude(i), 1e-6f);
+            assertEquals(expected.get(i)[1], store.longitude(i), 1e-6f);
+            assertEquals(expected.get(i)[2], store.temperature(i), 1e-4f);
+        }
+        // 23 bytes a cast plus three presence bits
+        assertEquals(10_000 * 23L + 3 * 157 * 8, store.columnBytes());
+    }
+
+    @Test
+    void rejectsValuesBeyondTheFixedPointRange() {
+        CompactCastStore store = new CompactCastStore();
+        assertThrows(IllegalArgumentException.class,
+                () -> store.add("OSD", 0, "US", 10, 20, 1e6f));
+        store.add("OSD", 0, "US", Float.NaN, 20, 1);
+
+        assertEquals(1, store.size());
+        assertTrue(Float.isNaN(store.latitude(0)));
+    }
+}
@@ -0,0 +1,145 @@
+package com.luketn.javawod.wod;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Deterministic generator of WOD ASCII casts, so benchmarks and tests run without the NOAA
+ * extracts. The same seed always yields the same casts.
+ * <p>
+ * Records follow the primary header layout of {@code prhFormat} in {@code DataUtil}: cast
+ * number, country, cruise, date, optional time, position, levels, profile type and per variable
+ * its code, QC flag and variable specific metadata. Then come optional character data and a
+ * secondary header, no biological header, and the profile levels. Most profiles are on observed
+ * levels; one in ten is on standard levels. Every variable carries at least one metadata entry,
+ * which the original parser requires.
+ */
+public final class SyntheticWod {
+    private static final String[] COUNTRIES = {"US", "AU", "JP", "GB", "DE", "FR", "CA", "RU", "NO", "IN"};
+
+    private final Random random;
+    private int castNumber;
+
+    public SyntheticWod(long seed) {
+        this.random = new Random(seed);
+        this.castNumber = 10_000 + random.nextInt(1_000_000);
+    }
+
+    /** The next cast record, without line breaks. */
+    public String nextRecord() {
+        castNumber += 1 + random.nextInt(5);
+        String cast = String.valueOf(castNumber);
+        String cruise = String.valueOf(1 + random.nextInt(99_999));
+        int month = 1 + random.nextInt(12);
+        int day = 1 + random.nextInt(28);
+        boolean standardLevels = random.nextInt(10) == 0;
+        int levels = standardLevels ? 1 + random.nextInt(StandardLevels.count()) : 1 + (int) (random.nextDouble() * random.nextDouble() * 200);
+        int variables = 1 + (random.nextBoolean() ? 1 : 0) + (random.nextInt(10) == 0 ? 1 : 0);
+
+        StringBuilder fields = new StringBuilder(256 + levels * 12 * (variables + 1));
+        fields.append(cast.length()).append(cast)
+                .append(COUNTRIES[random.nextInt(COUNTRIES.length)])
+                .append(cruise.length()).append(cruise)
+                .append(1900 + random.nextInt(121))
+                .append(month < 10 ? "0" : "").append(month)
+                .append(day < 10 ? "0" : "").append(day)
+                .append(random.nextInt(4) == 0 ? "-" : WodRecords.value(random.nextInt(2400) / 100f, 2))
+                .append(WodRecords.value(Math.round((random.nextFloat() * 170 - 85) * 1000) / 1000f, 3))
+                .append(WodRecords.value(Math.round((random.nextFloat() * 360 - 180) * 1000) / 1000f, 3));
+        String levelCount = String.valueOf(levels);
+        fields.append(levelCount.length()).append(levelCount)
+                .append(standardLevels ? 1 : 0)
+                .append(' ').append(variables);
+        for (int v = 1; v <= variables; v++) {
+            int metadata = 1 + random.nextInt(2);
+            fields.append("1").append(v).append('0').append("1").append(metadata);
+            for (int m = 0; m < metadata; m++) {
+                fields.append("1").append(1 + m).append(WodRecords.value(random.nextInt(1000) / 10f, 1));
+            }
+        }
+        characterData(fields);
+        secondaryHeader(fields);
+        fields.append('0'); // no biological header
+
+        float depth = 0;
+        for (int level = 0; level < levels; level++) {
+            if (!standardLevels) {
+                depth += 1 + random.nextInt(20) + random.nextInt(10) / 10f;
+                fields.append(WodRecords.value(depth, 1)).append("00");
+            }
+            for (int v = 1; v <= variables; v++) {
+                if (random.nextInt(30) == 0) {
+                    fields.append('-');
+                    continue;
+                }
+                float value = switch (v) {
+                    case 1 -> 28 * (float) Math.exp(-depth / 800) - 1 + random.nextInt(100) / 100f;
+                    case 2 -> 34 + random.nextInt(2000) / 1000f;
+                    default -> 2 + random.nextInt(6000) / 1000f;
+                };
+                fields.append(WodRecords.value(value, v == 1 ? 2 : 3))
+                        .append(random.nextInt(20) == 0 ? '2' : '0')
+                        .append('0');
+            }
+        }
+        return WodRecords.record(fields.toString());
+    }
+
+    private void characterData(StringBuilder fields) {
+        if (random.nextInt(3) != 0) {
+            fields.append('0');
+            return;
+        }
+        String code = "SYN" + random.nextInt(1000);
+        String entry = "1" + (code.length() < 10 ? "0" : "") + code.length() + code;
+        String bytes = String.valueOf(1 + entry.length());
+        fields.append(bytes.length()).append(bytes).append('1').append(entry);
+    }
+
+    private void secondaryHeader(StringBuilder fields) {
+        if (random.nextBoolean()) {
+            fields.append('0');
+            return;
+        }
+        int entries = 1 + random.nextInt(4);
+        StringBuilder header = new StringBuilder();
+        for (int i = 0; i < entries; i++) {
+            String code = String.valueOf(1 + random.nextInt(99));
+            header.append(code.length()).append(code).append(WodRecords.value(random.nextInt(100_000), 0));
+        }
+        String bytes = String.valueOf(2 + header.length());
+        fields.append(bytes.length()).append(bytes).append('1').append(entries).append(header);
+    }
+
+    /** Casts wrapped into 80 character lines, as in an inflated WOD extract. */
+    public byte[] extract(int casts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(casts * 1024);
+        try {
+            write(out, casts);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    public void write(OutputStream out, int casts) throws IOException {
+        for (int i = 0; i < casts; i++) {
+            out.write(WodRecords.lines(nextRecord()).getBytes(StandardCharsets.US_ASCII));
+        }
+    }
+
+    /** Writes a gzipped extract, named like the NOAA files, e.g. {@code ocldb1.OSD.gz}. */
+    public Path writeGzip(Path file, int casts) throws IOException {
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(file), 64 * 1024)) {
+            write(out, casts);
+        }
+        return file;
+    }
+}
@@ -0,0 +1,36 @@
+package com.luketn.javawod.wod;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SyntheticWodTest {
+
+    @Test
+    void sameSeedGivesSameCasts() {
+        assertArrayEquals(new SyntheticWod(5).extract(50), new SyntheticWod(5).extract(50));
+        assertNotEquals(new SyntheticWod(5).nextRecord(), new SyntheticWod(6).nextRecord());
+    }
+
+    @Test
+    void everyCastDecodesCompletely() {
+        SyntheticWod generator = new SyntheticWod(1);
+        WodAsciiParser parser = new WodAsciiParser();
+        WodCastBatch batch = new WodCastBatch();
+        int standardLevelProfiles = 0;
+        for (int i = 0; i < 2000; i++) {
+            byte[] record = generator.nextRecord().getBytes(StandardCharsets.US_ASCII);
+            int cast = parser.parseInto(record, 0, record.length, batch);
+
+            assertEquals(record.length, parser.profileBytes());
+            assertEquals(record.length, parser.position(), "cast " + i + " was not consumed to its end");
+            assertEquals(parser.levels(), batch.levelCount(cast));
+            assertTrue(batch.variableIndex(cast, 1) == 0);
+            if (batch.profileType(cast) == 1) standardLevelProfiles++;
+            batch.clear();
+        }
+        assertTrue(standardLevelProfiles > 100);
+    }
+}
@@ -0,0 +1,161 @@
+package com.luketn.javawod.wod;
+
+import com.luketn.DataUtil;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WodAsciiParserTest {
+    // C, profile bytes 123, cast 12345, US, cruise 1234, 1975-06-15, time 12.5, lat -55.13,
+    // lon 147.25, 3 levels, observed, 1 variable (temperature, 1 metadata value of 12.34)
+    static final String HEADER = "C" + "3123" + "512345" + "US" + "41234" + "19750615"
+            + "331125" + "452-5513" + "55214725" + "13" + "0" + " 1"
+            + "11" + "0" + "11" + "15" + "4421234";
+
+    @Test
+    void decodesHeaderIntoPrimitives() {
+        byte[] record = HEADER.getBytes(StandardCharsets.US_ASCII);
+        WodAsciiParser parser = new WodAsciiParser();
+        parser.parseHeader(record, 0, record.length);
+
+        assertEquals(123, parser.profileBytes());
+        assertEquals(12345, parser.castNumber());
+        assertEquals("US", parser.countryCode());
+        assertEquals(1975, parser.year());
+        assertEquals(6, parser.month());
+        assertEquals(15, parser.day());
+        assertEquals(12.5f, parser.time());
+        assertEquals(-55.13f, parser.latitude());
+        assertEquals(147.25f, parser.longitude());
+        assertEquals(3, parser.levels());
+        assertEquals(0, parser.profileType());
+        assertEquals(1, parser.variables());
+        assertEquals(12.34f, parser.temperature());
+        assertEquals(record.length, parser.position());
+    }
+
+    @Test
+    void producesSameCastAsLegacyParser() {
+        byte[] record = HEADER.getBytes(StandardCharsets.US_ASCII);
+        String fileName = "ocldb1753579979.3150694.OSD.gz";
+
+        WodCast expected = DataUtil.parseProfile(HEADER, fileName);
+        WodCast actual = new WodAsciiParser().parse(record, 0, record.length, "OSD");
+
+        assertNotNull(expected);
+        assertEquals(expected, actual);
+        assertEquals(Instant.parse("1975-06-15T00:00:00Z"), actual.timestamp());
+    }
+
+    @Test
+    void agreesWithOriginalParserOnSyntheticCasts() {
+        SyntheticWod generator = new SyntheticWod(7);
+        WodAsciiParser parser = new WodAsciiParser();
+        for (int i = 0; i < 2000; i++) {
+            String record = generator.nextRecord();
+            byte[] bytes = record.getBytes(StandardCharsets.US_ASCII);
+
+            WodCast expected = DataUtil.parseProfile(record, "ocldb1.CTD.gz");
+
+            assertNotNull(expected, "cast " + i);
+            assertEquals(expected, parser.parse(bytes, 0, bytes.length, "CTD"), "cast " + i);
+        }
+    }
+
+    @Test
+    void missingValuesDecodeAsNull() {
+        String withMissingPosition = HEADER.replace("452-5513" + "55214725", "--");
+        byte[] record = withMissingPosition.getBytes(StandardCharsets.US_ASCII);
+
+        WodCast cast = new WodAsciiParser().parse(record, 0, record.length, "OSD");
+
+        assertNull(cast.latitude());
+        assertNull(cast.longitude());
+        assertEquals(12.34f, cast.degreesCelcius());
+    }
+
+    @Test
+    void decodesEveryLevelOfEveryVariableIntoBatch() {
+        String record = WodRecords.record("512345" + "US" + "41234" + "19750615" + "331125" + "452-5513" + "55214725"
+                + "13" + "0" + " 2"
+                + "11" + "0" + "11" + "15" + "4421234"   // temperature, one metadata value
+                + "12" + "0" + "10"                      // salinity, no metadata
+                + "212" + "1" + "1" + "04" + "AB12"      // character data: originator cruise code
+                + "12" + "11" + "12" + "331123"          // secondary header: one entry
+                + "0"                                    // no biological header
+                + "1100" + "00" + "4421532" + "00" + "55334712" + "00"
+                + "331105" + "00" + "4421498" + "10" + "-"
+                + "22020" + "00" + "-" + "55334801" + "00");
+        byte[] bytes = record.getBytes(StandardCharsets.US_ASCII);
+        WodCastBatch batch = new WodCastBatch(1, 1);
+
+        int cast = new WodAsciiParser().parseInto(bytes, 0, bytes.length, batch);
+
+        assertEquals(0, cast);
+        assertEquals(1, batch.size());
+        assertEquals(12345, batch.castNumber(cast));
+        assertEquals(Instant.parse("1975-06-15T00:00:00Z").getEpochSecond(), batch.epochSecond(cast));
+        assertEquals(-55.13f, batch.latitude(cast));
+        assertEquals(3, batch.levelCount(cast));
+        assertEquals(2, batch.variableCount(cast));
+        assertEquals(1, batch.variableCode(cast, 0));
+        assertEquals(1, batch.variableIndex(cast, 2));
+        assertEquals(-1, batch.variableIndex(cast, 3));
+
+        assertEquals(0f, batch.depth(cast, 0));
+        assertEquals(10.5f, batch.depth(cast, 1));
+        assertEquals(20f, batch.depth(cast, 2));
+        assertEquals(15.32f, batch.value(cast, 0, 0));
+        assertEquals(34.712f, batch.value(cast, 0, 1));
+        assertEquals(14.98f, batch.value(cast, 1, 0));
+        assertEquals(1, batch.qc(cast, 1, 0));
+        assertTrue(Float.isNaN(batch.value(cast, 1, 1)));
+        assertEquals(WodCastBatch.MISSING_QC, batch.qc(cast, 1, 1));
+        assertTrue(Float.isNaN(batch.value(cast, 2, 0)));
+        assertEquals(34.801f, batch.value(cast, 2, 1));
+    }
+
+    @Test
+    void standardLevelProfilesTakeDepthsFromTable() {
+        String record = WodRecords.record("17" + "US" + "0" + "19750615" + "-" + "-" + "-"
+                + "12" + "1" + " 1" + "11" + "0" + "10" + "0" + "0" + "0"
+                + "4421532" + "00" + "4421498" + "00");
+        byte[] bytes = record.getBytes(StandardCharsets.US_ASCII);
+        WodCastBatch batch = new WodCastBatch();
+
+        new WodAsciiParser().parseInto(bytes, 0, bytes.length, batch);
+
+        assertEquals(2, batch.totalLevels());
+        assertEquals(5f, batch.depth(0, 1));
+        assertEquals(14.98f, batch.value(0, 1, 0));
+    }
+
+    @Test
+    void truncatedLevelsLeaveBatchUnchanged() {
+        WodCastBatch batch = new WodCastBatch();
+        byte[] good = WodRecords.cast(1, "19750615").getBytes(StandardCharsets.US_ASCII);
+        String truncated = WodRecords.record("12" + "US" + "0" + "19750615" + "-" + "-" + "-"
+                + "12" + "0" + " 1" + "11" + "0" + "10" + "0" + "0" + "0" + "1100" + "00" + "4421532" + "00");
+        byte[] bad = truncated.getBytes(StandardCharsets.US_ASCII);
+        WodAsciiParser parser = new WodAsciiParser();
+
+        parser.parseInto(good, 0, good.length, batch);
+        assertThrows(WodParseException.class, () -> parser.parseInto(bad, 0, bad.length, batch));
+
+        assertEquals(1, batch.size());
+        assertEquals(0, batch.totalLevels());
+    }
+
+    @Test
+    void reportsFieldAndPositionOfMalformedRecord() {
+        byte[] record = HEADER.replace("19750615", "1975X615").getBytes(StandardCharsets.US_ASCII);
+
+        WodParseException e = assertThrows(WodParseException.class,
+                () -> new WodAsciiParser().parse(record, 0, record.length, "OSD"));
+        assertEquals("Month", e.getField());
+        assertEquals(HEADER.indexOf("19750615") + 4, e.getPosition());
+    }
+}
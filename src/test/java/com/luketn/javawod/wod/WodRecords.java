@@ -0,0 +1,78 @@
+package com.luketn.javawod.wod;
+
+/**
+ * Helpers for building WOD ASCII records in tests.
+ */
+public final class WodRecords {
+    private WodRecords() {}
+
+    /**
+     * Prefixes a record with 'C' and a correct ProfileBytes field.
+     *
+     * @param fields everything after the ProfileBytes field
+     */
+    public static String record(String fields) {
+        for (int digits = 1; digits < 10; digits++) {
+            int total = 2 + digits + fields.length();
+            if (String.valueOf(total).length() == digits) {
+                return "C" + digits + total + fields;
+            }
+        }
+        throw new IllegalArgumentException("Record too long");
+    }
+
+    /**
+     * A one variable (temperature) cast with the given number and date, and no levels.
+     */
+    public static String cast(int castNumber, String yyyymmdd) {
+        String cast = String.valueOf(castNumber);
+        return record(cast.length() + cast + "US" + "41234" + yyyymmdd
+                + "331125" + "452-5513" + "55214725" + "10" + "0" + " 1"
+                + "11" + "0" + "11" + "15" + "4421234" + "000");
+    }
+
+    /**
+     * An observed level temperature profile.
+     */
+    public static String profile(int castNumber, String country, String yyyymmdd, float latitude, float longitude,
+                                 float[] depths, float[] temperatures) {
+        String cast = String.valueOf(castNumber);
+        StringBuilder fields = new StringBuilder()
+                .append(cast.length()).append(cast).append(country).append("0").append(yyyymmdd)
+                .append("-").append(value(latitude, 3)).append(value(longitude, 3));
+        String levels = String.valueOf(depths.length);
+        fields.append(levels.length()).append(levels).append("0").append(" 1")
+                .append("11").append("0").append("10")
+                .append("000");
+        for (int i = 0; i < depths.length; i++) {
+            fields.append(value(depths[i], 1)).append("00");
+            if (Float.isNaN(temperatures[i])) {
+                fields.append("-");
+            } else {
+                fields.append(value(temperatures[i], 2)).append("00");
+            }
+        }
+        return record(fields.toString());
+    }
+
+    /**
+     * Encodes a value as a signif/total/precision triplet, or '-' for NaN.
+     */
+    public static String value(float value, int precision) {
+        if (Float.isNaN(value)) return "-";
+        String digits = Long.toString(Math.round(value * Math.pow(10, precision)));
+        int significant = Math.min(9, digits.replace("-", "").length());
+        return "" + significant + digits.length() + precision + digits;
+    }
+
+    /**
+     * Wraps a record into 80 character lines, the way WOD ASCII files are written.
+     */
+    public static String lines(String record) {
+        StringBuilder lines = new StringBuilder();
+        for (int start = 0; start < record.length(); start += 80) {
+            lines.append(record, start, Math.min(record.length(), start + 80)).append('\n');
+        }
+        return lines.toString();
+    }
+}